@@ -0,0 +1,8 @@
+CREATE TABLE `execution_lease` (
+  `partition_key` varchar(256) NOT NULL,
+  `owner` varchar(256) NOT NULL,
+  `expires_at` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `updated_at` timestamp NULL DEFAULT NULL ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (`partition_key`),
+  KEY `execution_lease_owner` (`owner`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8
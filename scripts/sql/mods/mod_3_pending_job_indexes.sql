@@ -0,0 +1,5 @@
+ALTER TABLE `retention_job`
+  ADD INDEX `retention_job_created_at_id` (`created_at`, `id`);
+
+ALTER TABLE `retention_job_validation`
+  ADD INDEX `retention_job_validation_status_job_id` (`status`, `retention_job_id`);
@@ -0,0 +1,34 @@
+CREATE TABLE `retention_job_archive` (
+  `id` int UNSIGNED NOT NULL,
+  `name` varchar(256) NOT NULL,
+  `retention_rule_id` int UNSIGNED NULL,
+  `retention_rule_version` int UNSIGNED NULL,
+  `retention_rule_type` enum('global', 'dataset', 'user', 'default') NULL,
+  `retention_rule_data_storage_name` varchar(256) NOT NULL,
+  `retention_rule_project_id` varchar(256) NOT NULL,
+  `created_at` timestamp NULL DEFAULT NULL,
+  `updated_at` timestamp NULL DEFAULT NULL,
+  `type` varchar(128) DEFAULT NULL,
+  `batch_id` varchar(256) DEFAULT NULL,
+  `metadata` text,
+  `data_storage_root` varchar(256) DEFAULT NULL,
+  `archived_at` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`),
+  KEY `retention_job_archive_storage_created_at` (`retention_rule_data_storage_name`, `created_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+CREATE TABLE `retention_job_validation_archive` (
+  `id` int UNSIGNED NOT NULL,
+  `retention_job_id` int UNSIGNED NOT NULL,
+  `job_operation_name` varchar(256) NOT NULL,
+  `status` enum('success','pending','error') NOT NULL,
+  `created_at` timestamp NULL DEFAULT NULL,
+  `updated_at` timestamp NULL DEFAULT NULL,
+  `batch_id` varchar(256) DEFAULT NULL,
+  `start_time` timestamp NULL DEFAULT NULL,
+  `end_time` timestamp NULL DEFAULT NULL,
+  `metadata` text,
+  `archived_at` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`),
+  KEY `retention_job_validation_archive_job_id` (`retention_job_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
@@ -0,0 +1,3 @@
+ALTER TABLE `retention_job_validation`
+  ADD COLUMN `next_check_at` timestamp NULL DEFAULT NULL,
+  ADD INDEX `retention_job_validation_status_next_check_at` (`status`, `next_check_at`);
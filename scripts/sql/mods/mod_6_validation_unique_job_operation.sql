@@ -0,0 +1,10 @@
+-- Keeps only the latest validation record of every retention job and operation. Older duplicates
+-- would keep the unique key from being added.
+DELETE older FROM `retention_job_validation` older
+  JOIN `retention_job_validation` newer
+    ON older.`retention_job_id` = newer.`retention_job_id`
+   AND older.`job_operation_name` = newer.`job_operation_name`
+   AND older.`id` < newer.`id`;
+
+ALTER TABLE `retention_job_validation`
+  ADD UNIQUE KEY `unique_job_operation` (`retention_job_id`, `job_operation_name`);
@@ -0,0 +1,2 @@
+ALTER TABLE `retention_job`
+  ADD INDEX `retention_job_storage_type_created_at` (`retention_rule_data_storage_name`, `retention_rule_type`, `created_at`);
@@ -9,6 +9,9 @@ DROP TABLE IF EXISTS retention_job;
 DROP TABLE IF EXISTS retention_rule_history;
 DROP TABLE IF EXISTS retention_rule;
 DROP TABLE IF EXISTS pooled_sts_job;
+DROP TABLE IF EXISTS execution_lease;
+DROP TABLE IF EXISTS retention_job_validation_archive;
+DROP TABLE IF EXISTS retention_job_archive;
 
 -- Table Create Scripts
 -- ----------------------------------------------------------
@@ -65,7 +68,9 @@ CREATE TABLE retention_job (
   `metadata` text,
   `data_storage_root` varchar(256) DEFAULT NULL,
   FOREIGN KEY (retention_rule_id) REFERENCES retention_rule(id),
-  INDEX `retention_job_name` (`name`)
+  INDEX `retention_job_name` (`name`),
+  INDEX `retention_job_created_at_id` (`created_at`, `id`),
+  INDEX `retention_job_storage_type_created_at` (`retention_rule_data_storage_name`, `retention_rule_type`, `created_at`)
 )ENGINE=InnoDB DEFAULT CHARSET=utf8;
 
 CREATE TABLE retention_job_validation (
@@ -79,8 +84,12 @@ CREATE TABLE retention_job_validation (
   `start_time` timestamp NULL DEFAULT NULL,
   `end_time` timestamp NULL DEFAULT NULL,
   `metadata` text,
+  `next_check_at` timestamp NULL DEFAULT NULL,
   FOREIGN KEY (retention_job_id) REFERENCES retention_job(id),
-  INDEX `retention_job_validation_job_operation_name` (`job_operation_name`)
+  UNIQUE KEY `unique_job_operation` (`retention_job_id`, `job_operation_name`),
+  INDEX `retention_job_validation_job_operation_name` (`job_operation_name`),
+  INDEX `retention_job_validation_status_job_id` (`status`, `retention_job_id`),
+  INDEX `retention_job_validation_status_next_check_at` (`status`, `next_check_at`)
 )ENGINE=InnoDB DEFAULT CHARSET=utf8;
 
 CREATE TABLE `pooled_sts_job` (
@@ -101,6 +110,50 @@ CREATE TABLE `pooled_sts_job` (
   KEY `query_project_bucket` (`source_bucket`,`source_project`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 
+CREATE TABLE `execution_lease` (
+  `partition_key` varchar(256) NOT NULL,
+  `owner` varchar(256) NOT NULL,
+  `expires_at` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `updated_at` timestamp NULL DEFAULT NULL ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (`partition_key`),
+  KEY `execution_lease_owner` (`owner`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+CREATE TABLE `retention_job_archive` (
+  `id` int UNSIGNED NOT NULL,
+  `name` varchar(256) NOT NULL,
+  `retention_rule_id` int UNSIGNED NULL,
+  `retention_rule_version` int UNSIGNED NULL,
+  `retention_rule_type` enum('global', 'dataset', 'user', 'default') NULL,
+  `retention_rule_data_storage_name` varchar(256) NOT NULL,
+  `retention_rule_project_id` varchar(256) NOT NULL,
+  `created_at` timestamp NULL DEFAULT NULL,
+  `updated_at` timestamp NULL DEFAULT NULL,
+  `type` varchar(128) DEFAULT NULL,
+  `batch_id` varchar(256) DEFAULT NULL,
+  `metadata` text,
+  `data_storage_root` varchar(256) DEFAULT NULL,
+  `archived_at` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`),
+  KEY `retention_job_archive_storage_created_at` (`retention_rule_data_storage_name`, `created_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+CREATE TABLE `retention_job_validation_archive` (
+  `id` int UNSIGNED NOT NULL,
+  `retention_job_id` int UNSIGNED NOT NULL,
+  `job_operation_name` varchar(256) NOT NULL,
+  `status` enum('success','pending','error') NOT NULL,
+  `created_at` timestamp NULL DEFAULT NULL,
+  `updated_at` timestamp NULL DEFAULT NULL,
+  `batch_id` varchar(256) DEFAULT NULL,
+  `start_time` timestamp NULL DEFAULT NULL,
+  `end_time` timestamp NULL DEFAULT NULL,
+  `metadata` text,
+  `archived_at` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`),
+  KEY `retention_job_validation_archive_job_id` (`retention_job_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
 -- TRIGGER SCRIPTS
 -- ------------------------------------------------------
 
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.util;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares {@link PrefixGeneratorUtility} with the formatter based implementation it replaced,
+ * across lookback windows of increasing size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrefixGeneratorUtilityBenchmark {
+
+  @Param({"1", "30", "365", "3650"})
+  public int lookbackInDays;
+
+  private ZonedDateTime startTime;
+  private ZonedDateTime endTime;
+
+  @Setup
+  public void setup() {
+    endTime = ZonedDateTime.of(2019, 6, 17, 13, 27, 0, 0, ZoneOffset.UTC);
+    startTime = endTime.minusDays(lookbackInDays);
+  }
+
+  @Benchmark
+  public List<String> formatterList() {
+    return generateWithFormatters("dataset/path", startTime, endTime);
+  }
+
+  @Benchmark
+  public List<String> builderList() {
+    return PrefixGeneratorUtility.generateTimePrefixes("dataset/path", startTime, endTime);
+  }
+
+  @Benchmark
+  public void builderIterator(Blackhole blackhole) {
+    Iterator<String> prefixes =
+        PrefixGeneratorUtility.iterateTimePrefixes("dataset/path", startTime, endTime);
+    while (prefixes.hasNext()) {
+      blackhole.consume(prefixes.next());
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    new Runner(
+            new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(PrefixGeneratorUtilityBenchmark.class.getName())
+                .build())
+        .run();
+  }
+
+  /** The previous implementation of {@link PrefixGeneratorUtility#generateTimePrefixes} */
+  private static List<String> generateWithFormatters(
+      String pattern, ZonedDateTime startTime, ZonedDateTime endTime) {
+    endTime = endTime.truncatedTo(ChronoUnit.HOURS);
+
+    List<String> result = new ArrayList<>();
+    ZonedDateTime currentTime = ZonedDateTime.from(endTime);
+    while (currentTime.getHour() > 0 && currentTime.isAfter(startTime)) {
+      currentTime = currentTime.minus(1, ChronoUnit.HOURS);
+      result.add(formatPrefix(currentTime, pattern, DateTimeFormatter.ofPattern("yyyy/MM/dd/HH")));
+    }
+    while (currentTime.getDayOfMonth() > 1 && currentTime.isAfter(startTime)) {
+      currentTime = currentTime.minus(1, ChronoUnit.DAYS);
+      result.add(formatPrefix(currentTime, pattern, DateTimeFormatter.ofPattern("yyyy/MM/dd")));
+    }
+    while (currentTime.getMonthValue() > 1 && currentTime.isAfter(startTime)) {
+      currentTime = currentTime.minus(1, ChronoUnit.MONTHS);
+      result.add(formatPrefix(currentTime, pattern, DateTimeFormatter.ofPattern("yyyy/MM")));
+    }
+    while (currentTime.isAfter(startTime)) {
+      currentTime = currentTime.minus(1, ChronoUnit.YEARS);
+      result.add(formatPrefix(currentTime, pattern, DateTimeFormatter.ofPattern("yyyy")));
+    }
+    return result;
+  }
+
+  private static String formatPrefix(
+      ZonedDateTime time, String pattern, DateTimeFormatter formatter) {
+    String formattedPrefix =
+        String.format("%s/%s/", pattern, formatter.withZone(ZoneOffset.UTC).format(time));
+    if (formattedPrefix.startsWith("/")) {
+      formattedPrefix = formattedPrefix.replaceFirst("/", "");
+    }
+    return formattedPrefix;
+  }
+}
@@ -22,7 +22,10 @@ import com.google.gcs.sdrs.dao.impl.RetentionRuleDaoImpl;
 import com.google.gcs.sdrs.scheduler.JobScheduler;
 import com.google.gcs.sdrs.scheduler.runners.RuleExecutionRunner;
 import com.google.gcs.sdrs.scheduler.runners.ValidationRunner;
+import com.google.gcs.sdrs.service.manager.ExecutionLeaseManager;
+import com.google.gcs.sdrs.service.manager.RetentionJobArchiver;
 import com.google.gcs.sdrs.service.mq.PubSubMessageQueueManagerImpl;
+import com.google.gcs.sdrs.service.mq.StsNotificationSubscriber;
 import java.io.IOException;
 import java.net.URI;
 import java.util.concurrent.TimeUnit;
@@ -59,11 +62,14 @@ public class SdrsApplication {
     logger.info("Starting SDRS...");
 
     getAppConfig();
+    checkExecutionLeaseConfig();
 
     // if web server fails to start, consider it a fatal error and exit the application with error
     startWebServer();
     registerPubSub();
     connectDatabase();
+    RetentionJobArchiver.getInstance().start();
+    StsNotificationSubscriber.getInstance().start();
 
     if (Boolean.valueOf(getAppConfigProperty("scheduler.enabled", "false"))) {
       scheduleExecutionServiceJob();
@@ -76,6 +82,20 @@ public class SdrsApplication {
     System.exit(0);
   }
 
+  /** Refuses to start when execution leases are enabled without an in-process scheduler */
+  private static void checkExecutionLeaseConfig() {
+    if (!ExecutionLeaseManager.isSchedulerConfigValid(
+        Boolean.valueOf(getAppConfigProperty("execution.lease.enabled", "false")),
+        Boolean.valueOf(getAppConfigProperty("scheduler.enabled", "false")),
+        Boolean.valueOf(getAppConfigProperty("scheduler.task.inProcess", "false")))) {
+      logger.error(
+          "execution.lease.enabled requires scheduler.enabled and scheduler.task.inProcess on "
+              + "every instance. Each instance only executes the projects it leases when a POLICY "
+              + "run reaches it.");
+      System.exit(1);
+    }
+  }
+
   /** Loads necessary configurations and starts the web server */
   private static void startWebServer() {
     try {
@@ -129,7 +149,12 @@ public class SdrsApplication {
     JobScheduler scheduler = JobScheduler.getInstance();
 
     int initialDelay = xmlConfig.getInt("scheduler.task.validationService.initialDelay");
-    int frequency = xmlConfig.getInt("scheduler.task.validationService.frequency");
+    // with STS notifications the polling only catches operations whose notification got lost
+    int frequency =
+        xmlConfig.getInt(
+            StsNotificationSubscriber.isEnabled()
+                ? "scheduler.task.validationService.safetyNetFrequency"
+                : "scheduler.task.validationService.frequency");
     TimeUnit timeUnit =
         TimeUnit.valueOf(xmlConfig.getString("scheduler.task.validationService.timeUnit"));
 
@@ -18,9 +18,18 @@
 
 package com.google.gcs.sdrs;
 
+import com.google.gcs.sdrs.service.cache.PooledStsJobIndex;
+import com.google.gcs.sdrs.service.manager.ExecutionLeaseManager;
 import com.google.gcs.sdrs.service.manager.JobManager;
+import com.google.gcs.sdrs.service.manager.RetentionJobArchiver;
 import com.google.gcs.sdrs.service.mq.PubSubMessageQueueManagerImpl;
+import com.google.gcs.sdrs.service.mq.StsNotificationSubscriber;
+import com.google.gcs.sdrs.service.worker.impl.ExecuteRetentionWorker;
+import com.google.gcs.sdrs.service.worker.impl.ValidationWorker;
+import com.google.gcs.sdrs.service.worker.rule.impl.StsRuleExecutor;
 import com.google.gcs.sdrs.scheduler.JobScheduler;
+import com.google.gcs.sdrs.util.SharedHttpTransport;
+import com.google.gcs.sdrs.util.StsAsyncClient;
 import java.util.concurrent.TimeUnit;
 import org.glassfish.grizzly.http.server.HttpServer;
 import org.slf4j.Logger;
@@ -72,6 +81,15 @@ public class ServerShutdownHook implements Runnable {
     }
 
     PubSubMessageQueueManagerImpl.getInstance().shutdown();
+    StsNotificationSubscriber.getInstance().shutdown();
+    PooledStsJobIndex.getInstance().shutdown();
+    ExecutionLeaseManager.getInstance().shutdown();
+    RetentionJobArchiver.getInstance().shutdown();
+    ExecuteRetentionWorker.shutdown(GRACE_PERIOD_IN_SECONDS, TimeUnit.SECONDS);
+    StsRuleExecutor.shutdown(GRACE_PERIOD_IN_SECONDS, TimeUnit.SECONDS);
+    ValidationWorker.shutdown(GRACE_PERIOD_IN_SECONDS, TimeUnit.SECONDS);
+    StsAsyncClient.shutdown(GRACE_PERIOD_IN_SECONDS, TimeUnit.SECONDS);
+    SharedHttpTransport.getInstance().shutdown();
 
     logger.info("Shutting down web server...");
     server.shutdown(GRACE_PERIOD_IN_SECONDS, TimeUnit.SECONDS);
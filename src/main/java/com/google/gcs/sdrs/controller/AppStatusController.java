@@ -19,7 +19,10 @@
 package com.google.gcs.sdrs.controller;
 
 import com.google.gcs.sdrs.dao.BaseDao;
+import com.google.gcs.sdrs.service.cache.TransferJobCache;
 import com.google.gcs.sdrs.service.mq.PubSubMessageQueueManagerImpl;
+import com.google.gcs.sdrs.util.SharedHttpTransport;
+import com.google.gcs.sdrs.util.StsRateLimiter;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
@@ -55,6 +58,15 @@ public class AppStatusController extends BaseController{
       builder.append("PubSub is DOWN\n");
       logger.error("PubSub topic unreachable ...");
     }
+
+    builder.append(
+        String.format(
+            "Transfer job cache %s\n", TransferJobCache.getInstance().getStatsSummary()));
+    builder.append(
+        String.format("STS rate limits %s\n", StsRateLimiter.getInstance().getStatsSummary()));
+    builder.append(
+        String.format(
+            "HTTP connection pool %s\n", SharedHttpTransport.getInstance().getStatsSummary()));
     return builder.toString();
   }
 
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.controller;
+
+import com.google.gcs.sdrs.controller.pojo.ArchivedRetentionJobResponse;
+import com.google.gcs.sdrs.controller.validation.ValidationResult;
+import com.google.gcs.sdrs.dao.model.RetentionJob;
+import com.google.gcs.sdrs.service.manager.RetentionJobArchiver;
+import java.util.ArrayList;
+import java.util.List;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/** Controller for querying retention jobs that were moved to the archive tables. */
+@Path("/retentionjobs/archive")
+public class RetentionJobArchiveController extends BaseController {
+
+  RetentionJobArchiver retentionJobArchiver = RetentionJobArchiver.getInstance();
+
+  /** Archive read endpoint */
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getArchivedJobs(
+      @QueryParam("dataStorageName") String dataStorageName,
+      @QueryParam("days") @DefaultValue("365") int days) {
+    try {
+      if (dataStorageName == null || dataStorageName.isEmpty()) {
+        throw new ValidationException(ValidationResult.fromString("dataStorageName is required"));
+      }
+      if (days <= 0) {
+        throw new ValidationException(ValidationResult.fromString("days must be positive"));
+      }
+
+      List<ArchivedRetentionJobResponse> responses = new ArrayList<>();
+      for (RetentionJob job : retentionJobArchiver.findArchivedJobs(dataStorageName, days)) {
+        responses.add(toResponse(job));
+      }
+      return Response.ok(responses).build();
+    } catch (Exception exception) {
+      return errorResponse(exception);
+    }
+  }
+
+  private ArchivedRetentionJobResponse toResponse(RetentionJob job) {
+    ArchivedRetentionJobResponse response = new ArchivedRetentionJobResponse();
+    response.setId(job.getId());
+    response.setName(job.getName());
+    response.setRetentionRuleId(job.getRetentionRuleId());
+    response.setRetentionRuleVersion(job.getRetentionRuleVersion());
+    response.setRetentionRuleType(job.getRetentionRuleType());
+    response.setDataStorageName(job.getRetentionRuleDataStorageName());
+    response.setProjectId(job.getRetentionRuleProjectId());
+    response.setType(job.getType());
+    response.setBatchId(job.getBatchId());
+    response.setCreatedAt(job.getCreatedAt());
+    return response;
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.controller.pojo;
+
+import com.google.gcs.sdrs.common.RetentionRuleType;
+import java.sql.Timestamp;
+
+public class ArchivedRetentionJobResponse extends BaseHttpResponse {
+
+  private Integer id;
+  private String name;
+  private Integer retentionRuleId;
+  private Integer retentionRuleVersion;
+  private RetentionRuleType retentionRuleType;
+  private String dataStorageName;
+  private String projectId;
+  private String type;
+  private String batchId;
+  private Timestamp createdAt;
+
+  public Integer getId() {
+    return id;
+  }
+
+  public void setId(Integer id) {
+    this.id = id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public Integer getRetentionRuleId() {
+    return retentionRuleId;
+  }
+
+  public void setRetentionRuleId(Integer retentionRuleId) {
+    this.retentionRuleId = retentionRuleId;
+  }
+
+  public Integer getRetentionRuleVersion() {
+    return retentionRuleVersion;
+  }
+
+  public void setRetentionRuleVersion(Integer retentionRuleVersion) {
+    this.retentionRuleVersion = retentionRuleVersion;
+  }
+
+  public RetentionRuleType getRetentionRuleType() {
+    return retentionRuleType;
+  }
+
+  public void setRetentionRuleType(RetentionRuleType retentionRuleType) {
+    this.retentionRuleType = retentionRuleType;
+  }
+
+  public String getDataStorageName() {
+    return dataStorageName;
+  }
+
+  public void setDataStorageName(String dataStorageName) {
+    this.dataStorageName = dataStorageName;
+  }
+
+  public String getProjectId() {
+    return projectId;
+  }
+
+  public void setProjectId(String projectId) {
+    this.projectId = projectId;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public void setType(String type) {
+    this.type = type;
+  }
+
+  public String getBatchId() {
+    return batchId;
+  }
+
+  public void setBatchId(String batchId) {
+    this.batchId = batchId;
+  }
+
+  public Timestamp getCreatedAt() {
+    return createdAt;
+  }
+
+  public void setCreatedAt(Timestamp createdAt) {
+    this.createdAt = createdAt;
+  }
+}
@@ -17,6 +17,7 @@
 
 package com.google.gcs.sdrs.dao;
 
+import com.google.gcs.sdrs.dao.model.ExecutionLease;
 import com.google.gcs.sdrs.dao.model.PooledStsJob;
 import com.google.gcs.sdrs.dao.model.RetentionJob;
 import com.google.gcs.sdrs.dao.model.RetentionJobValidation;
@@ -98,6 +99,7 @@ public abstract class BaseDao<T, Id extends Serializable> implements Dao<T, Id>
                 .addAnnotatedClass(RetentionJob.class)
                 .addAnnotatedClass(RetentionJobValidation.class)
                 .addAnnotatedClass(PooledStsJob.class)
+                .addAnnotatedClass(ExecutionLease.class)
                 .getMetadataBuilder()
                 .build();
 
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.dao;
+
+import com.google.gcs.sdrs.dao.model.ExecutionLease;
+import java.util.List;
+
+/**
+ * Leases over partitions of the execution work, shared by all SDRS instances through the database.
+ * Lease expiry is always evaluated with the database clock.
+ */
+public interface ExecutionLeaseDao extends Dao<ExecutionLease, String> {
+
+  /**
+   * Acquires a lease that is free, expired or already held by the owner
+   *
+   * @param partitionKey the partition to lease
+   * @param owner the id of the acquiring instance
+   * @param leaseDurationInSeconds how long the lease is valid without a renewal
+   * @return true if the owner holds the lease now
+   */
+  boolean tryAcquire(String partitionKey, String owner, int leaseDurationInSeconds);
+
+  /**
+   * Extends all leases held by an owner
+   *
+   * @return the number of renewed leases
+   */
+  int renewAll(String owner, int leaseDurationInSeconds);
+
+  /** Releases a lease if it is held by the owner */
+  void release(String partitionKey, String owner);
+
+  /** Releases all leases held by the owner */
+  void releaseAll(String owner);
+
+  /**
+   * Deletes all expired leases, so the leases of stopped instances do not pile up
+   *
+   * @return the number of deleted leases
+   */
+  int deleteExpired();
+
+  /** Gets all leases that have not expired */
+  List<ExecutionLease> findActiveLeases();
+}
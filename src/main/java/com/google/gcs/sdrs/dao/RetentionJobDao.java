@@ -1,6 +1,7 @@
 package com.google.gcs.sdrs.dao;
 
 import com.google.gcs.sdrs.dao.model.RetentionJob;
+import java.sql.Timestamp;
 import java.util.List;
 
 public interface RetentionJobDao extends Dao<RetentionJob, Integer> {
@@ -10,4 +11,36 @@ public interface RetentionJobDao extends Dao<RetentionJob, Integer> {
   List<RetentionJob> findJobsByRuleIdAndProjectId(int ruleId, String projectId);
 
   RetentionJob findLatestDefaultJob(String dataStorageName);
+
+  /**
+   * Inserts new retention jobs in one transaction, using JDBC batches. A job that can't be inserted
+   * does not keep the others from being saved.
+   *
+   * <p>The batches only save round trips when the connection URL sets
+   * rewriteBatchedStatements=true. The driver then sends a batch as a single multi-row insert, so
+   * a job that can't be inserted fails the jobs of its whole batch.
+   *
+   * @param jobs the new {@link RetentionJob}s
+   * @return the jobs that failed to be inserted. Empty if all were saved.
+   */
+  List<RetentionJob> insertBatch(List<RetentionJob> jobs);
+
+  /**
+   * Moves a batch of terminal retention jobs and their validations into the archive tables. A job
+   * is terminal when none of its validations is pending. The batch is moved in one transaction.
+   *
+   * @param createdBefore only jobs created before this time are archived
+   * @param batchSize the maximum number of jobs to archive
+   * @return the number of jobs archived. Less than the batch size once no more jobs are left.
+   */
+  int archiveBatch(Timestamp createdBefore, int batchSize);
+
+  /**
+   * Gets the archived retention jobs of a data storage, latest first
+   *
+   * @param dataStorageName the data storage name of the jobs
+   * @param createdAfter only jobs created at or after this time are returned
+   * @return a {@link List} of archived {@link RetentionJob}s
+   */
+  List<RetentionJob> findArchivedJobs(String dataStorageName, Timestamp createdAfter);
 }
@@ -2,6 +2,7 @@ package com.google.gcs.sdrs.dao;
 
 import com.google.gcs.sdrs.dao.model.RetentionJob;
 import com.google.gcs.sdrs.dao.model.RetentionJobValidation;
+import java.sql.Timestamp;
 import java.util.List;
 
 /** Defines available persistence operations for RetentionJobValidation functions */
@@ -10,4 +11,8 @@ public interface RetentionJobValidationDao extends Dao<RetentionJobValidation, I
   List<RetentionJob> findAllPendingRetentionJobs();
 
   List<RetentionJobValidation> findAllByRetentionJobNames(List<String> retentionJobNames);
+
+  List<RetentionJob> findPendingRetentionJobsByName(String jobName, Timestamp createdBefore);
+
+  void upsertBatch(List<RetentionJobValidation> validations);
 }
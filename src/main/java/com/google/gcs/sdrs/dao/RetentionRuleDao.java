@@ -47,4 +47,6 @@ public interface RetentionRuleDao extends Dao<RetentionRule, Integer> {
   RetentionRule findGlobalRuleByProjectId(String projectId);
 
   List<RetentionRule> findDefaultRulesByProjectId(String projectId);
+
+  List<RetentionRule> findAllActiveRules();
 }
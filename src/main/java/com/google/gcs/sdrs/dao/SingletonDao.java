@@ -17,6 +17,7 @@
 
 package com.google.gcs.sdrs.dao;
 
+import com.google.gcs.sdrs.dao.impl.ExecutionLeaseDaoImpl;
 import com.google.gcs.sdrs.dao.impl.RetentionJobDaoImpl;
 import com.google.gcs.sdrs.dao.impl.RetentionJobValidationDaoImpl;
 import com.google.gcs.sdrs.dao.impl.RetentionRuleDaoImpl;
@@ -29,6 +30,7 @@ public class SingletonDao {
   private static RetentionJobDao retentionJobDao;
   private static RetentionJobValidationDao retentionJobValidationDao;
   private static PooledStsJobDao pooledStsJobDao;
+  private static ExecutionLeaseDao executionLeaseDao;
 
   public static synchronized RetentionRuleDao getRetentionRuleDao() {
     if (retentionRuleDao == null) {
@@ -57,4 +59,11 @@ public class SingletonDao {
     }
     return retentionJobValidationDao;
   }
+
+  public static synchronized ExecutionLeaseDao getExecutionLeaseDao() {
+    if (executionLeaseDao == null) {
+      executionLeaseDao = new ExecutionLeaseDaoImpl();
+    }
+    return executionLeaseDao;
+  }
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.dao.impl;
+
+import com.google.gcs.sdrs.dao.ExecutionLeaseDao;
+import com.google.gcs.sdrs.dao.model.ExecutionLease;
+import java.util.List;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+
+public class ExecutionLeaseDaoImpl extends GenericDao<ExecutionLease, String>
+    implements ExecutionLeaseDao {
+
+  private static final String INSERT_LEASE_SQL =
+      "INSERT IGNORE INTO execution_lease (partition_key, owner, expires_at) "
+          + "VALUES (:partitionKey, :owner, TIMESTAMPADD(SECOND, :duration, NOW()))";
+  private static final String TAKE_OVER_LEASE_SQL =
+      "UPDATE execution_lease "
+          + "SET owner = :owner, expires_at = TIMESTAMPADD(SECOND, :duration, NOW()) "
+          + "WHERE partition_key = :partitionKey AND (owner = :owner OR expires_at < NOW())";
+  private static final String RENEW_LEASES_SQL =
+      "UPDATE execution_lease SET expires_at = TIMESTAMPADD(SECOND, :duration, NOW()) "
+          + "WHERE owner = :owner";
+  private static final String RELEASE_LEASE_SQL =
+      "DELETE FROM execution_lease WHERE partition_key = :partitionKey AND owner = :owner";
+  private static final String RELEASE_LEASES_SQL =
+      "DELETE FROM execution_lease WHERE owner = :owner";
+  private static final String DELETE_EXPIRED_LEASES_SQL =
+      "DELETE FROM execution_lease WHERE expires_at < NOW()";
+  private static final String FIND_ACTIVE_LEASES_SQL =
+      "SELECT * FROM execution_lease WHERE expires_at >= NOW()";
+
+  public ExecutionLeaseDaoImpl() {
+    super(ExecutionLease.class);
+  }
+
+  @Override
+  public boolean tryAcquire(String partitionKey, String owner, int leaseDurationInSeconds) {
+    Session session = openSession();
+    Transaction transaction = session.beginTransaction();
+    // a new lease is inserted, an existing one is only taken over once it has expired
+    int updatedRows =
+        session
+            .createNativeQuery(INSERT_LEASE_SQL)
+            .setParameter("partitionKey", partitionKey)
+            .setParameter("owner", owner)
+            .setParameter("duration", leaseDurationInSeconds)
+            .executeUpdate();
+    if (updatedRows == 0) {
+      updatedRows =
+          session
+              .createNativeQuery(TAKE_OVER_LEASE_SQL)
+              .setParameter("partitionKey", partitionKey)
+              .setParameter("owner", owner)
+              .setParameter("duration", leaseDurationInSeconds)
+              .executeUpdate();
+    }
+    closeSessionWithTransaction(session, transaction);
+    return updatedRows > 0;
+  }
+
+  @Override
+  public int renewAll(String owner, int leaseDurationInSeconds) {
+    Session session = openSession();
+    Transaction transaction = session.beginTransaction();
+    int updatedRows =
+        session
+            .createNativeQuery(RENEW_LEASES_SQL)
+            .setParameter("owner", owner)
+            .setParameter("duration", leaseDurationInSeconds)
+            .executeUpdate();
+    closeSessionWithTransaction(session, transaction);
+    return updatedRows;
+  }
+
+  @Override
+  public void release(String partitionKey, String owner) {
+    Session session = openSession();
+    Transaction transaction = session.beginTransaction();
+    session
+        .createNativeQuery(RELEASE_LEASE_SQL)
+        .setParameter("partitionKey", partitionKey)
+        .setParameter("owner", owner)
+        .executeUpdate();
+    closeSessionWithTransaction(session, transaction);
+  }
+
+  @Override
+  public void releaseAll(String owner) {
+    Session session = openSession();
+    Transaction transaction = session.beginTransaction();
+    session.createNativeQuery(RELEASE_LEASES_SQL).setParameter("owner", owner).executeUpdate();
+    closeSessionWithTransaction(session, transaction);
+  }
+
+  @Override
+  public int deleteExpired() {
+    Session session = openSession();
+    Transaction transaction = session.beginTransaction();
+    int deletedRows = session.createNativeQuery(DELETE_EXPIRED_LEASES_SQL).executeUpdate();
+    closeSessionWithTransaction(session, transaction);
+    return deletedRows;
+  }
+
+  @Override
+  public List<ExecutionLease> findActiveLeases() {
+    Session session = openSession();
+    List<ExecutionLease> result =
+        session.createNativeQuery(FIND_ACTIVE_LEASES_SQL, ExecutionLease.class).getResultList();
+    closeSession(session);
+    return result;
+  }
+}
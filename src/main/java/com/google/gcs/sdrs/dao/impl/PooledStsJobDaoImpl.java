@@ -62,6 +62,22 @@ public class PooledStsJobDaoImpl extends GenericDao<PooledStsJob, Integer>
     return result;
   }
 
+  /** Returns all pooled STS jobs of all buckets */
+  @Override
+  public List<PooledStsJob> getAllPooledStsJobs() {
+    Session session = openSession();
+    CriteriaBuilder builder = session.getCriteriaBuilder();
+    CriteriaQuery<PooledStsJob> criteria = builder.createQuery(PooledStsJob.class);
+    Root<PooledStsJob> root = criteria.from(PooledStsJob.class);
+
+    criteria.select(root).orderBy(builder.asc(root.get("id")));
+
+    Query<PooledStsJob> query = session.createQuery(criteria);
+    List<PooledStsJob> result = query.getResultList();
+    closeSession(session);
+    return result;
+  }
+
   @Override
   public PooledStsJob getJob(
       String sourceBucket, String sourceProjectId, String scheduleTimeOfDay, String type) {
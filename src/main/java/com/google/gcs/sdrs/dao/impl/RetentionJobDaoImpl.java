@@ -21,16 +21,83 @@ package com.google.gcs.sdrs.dao.impl;
 import com.google.gcs.sdrs.common.RetentionRuleType;
 import com.google.gcs.sdrs.dao.RetentionJobDao;
 import com.google.gcs.sdrs.dao.model.RetentionJob;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 import org.hibernate.Session;
+import org.hibernate.Transaction;
 import org.hibernate.query.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class RetentionJobDaoImpl extends GenericDao<RetentionJob, Integer>
     implements RetentionJobDao {
 
+  private static final Logger logger = LoggerFactory.getLogger(RetentionJobDaoImpl.class);
+  static final int INSERT_BATCH_SIZE = 20;
+  // created_at and updated_at are left to their column defaults
+  static final String INSERT_RETENTION_JOB_SQL =
+      "INSERT INTO retention_job (name, retention_rule_id, retention_rule_version, "
+          + "retention_rule_type, retention_rule_data_storage_name, retention_rule_project_id, "
+          + "type, batch_id, metadata, data_storage_root) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+  // the newest job of every data storage and rule type is kept, the rule executor compares the
+  // current rules with it (see findLatestDefaultJob)
+  static final String NOT_LATEST_JOB_PREDICATE =
+      "EXISTS (SELECT 1 FROM retention_job newer "
+          + "WHERE newer.retention_rule_data_storage_name = j.retention_rule_data_storage_name "
+          + "AND newer.retention_rule_type <=> j.retention_rule_type "
+          + "AND (newer.created_at > j.created_at "
+          + "OR (newer.created_at = j.created_at AND newer.id > j.id)))";
+  // a job is terminal once none of its validations is pending. Locking the selected jobs keeps
+  // the archivers of several instances from copying the same jobs.
+  static final String SELECT_ARCHIVABLE_JOB_IDS_SQL =
+      "SELECT j.id FROM retention_job j WHERE j.created_at < :createdBefore AND NOT EXISTS "
+          + "(SELECT 1 FROM retention_job_validation v WHERE v.retention_job_id = j.id "
+          + "AND v.status = 'pending') AND "
+          + NOT_LATEST_JOB_PREDICATE
+          + " ORDER BY j.id LIMIT :batchSize FOR UPDATE";
+  private static final String RETENTION_JOB_COLUMNS =
+      "id, name, retention_rule_id, retention_rule_version, retention_rule_type, "
+          + "retention_rule_data_storage_name, retention_rule_project_id, created_at, updated_at, "
+          + "type, batch_id, metadata, data_storage_root";
+  private static final String RETENTION_JOB_VALIDATION_COLUMNS =
+      "id, retention_job_id, job_operation_name, status, created_at, updated_at, batch_id, "
+          + "start_time, end_time, metadata";
+  private static final String ARCHIVE_JOBS_SQL =
+      "INSERT INTO retention_job_archive ("
+          + RETENTION_JOB_COLUMNS
+          + ") SELECT "
+          + RETENTION_JOB_COLUMNS
+          + " FROM retention_job WHERE id IN (:ids)";
+  private static final String ARCHIVE_VALIDATIONS_SQL =
+      "INSERT INTO retention_job_validation_archive ("
+          + RETENTION_JOB_VALIDATION_COLUMNS
+          + ") SELECT "
+          + RETENTION_JOB_VALIDATION_COLUMNS
+          + " FROM retention_job_validation WHERE retention_job_id IN (:ids)";
+  private static final String DELETE_VALIDATIONS_SQL =
+      "DELETE FROM retention_job_validation WHERE retention_job_id IN (:ids)";
+  private static final String DELETE_JOBS_SQL = "DELETE FROM retention_job WHERE id IN (:ids)";
+  // the validations reference the jobs, so they are deleted first
+  private static final List<String> MOVE_TO_ARCHIVE_SQL =
+      Arrays.asList(
+          ARCHIVE_VALIDATIONS_SQL, ARCHIVE_JOBS_SQL, DELETE_VALIDATIONS_SQL, DELETE_JOBS_SQL);
+  private static final String FIND_ARCHIVED_JOBS_SQL =
+      "SELECT "
+          + RETENTION_JOB_COLUMNS
+          + " FROM retention_job_archive WHERE retention_rule_data_storage_name = :dataStorageName "
+          + "AND created_at >= :createdAfter ORDER BY created_at DESC";
+
   public RetentionJobDaoImpl() {
     super(RetentionJob.class);
   }
@@ -92,4 +159,124 @@ public class RetentionJobDaoImpl extends GenericDao<RetentionJob, Integer>
     closeSession(session);
     return retentionJob;
   }
+
+  @Override
+  public int archiveBatch(Timestamp createdBefore, int batchSize) {
+    Session session = openSession();
+    Transaction transaction = session.beginTransaction();
+    try {
+      List<?> ids =
+          session
+              .createNativeQuery(SELECT_ARCHIVABLE_JOB_IDS_SQL)
+              .setParameter("createdBefore", createdBefore)
+              .setParameter("batchSize", batchSize)
+              .getResultList();
+      if (!ids.isEmpty()) {
+        for (String sql : MOVE_TO_ARCHIVE_SQL) {
+          session.createNativeQuery(sql).setParameterList("ids", ids).executeUpdate();
+        }
+      }
+      transaction.commit();
+      return ids.size();
+    } catch (RuntimeException e) {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+      throw e;
+    } finally {
+      closeSession(session);
+    }
+  }
+
+  @Override
+  public List<RetentionJob> findArchivedJobs(String dataStorageName, Timestamp createdAfter) {
+    Session session = openSession();
+    List<RetentionJob> result =
+        session
+            .createNativeQuery(FIND_ARCHIVED_JOBS_SQL, RetentionJob.class)
+            .setParameter("dataStorageName", dataStorageName)
+            .setParameter("createdAfter", createdAfter)
+            .getResultList();
+    closeSession(session);
+    return result;
+  }
+
+  @Override
+  public List<RetentionJob> insertBatch(List<RetentionJob> jobs) {
+    List<RetentionJob> failedJobs = new ArrayList<>();
+    if (jobs == null || jobs.isEmpty()) {
+      return failedJobs;
+    }
+
+    // retention job ids are generated by the database, which keeps hibernate from batching inserts
+    Session session = openSession();
+    Transaction transaction = null;
+    try {
+      transaction = session.beginTransaction();
+      session.doWork(connection -> insertBatch(connection, jobs, failedJobs));
+      transaction.commit();
+    } catch (RuntimeException e) {
+      logger.error(
+          String.format("Failed to insert %d retention jobs: %s", jobs.size(), e.getMessage()), e);
+      if (transaction != null && transaction.isActive()) {
+        transaction.rollback();
+      }
+      failedJobs.clear();
+      failedJobs.addAll(jobs);
+    } finally {
+      closeSession(session);
+    }
+    return failedJobs;
+  }
+
+  static void insertBatch(
+      Connection connection, List<RetentionJob> jobs, List<RetentionJob> failedJobs)
+      throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(INSERT_RETENTION_JOB_SQL)) {
+      for (int start = 0; start < jobs.size(); start += INSERT_BATCH_SIZE) {
+        List<RetentionJob> batch =
+            jobs.subList(start, Math.min(start + INSERT_BATCH_SIZE, jobs.size()));
+        for (RetentionJob job : batch) {
+          bindRetentionJob(statement, job);
+          statement.addBatch();
+        }
+
+        try {
+          statement.executeBatch();
+        } catch (BatchUpdateException e) {
+          // the update counts tell which statements failed, if the driver went on after a failure.
+          // A rewritten multi-row insert fails as a whole and reports all of its rows as failed,
+          // while the rows of successful ones are counted as SUCCESS_NO_INFO.
+          int[] updateCounts = e.getUpdateCounts();
+          for (int i = 0; i < batch.size(); i++) {
+            if (updateCounts == null
+                || i >= updateCounts.length
+                || updateCounts[i] == Statement.EXECUTE_FAILED) {
+              failedJobs.add(batch.get(i));
+            }
+          }
+          logger.error(String.format("Failed to insert retention jobs: %s", e.getMessage()), e);
+          statement.clearBatch();
+        }
+      }
+    }
+  }
+
+  private static void bindRetentionJob(PreparedStatement statement, RetentionJob job)
+      throws SQLException {
+    statement.setString(1, job.getName());
+    statement.setObject(2, job.getRetentionRuleId(), Types.INTEGER);
+    statement.setObject(3, job.getRetentionRuleVersion(), Types.INTEGER);
+    statement.setString(
+        4,
+        job.getRetentionRuleType() == null
+            ? null
+            : job.getRetentionRuleType().toDatabaseRepresentation());
+    statement.setString(5, job.getRetentionRuleDataStorageName());
+    statement.setString(6, job.getRetentionRuleProjectId());
+    statement.setString(7, job.getType());
+    statement.setString(8, job.getBatchId());
+    statement.setString(9, job.getMetadata());
+    statement.setString(10, job.getDataStorageRoot());
+  }
 }
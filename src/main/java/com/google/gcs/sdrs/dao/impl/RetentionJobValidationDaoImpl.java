@@ -18,22 +18,30 @@
 
 package com.google.gcs.sdrs.dao.impl;
 
+import com.google.gcs.sdrs.SdrsApplication;
 import com.google.gcs.sdrs.common.RetentionJobStatusType;
 import com.google.gcs.sdrs.dao.RetentionJobValidationDao;
 import com.google.gcs.sdrs.dao.model.RetentionJob;
 import com.google.gcs.sdrs.dao.model.RetentionJobValidation;
-import java.sql.Date;
-import java.time.LocalDate;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.function.BiFunction;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Join;
-import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
 import org.hibernate.Session;
+import org.hibernate.Transaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,10 +49,44 @@ import org.slf4j.LoggerFactory;
 public class RetentionJobValidationDaoImpl extends GenericDao<RetentionJobValidation, Integer>
     implements RetentionJobValidationDao {
 
+  private static final String DEFAULT_PAGE_SIZE = "500";
+  private static final String DEFAULT_LOOK_BACK_IN_DAYS = "7";
+  private static final String DEFAULT_RECHECK_MAX_DELAY_IN_MINUTES = "720";
+  static final int UPSERT_BATCH_SIZE = 20;
+  // matches existing records on the unique (retention_job_id, job_operation_name) key. The next
+  // check of an operation that is still pending is pushed out by the time it has been pending since
+  // the record was created, bounded by the maximum delay bound to the last parameter.
+  static final String UPSERT_RETENTION_JOB_VALIDATION_SQL =
+      "INSERT INTO retention_job_validation (retention_job_id, job_operation_name, status, "
+          + "batch_id, start_time, end_time, metadata, next_check_at) "
+          + "VALUES (?, ?, ?, ?, ?, ?, ?, ?) "
+          + "ON DUPLICATE KEY UPDATE status = VALUES(status), batch_id = VALUES(batch_id), "
+          + "start_time = VALUES(start_time), end_time = VALUES(end_time), "
+          + "metadata = VALUES(metadata), "
+          + "next_check_at = IF(VALUES(next_check_at) IS NULL, NULL, "
+          + "GREATEST(VALUES(next_check_at), LEAST(TIMESTAMPADD(SECOND, ?, NOW()), "
+          + "TIMESTAMPADD(SECOND, TIMESTAMPDIFF(SECOND, created_at, NOW()), NOW()))))";
   private static final Logger logger = LoggerFactory.getLogger(RetentionJobValidationDaoImpl.class);
 
+  private final int pageSize;
+  private final long lookBackInDays;
+  private final Duration recheckMaxDelay;
+
   public RetentionJobValidationDaoImpl() {
     super(RetentionJobValidation.class);
+    pageSize =
+        Integer.valueOf(
+            SdrsApplication.getAppConfigProperty(
+                "validation.pendingJobs.pageSize", DEFAULT_PAGE_SIZE));
+    lookBackInDays =
+        Long.valueOf(
+            SdrsApplication.getAppConfigProperty(
+                "validation.pendingJobs.lookBackInDays", DEFAULT_LOOK_BACK_IN_DAYS));
+    recheckMaxDelay =
+        Duration.ofMinutes(
+            Long.valueOf(
+                SdrsApplication.getAppConfigProperty(
+                    "validation.recheck.maxDelayInMinutes", DEFAULT_RECHECK_MAX_DELAY_IN_MINUTES)));
   }
 
   /**
@@ -56,54 +98,164 @@ public class RetentionJobValidationDaoImpl extends GenericDao<RetentionJobValida
    * <p>Daily. Any daily job in the retention_job but does not have a record in the
    * retention_job_validation or status is pending for today
    *
+   * <p>Jobs without a validation record are only looked for among the jobs created within the
+   * look back window, so the cost of the query follows the number of jobs in flight rather than the
+   * size of the retention_job table. Jobs with a pending validation are only returned once their
+   * next check is due. Both queries are read in pages ordered by job id.
+   *
    * @return a Collection of {@link RetentionJob}s
    */
   @Override
   public List<RetentionJob> findAllPendingRetentionJobs() {
-    // Using a set means if a duplicate job is added from one of the query results, it will be
-    // skipped
-    Set<RetentionJob> results = new HashSet<>();
+    Timestamp now = Timestamp.from(Instant.now());
+    Timestamp createdSince = Timestamp.from(Instant.now().minus(Duration.ofDays(lookBackInDays)));
+    // a job found by both queries is only returned once
+    Map<Integer, RetentionJob> results = new LinkedHashMap<>();
+
+    Session session = openSession();
+    try {
+      readAllPages(
+          (afterJobId, limit) -> findSingleRunPendingJobs(session, now, afterJobId, limit),
+          pageSize,
+          results);
+      readAllPages(
+          (afterJobId, limit) ->
+              findSingleRunJobsWithNoStatus(session, createdSince, afterJobId, limit),
+          pageSize,
+          results);
+    } finally {
+      closeSession(session);
+    }
+    logger.debug(String.format("Found %d pending retention jobs.", results.size()));
+    return new ArrayList<>(results.values());
+  }
 
-    results.addAll(findAllSingleRunPendingJobs());
-    results.addAll(findAllSingleRunJobsWithNoStatus());
-    return new ArrayList<>(results);
+  /**
+   * Reads pages of jobs until a page is not full. Each page starts after the largest job id of the
+   * previous page.
+   *
+   * @param pageReader reads up to the given number of jobs with an id above the given id, ordered
+   *     by id
+   * @param pageSize the number of jobs per page
+   * @param results receives the jobs, keyed by id
+   */
+  static void readAllPages(
+      BiFunction<Integer, Integer, List<RetentionJob>> pageReader,
+      int pageSize,
+      Map<Integer, RetentionJob> results) {
+    int afterJobId = 0;
+    List<RetentionJob> page;
+    do {
+      page = pageReader.apply(afterJobId, pageSize);
+      for (RetentionJob job : page) {
+        results.putIfAbsent(job.getId(), job);
+        afterJobId = Math.max(afterJobId, job.getId());
+      }
+    } while (page.size() >= pageSize);
   }
 
   /**
-   * Get all DATASET/USER RetentionJobs with a RetentionJobValidation.status of pending
+   * Get the RetentionJobs of an STS job that are still in a pending state, i.e. the jobs that an
+   * operation of the STS job started at the given time may belong to
    *
-   * @return a list of RententionJob
+   * @param jobName the name of the STS job, i.e. "transferJobs/123"
+   * @param createdBefore only jobs created at or before this time are returned
+   * @return a list of RetentionJob, ordered by id
    */
-  private List<RetentionJob> findAllSingleRunPendingJobs() {
+  @Override
+  public List<RetentionJob> findPendingRetentionJobsByName(
+      String jobName, Timestamp createdBefore) {
+    Timestamp createdSince = Timestamp.from(Instant.now().minus(Duration.ofDays(lookBackInDays)));
     Session session = openSession();
-    Date oneDayAgo = Date.valueOf(LocalDate.now().atStartOfDay().toLocalDate());
     CriteriaBuilder builder = session.getCriteriaBuilder();
     CriteriaQuery<RetentionJob> query = builder.createQuery(RetentionJob.class);
     Root<RetentionJob> job = query.from(RetentionJob.class);
-    Join<RetentionJob, RetentionJobValidation> jobValidation =
-        job.join("jobValidations", JoinType.INNER);
-    jobValidation.on(builder.equal(jobValidation.get("status"), RetentionJobStatusType.PENDING));
+    query
+        .where(
+            builder.equal(job.get("name"), jobName),
+            builder.lessThanOrEqualTo(job.<Timestamp>get("createdAt"), createdBefore),
+            builder.or(
+                builder.exists(jobValidations(builder, query, job, RetentionJobStatusType.PENDING)),
+                builder.and(
+                    builder.greaterThanOrEqualTo(job.<Timestamp>get("createdAt"), createdSince),
+                    builder.not(builder.exists(jobValidations(builder, query, job, null))))))
+        .orderBy(builder.asc(job.<Integer>get("id")));
     List<RetentionJob> results = session.createQuery(query).getResultList();
     closeSession(session);
     return results;
   }
 
   /**
-   * Get all DATASET/USER RetentionJobs without a corresponding RetentionJobValidation record
+   * Get a page of DATASET/USER RetentionJobs with a RetentionJobValidation.status of pending that
+   * is due to be checked again
+   *
+   * <p>The query is driven by the pending validations, in retention_job_id order on the (status,
+   * retention_job_id) index, and joins their jobs. Walking retention_job with a correlated EXISTS
+   * would scan most of the table when few jobs are pending. A job with several pending validations
+   * is returned once per validation.
    *
-   * @return a list of RententionJob
+   * @return a list of RententionJob, ordered by id
    */
-  private List<RetentionJob> findAllSingleRunJobsWithNoStatus() {
-    Session session = openSession();
+  private List<RetentionJob> findSingleRunPendingJobs(
+      Session session, Timestamp dueAt, Integer afterJobId, Integer limit) {
     CriteriaBuilder builder = session.getCriteriaBuilder();
     CriteriaQuery<RetentionJob> query = builder.createQuery(RetentionJob.class);
+    Root<RetentionJobValidation> validation = query.from(RetentionJobValidation.class);
     Root<RetentionJob> job = query.from(RetentionJob.class);
-    Join<RetentionJob, RetentionJobValidation> jobValidation =
-        job.join("jobValidations", JoinType.LEFT);
-    query.where(builder.isNull(jobValidation.get("id")));
-    List<RetentionJob> results = session.createQuery(query).getResultList();
-    closeSession(session);
-    return results;
+    query
+        .select(job)
+        .where(
+            builder.equal(validation.get("status"), RetentionJobStatusType.PENDING),
+            builder.greaterThan(validation.<Integer>get("retentionJobId"), afterJobId),
+            builder.or(
+                builder.isNull(validation.get("nextCheckAt")),
+                builder.lessThanOrEqualTo(validation.<Timestamp>get("nextCheckAt"), dueAt)),
+            builder.equal(job.<Integer>get("id"), validation.<Integer>get("retentionJobId")))
+        .orderBy(builder.asc(validation.<Integer>get("retentionJobId")));
+    return session.createQuery(query).setMaxResults(limit).getResultList();
+  }
+
+  /**
+   * Get a page of DATASET/USER RetentionJobs without a corresponding RetentionJobValidation record
+   *
+   * @return a list of RententionJob created at or after createdSince, ordered by id
+   */
+  private List<RetentionJob> findSingleRunJobsWithNoStatus(
+      Session session, Timestamp createdSince, Integer afterJobId, Integer limit) {
+    CriteriaBuilder builder = session.getCriteriaBuilder();
+    CriteriaQuery<RetentionJob> query = builder.createQuery(RetentionJob.class);
+    Root<RetentionJob> job = query.from(RetentionJob.class);
+    query
+        .where(
+            builder.greaterThanOrEqualTo(job.<Timestamp>get("createdAt"), createdSince),
+            builder.greaterThan(job.<Integer>get("id"), afterJobId),
+            builder.not(builder.exists(jobValidations(builder, query, job, null))))
+        .orderBy(builder.asc(job.<Integer>get("id")));
+    return session.createQuery(query).setMaxResults(limit).getResultList();
+  }
+
+  /**
+   * A subquery for the validations of a job
+   *
+   * @param status the status of the validations, or null for any status
+   */
+  private static Subquery<Integer> jobValidations(
+      CriteriaBuilder builder,
+      CriteriaQuery<?> query,
+      Root<RetentionJob> job,
+      RetentionJobStatusType status) {
+    Subquery<Integer> validations = query.subquery(Integer.class);
+    Root<RetentionJobValidation> jobValidation = validations.from(RetentionJobValidation.class);
+    List<Predicate> predicates = new ArrayList<>();
+    predicates.add(
+        builder.equal(jobValidation.<Integer>get("retentionJobId"), job.<Integer>get("id")));
+    if (status != null) {
+      predicates.add(builder.equal(jobValidation.get("status"), status));
+    }
+    validations
+        .select(jobValidation.get("retentionJobId"))
+        .where(predicates.toArray(new Predicate[0]));
+    return validations;
   }
 
   /**
@@ -126,4 +278,73 @@ public class RetentionJobValidationDaoImpl extends GenericDao<RetentionJobValida
     closeSession(session);
     return results;
   }
+
+  /**
+   * Inserts or updates validation records in JDBC batches, without reading them first. A record is
+   * matched to an existing one by its retention job ID and operation name, the ID of the given
+   * entities is ignored. All records are written in a single transaction.
+   *
+   * <p>Requires the unique key of scripts/sql/mods/mod_6_validation_unique_job_operation.sql. The
+   * connection URL has to set rewriteBatchedStatements=true, otherwise the driver sends every
+   * record of a batch on its own.
+   *
+   * @param validations the validation records to write
+   */
+  @Override
+  public void upsertBatch(List<RetentionJobValidation> validations) {
+    if (validations == null || validations.isEmpty()) {
+      return;
+    }
+
+    Session session = openSession();
+    Transaction transaction = null;
+    try {
+      transaction = session.beginTransaction();
+      session.doWork(connection -> upsertBatch(connection, validations, recheckMaxDelay));
+      transaction.commit();
+    } catch (RuntimeException e) {
+      logger.error(
+          String.format(
+              "Failed to upsert %d retention job validations: %s",
+              validations.size(), e.getMessage()),
+          e);
+      if (transaction != null && transaction.isActive()) {
+        transaction.rollback();
+      }
+      throw e;
+    } finally {
+      closeSession(session);
+    }
+  }
+
+  static void upsertBatch(
+      Connection connection, List<RetentionJobValidation> validations, Duration recheckMaxDelay)
+      throws SQLException {
+    try (PreparedStatement statement =
+        connection.prepareStatement(UPSERT_RETENTION_JOB_VALIDATION_SQL)) {
+      for (int start = 0; start < validations.size(); start += UPSERT_BATCH_SIZE) {
+        for (RetentionJobValidation validation :
+            validations.subList(start, Math.min(start + UPSERT_BATCH_SIZE, validations.size()))) {
+          bindRetentionJobValidation(statement, validation);
+          statement.setLong(9, recheckMaxDelay.getSeconds());
+          statement.addBatch();
+        }
+        statement.executeBatch();
+      }
+    }
+  }
+
+  private static void bindRetentionJobValidation(
+      PreparedStatement statement, RetentionJobValidation validation) throws SQLException {
+    statement.setObject(1, validation.getRetentionJobId(), Types.INTEGER);
+    statement.setString(2, validation.getJobOperationName());
+    statement.setString(
+        3,
+        validation.getStatus() == null ? null : validation.getStatus().toDatabaseRepresentation());
+    statement.setString(4, validation.getBatchId());
+    statement.setTimestamp(5, validation.getStartTime());
+    statement.setTimestamp(6, validation.getEndTime());
+    statement.setString(7, validation.getMetadata());
+    statement.setTimestamp(8, validation.getNextCheckAt());
+  }
 }
@@ -260,4 +260,27 @@ public class RetentionRuleDaoImpl extends GenericDao<RetentionRule, Integer>
     closeSession(session);
     return result;
   }
+
+  /**
+   * Gets all active rules of every project, including the global rules, with a single query in a
+   * read-only transaction
+   *
+   * @return a {@link List} of active {@link RetentionRule}s
+   */
+  @Override
+  public List<RetentionRule> findAllActiveRules() {
+    Session session = openSession();
+    session.setDefaultReadOnly(true);
+    Transaction transaction = session.beginTransaction();
+    CriteriaBuilder builder = session.getCriteriaBuilder();
+    CriteriaQuery<RetentionRule> criteria = builder.createQuery(RetentionRule.class);
+    Root<RetentionRule> root = criteria.from(RetentionRule.class);
+
+    criteria.select(root).where(builder.equal(root.get("isActive"), true));
+
+    Query<RetentionRule> query = session.createQuery(criteria);
+    List<RetentionRule> result = query.getResultList();
+    closeSessionWithTransaction(session, transaction);
+    return result;
+  }
 }
@@ -67,6 +67,9 @@ public class RetentionJobValidation {
   @Column(name = "metadata")
   private String metadata;
 
+  @Column(name = "next_check_at")
+  private Timestamp nextCheckAt;
+
   public RetentionJobValidation() {}
 
   public Integer getId() {
@@ -140,4 +143,12 @@ public class RetentionJobValidation {
   public void setMetadata(String metadata) {
     this.metadata = metadata;
   }
+
+  public Timestamp getNextCheckAt() {
+    return nextCheckAt;
+  }
+
+  public void setNextCheckAt(Timestamp nextCheckAt) {
+    this.nextCheckAt = nextCheckAt;
+  }
 }
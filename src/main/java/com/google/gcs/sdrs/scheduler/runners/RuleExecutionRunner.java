@@ -23,7 +23,10 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.gcs.sdrs.SdrsApplication;
 import com.google.gcs.sdrs.common.ExecutionEventType;
 import com.google.gcs.sdrs.controller.pojo.ExecutionEventRequest;
+import com.google.gcs.sdrs.service.EventsService;
+import com.google.gcs.sdrs.service.impl.EventsServiceImpl;
 import com.google.gcs.sdrs.util.SdrsRequestClientUtil;
+import java.util.UUID;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
@@ -32,19 +35,56 @@ import javax.ws.rs.core.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Calls the Rule execution endpoint when run */
+/**
+ * Starts a run of every retention rule. The run is either submitted to the job manager of this
+ * process, or requested from the Rule execution endpoint of the configured SDRS host.
+ */
 public class RuleExecutionRunner implements Runnable {
 
   private static final Logger logger = LoggerFactory.getLogger(RuleExecutionRunner.class);
 
-  /** Calls the SDRS rule execution endpoint to run every retention rule */
+  private final boolean isInProcess;
+  private EventsService eventsService;
+
+  public RuleExecutionRunner() {
+    this(
+        Boolean.valueOf(SdrsApplication.getAppConfigProperty("scheduler.task.inProcess", "false")),
+        null);
+  }
+
+  RuleExecutionRunner(boolean isInProcess, EventsService eventsService) {
+    this.isInProcess = isInProcess;
+    this.eventsService = eventsService;
+  }
+
+  /** Runs every retention rule */
   public void run() {
-    logger.info("Making request to execution service endpoint.");
+    ExecutionEventRequest requestObject = new ExecutionEventRequest();
+    requestObject.setExecutionEventType(ExecutionEventType.POLICY);
+
+    if (isInProcess) {
+      submitExecution(requestObject);
+    } else {
+      requestExecution(requestObject);
+    }
+  }
 
+  /** Submits the rule execution to the job manager of this process */
+  private void submitExecution(ExecutionEventRequest requestObject) {
     try {
-      ExecutionEventRequest requestObject = new ExecutionEventRequest();
-      requestObject.setExecutionEventType(ExecutionEventType.POLICY);
+      String correlationId = UUID.randomUUID().toString();
+      logger.info(String.format("Submitting rule execution %s in process.", correlationId));
+      getEventsService().processExecutionEvent(requestObject, correlationId);
+    } catch (Exception e) {
+      logger.error(String.format("Failed to submit rule execution: %s", e.getMessage()), e);
+    }
+  }
+
+  /** Calls the SDRS rule execution endpoint to run every retention rule */
+  private void requestExecution(ExecutionEventRequest requestObject) {
+    logger.info("Making request to execution service endpoint.");
 
+    try {
       ObjectMapper jsonMapper = new ObjectMapper();
       String requestObjectJson = jsonMapper.writeValueAsString(requestObject);
       String endpoint =
@@ -61,4 +101,11 @@ public class RuleExecutionRunner implements Runnable {
       logger.error("Failed to request Execution endpoint: ", e.getMessage());
     }
   }
+
+  private EventsService getEventsService() {
+    if (eventsService == null) {
+      eventsService = new EventsServiceImpl();
+    }
+    return eventsService;
+  }
 }
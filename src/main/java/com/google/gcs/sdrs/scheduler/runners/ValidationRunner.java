@@ -18,7 +18,10 @@
 package com.google.gcs.sdrs.scheduler.runners;
 
 import com.google.gcs.sdrs.SdrsApplication;
+import com.google.gcs.sdrs.service.EventsService;
+import com.google.gcs.sdrs.service.impl.EventsServiceImpl;
 import com.google.gcs.sdrs.util.SdrsRequestClientUtil;
+import java.util.UUID;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Invocation;
@@ -26,13 +29,50 @@ import javax.ws.rs.core.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Calls the Validation service endpoint when run */
+/**
+ * Starts a validation run. The run is either submitted to the job manager of this process, or
+ * requested from the Validation service endpoint of the configured SDRS host.
+ */
 public class ValidationRunner implements Runnable {
 
   private static final Logger logger = LoggerFactory.getLogger(ValidationRunner.class);
 
-  /** Calls the validate job execution status endpoint */
+  private final boolean isInProcess;
+  private EventsService eventsService;
+
+  public ValidationRunner() {
+    this(
+        Boolean.valueOf(SdrsApplication.getAppConfigProperty("scheduler.task.inProcess", "false")),
+        null);
+  }
+
+  ValidationRunner(boolean isInProcess, EventsService eventsService) {
+    this.isInProcess = isInProcess;
+    this.eventsService = eventsService;
+  }
+
+  /** Validates the status of the pending retention jobs */
   public void run() {
+    if (isInProcess) {
+      submitValidation();
+    } else {
+      requestValidation();
+    }
+  }
+
+  /** Submits the validation to the job manager of this process */
+  private void submitValidation() {
+    try {
+      String correlationId = UUID.randomUUID().toString();
+      logger.info(String.format("Submitting validation %s in process.", correlationId));
+      getEventsService().processValidationEvent(correlationId);
+    } catch (Exception e) {
+      logger.error(String.format("Failed to submit validation: %s", e.getMessage()), e);
+    }
+  }
+
+  /** Calls the validate job execution status endpoint */
+  private void requestValidation() {
     try {
       String endpoint =
           SdrsApplication.getAppConfigProperty("scheduler.task.validationService.endpoint");
@@ -46,4 +86,11 @@ public class ValidationRunner implements Runnable {
       logger.error("Failed to request Validation endpoint. " + e.getMessage());
     }
   }
+
+  private EventsService getEventsService() {
+    if (eventsService == null) {
+      eventsService = new EventsServiceImpl();
+    }
+    return eventsService;
+  }
 }
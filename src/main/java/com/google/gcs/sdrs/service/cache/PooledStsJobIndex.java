@@ -0,0 +1,176 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.service.cache;
+
+import com.google.gcs.sdrs.SdrsApplication;
+import com.google.gcs.sdrs.dao.PooledStsJobDao;
+import com.google.gcs.sdrs.dao.SingletonDao;
+import com.google.gcs.sdrs.dao.model.PooledStsJob;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A process wide, in-memory index of the pooled STS jobs.
+ *
+ * <p>The whole pooled_sts_job table is loaded on the first lookup and indexed by source bucket,
+ * source project and type. The index is invalidated whenever this node changes the job pool and is
+ * reloaded periodically, so changes made through other nodes are picked up as well.
+ */
+public class PooledStsJobIndex {
+
+  private static final String DEFAULT_REFRESH_INTERVAL_IN_SECONDS = "300";
+  private static final Logger logger = LoggerFactory.getLogger(PooledStsJobIndex.class);
+  private static PooledStsJobIndex instance;
+
+  private final PooledStsJobDao pooledStsJobDao;
+  private final long refreshIntervalInSeconds;
+  private ScheduledExecutorService refreshExecutor;
+  private volatile Map<String, List<PooledStsJob>> index;
+
+  PooledStsJobIndex(PooledStsJobDao pooledStsJobDao, long refreshIntervalInSeconds) {
+    this.pooledStsJobDao = pooledStsJobDao;
+    this.refreshIntervalInSeconds = refreshIntervalInSeconds;
+  }
+
+  public static PooledStsJobIndex getInstance() {
+    if (instance == null) {
+      synchronized (PooledStsJobIndex.class) {
+        if (instance == null) {
+          instance =
+              new PooledStsJobIndex(
+                  SingletonDao.getPooledStsJobDao(),
+                  Long.valueOf(
+                      SdrsApplication.getAppConfigProperty(
+                          "sts.pooledJobIndex.refreshIntervalInSeconds",
+                          DEFAULT_REFRESH_INTERVAL_IN_SECONDS)));
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Gets a pooled job. Same semantics as {@link PooledStsJobDao#getJob}.
+   *
+   * @param sourceBucket the source bucket of the job
+   * @param sourceProject the project of the source bucket
+   * @param scheduleTimeOfDay the schedule of the job, i.e. "13:00:00". Matches any schedule if null.
+   * @param type the database representation of the job type
+   * @return the {@link PooledStsJob}, or null if there is none
+   */
+  public PooledStsJob getJob(
+      String sourceBucket, String sourceProject, String scheduleTimeOfDay, String type) {
+    List<PooledStsJob> jobs = getIndex().get(buildKey(sourceBucket, sourceProject, type));
+    if (jobs == null) {
+      return null;
+    }
+
+    for (PooledStsJob job : jobs) {
+      if (scheduleTimeOfDay == null || scheduleTimeOfDay.equals(job.getSchedule())) {
+        return job;
+      }
+    }
+    return null;
+  }
+
+  /** Drops the index. It is reloaded on the next lookup. */
+  public void invalidate() {
+    index = null;
+  }
+
+  /** Reloads the index from the database. Keeps the current index if the reload fails. */
+  public synchronized void refresh() {
+    try {
+      List<PooledStsJob> pooledStsJobs = pooledStsJobDao.getAllPooledStsJobs();
+      Map<String, List<PooledStsJob>> newIndex = new HashMap<>();
+      for (PooledStsJob job : pooledStsJobs) {
+        newIndex
+            .computeIfAbsent(
+                buildKey(job.getSourceBucket(), job.getSourceProject(), job.getType()),
+                k -> new ArrayList<>())
+            .add(job);
+      }
+      index = newIndex;
+      logger.info(
+          String.format("Pooled STS job index loaded with %d jobs.", pooledStsJobs.size()));
+    } catch (RuntimeException e) {
+      logger.error(String.format("Failed to load pooled STS jobs: %s", e.getMessage()), e);
+      if (index == null) {
+        throw e;
+      }
+    }
+  }
+
+  /** Stops the periodic refresh */
+  public synchronized void shutdown() {
+    if (refreshExecutor != null) {
+      refreshExecutor.shutdownNow();
+      refreshExecutor = null;
+    }
+  }
+
+  private Map<String, List<PooledStsJob>> getIndex() {
+    Map<String, List<PooledStsJob>> currentIndex = index;
+    if (currentIndex == null) {
+      synchronized (this) {
+        if (index == null) {
+          refresh();
+          startPeriodicRefresh();
+        }
+        currentIndex = index;
+      }
+    }
+    return currentIndex;
+  }
+
+  private void startPeriodicRefresh() {
+    if (refreshExecutor != null || refreshIntervalInSeconds <= 0) {
+      return;
+    }
+
+    refreshExecutor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "pooled-job-index-refresh");
+              thread.setDaemon(true);
+              return thread;
+            });
+    refreshExecutor.scheduleWithFixedDelay(
+        () -> {
+          try {
+            refresh();
+          } catch (RuntimeException e) {
+            // already logged. Keep the schedule alive and try again on the next run.
+          }
+        },
+        refreshIntervalInSeconds,
+        refreshIntervalInSeconds,
+        TimeUnit.SECONDS);
+  }
+
+  private String buildKey(String sourceBucket, String sourceProject, String type) {
+    return sourceBucket + "|" + sourceProject + "|" + type;
+  }
+}
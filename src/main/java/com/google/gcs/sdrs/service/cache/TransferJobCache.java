@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.service.cache;
+
+import com.google.api.services.storagetransfer.v1.Storagetransfer;
+import com.google.api.services.storagetransfer.v1.model.TransferJob;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.gcs.sdrs.SdrsApplication;
+import com.google.gcs.sdrs.util.StsUtil;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A size bounded cache of STS {@link TransferJob}s, shared by everything that looks up pooled jobs.
+ *
+ * <p>Jobs are keyed by their name, which is unique across projects. Entries expire after a
+ * configurable time. Jobs that SDRS updates or creates itself are invalidated right away, so the
+ * next lookup reads the new state from STS.
+ */
+public class TransferJobCache {
+
+  private static final String DEFAULT_MAX_SIZE = "1000";
+  private static final String DEFAULT_TTL_IN_SECONDS = "300";
+  private static final Logger logger = LoggerFactory.getLogger(TransferJobCache.class);
+  private static TransferJobCache instance;
+
+  private final Cache<String, TransferJob> cache;
+
+  TransferJobCache(long maxSize, long ttlInSeconds) {
+    cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(ttlInSeconds, TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+  }
+
+  public static TransferJobCache getInstance() {
+    if (instance == null) {
+      synchronized (TransferJobCache.class) {
+        if (instance == null) {
+          instance =
+              new TransferJobCache(
+                  Long.valueOf(
+                      SdrsApplication.getAppConfigProperty(
+                          "sts.transferJobCache.maxSize", DEFAULT_MAX_SIZE)),
+                  Long.valueOf(
+                      SdrsApplication.getAppConfigProperty(
+                          "sts.transferJobCache.ttlInSeconds", DEFAULT_TTL_IN_SECONDS)));
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Gets a transfer job, from the cache if present and from STS otherwise
+   *
+   * @param client the {@link Storagetransfer} client to use on a cache miss
+   * @param projectId the project ID of the job
+   * @param jobName the name of the transfer job
+   * @return the {@link TransferJob}, if it exists
+   * @throws IOException when the job can't be retrieved from STS
+   */
+  public TransferJob getJob(Storagetransfer client, String projectId, String jobName)
+      throws IOException {
+    TransferJob transferJob = cache.getIfPresent(jobName);
+    if (transferJob == null) {
+      transferJob = StsUtil.getExistingJob(client, projectId, jobName);
+      if (transferJob != null) {
+        cache.put(jobName, transferJob);
+      }
+    }
+    return transferJob;
+  }
+
+  /** Removes a job from the cache, i.e. after it has been updated or created */
+  public void invalidate(String jobName) {
+    if (jobName != null) {
+      cache.invalidate(jobName);
+    }
+  }
+
+  /** Removes all jobs from the cache */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /** Gets the hit, miss and eviction counts of the cache */
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  /** Gets a one line, human readable summary of the cache metrics */
+  public String getStatsSummary() {
+    CacheStats stats = getStats();
+    return String.format(
+        "size: %d, hits: %d, misses: %d, hit rate: %.2f, evictions: %d",
+        size(), stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount());
+  }
+
+  /** Logs the cache metrics */
+  public void logStats() {
+    logger.info(String.format("Transfer job cache %s", getStatsSummary()));
+  }
+}
@@ -26,6 +26,8 @@ import com.google.gcs.sdrs.dao.PooledStsJobDao;
 import com.google.gcs.sdrs.dao.SingletonDao;
 import com.google.gcs.sdrs.dao.model.PooledStsJob;
 import com.google.gcs.sdrs.service.JobPoolService;
+import com.google.gcs.sdrs.service.cache.PooledStsJobIndex;
+import com.google.gcs.sdrs.service.cache.TransferJobCache;
 import com.google.gcs.sdrs.util.CredentialsUtil;
 import com.google.gcs.sdrs.util.RetentionUtil;
 import com.google.gcs.sdrs.util.StsUtil;
@@ -44,6 +46,8 @@ public class JobPoolServiceImpl implements JobPoolService {
   private Storagetransfer client;
   private GoogleCredential credentials;
   private PooledStsJobDao pooledStsJobDao = SingletonDao.getPooledStsJobDao();
+  private TransferJobCache transferJobCache = TransferJobCache.getInstance();
+  private PooledStsJobIndex pooledStsJobIndex = PooledStsJobIndex.getInstance();
 
   private JobPoolServiceImpl() throws IOException {
     credentials = credentialsUtil.getCredentials();
@@ -69,6 +73,7 @@ public class JobPoolServiceImpl implements JobPoolService {
   public Integer createJob(PooledJobCreateRequest request) {
     PooledStsJob pooledStsJob = convertToEntity(request);
     pooledStsJob.setId(pooledStsJobDao.save(pooledStsJob));
+    pooledStsJobIndex.invalidate();
     return pooledStsJob.getId();
   }
 
@@ -78,8 +83,12 @@ public class JobPoolServiceImpl implements JobPoolService {
       String sourceProject,
       Collection<PooledJobCreateRequest> pooledJobCreateRequests) {
     if (isValidCreatePoolRequest(sourceBucket, sourceProject, pooledJobCreateRequests)) {
-      for (PooledJobCreateRequest pooledJobCreateRequest : pooledJobCreateRequests) {
-        pooledStsJobDao.save(convertToEntity(pooledJobCreateRequest));
+      try {
+        for (PooledJobCreateRequest pooledJobCreateRequest : pooledJobCreateRequests) {
+          pooledStsJobDao.save(convertToEntity(pooledJobCreateRequest));
+        }
+      } finally {
+        pooledStsJobIndex.invalidate();
       }
       return true;
     } else {
@@ -133,7 +142,7 @@ public class JobPoolServiceImpl implements JobPoolService {
   protected boolean doesJobExist(PooledJobCreateRequest pooledJobCreateRequest) {
     try {
       TransferJob transferJob =
-          StsUtil.getExistingJob(
+          transferJobCache.getJob(
               client, pooledJobCreateRequest.getProjectId(), pooledJobCreateRequest.getName());
       if (transferJob == null || transferJob.isEmpty()) {
         return false;
@@ -174,7 +183,11 @@ public class JobPoolServiceImpl implements JobPoolService {
 
   @Override
   public Boolean deleteAllJobsByBucketName(String sourceBucket, String sourceProject) {
-    return pooledStsJobDao.deleteAllJobsByBucketName(sourceBucket, sourceProject);
+    try {
+      return pooledStsJobDao.deleteAllJobsByBucketName(sourceBucket, sourceProject);
+    } finally {
+      pooledStsJobIndex.invalidate();
+    }
   }
 
   protected PooledStsJob convertToEntity(PooledJobCreateRequest request) {
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ *
+ */
+
+package com.google.gcs.sdrs.service.manager;
+
+import com.google.gcs.sdrs.service.worker.BaseWorker;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A dedicated, fixed size thread pool that runs batches of tasks on behalf of a single worker.
+ *
+ * <p>Each batch is capped at a maximum number of tasks in flight, so one large batch cannot occupy
+ * the whole pool. The correlation ID of the submitting worker is carried over to the pool threads.
+ */
+public class BoundedTaskExecutor {
+
+  private final ExecutorService executorService;
+  private final String name;
+  private static final Logger logger = LoggerFactory.getLogger(BoundedTaskExecutor.class);
+
+  /**
+   * Creates a pool of daemon threads
+   *
+   * @param name the name used as the thread name prefix
+   * @param threadPoolSize the number of threads in the pool
+   */
+  public BoundedTaskExecutor(String name, int threadPoolSize) {
+    this.name = name;
+    executorService = Executors.newFixedThreadPool(threadPoolSize, new NamedThreadFactory(name));
+    logger.info(String.format("%s pool created with %d threads.", name, threadPoolSize));
+  }
+
+  /**
+   * Runs all tasks and waits for them to finish. No more than {@code maxConcurrency} tasks of this
+   * batch run at the same time.
+   *
+   * @param tasks the tasks to run
+   * @param maxConcurrency the maximum number of tasks of this batch in flight
+   * @return a {@link List} of completed {@link Future}s, in the same order as the tasks. A failed
+   *     task does not affect the others; its failure is reported by {@link Future#get()}.
+   * @throws InterruptedException when the calling thread is interrupted while waiting
+   */
+  public <T> List<Future<T>> invokeAll(List<? extends Callable<T>> tasks, int maxConcurrency)
+      throws InterruptedException {
+    Semaphore permits = new Semaphore(Math.max(1, maxConcurrency));
+    String correlationId = BaseWorker.getCorrelationId();
+    List<Future<T>> futures = new ArrayList<>(tasks.size());
+
+    try {
+      for (Callable<T> task : tasks) {
+        permits.acquire();
+        try {
+          futures.add(executorService.submit(wrap(task, permits, correlationId)));
+        } catch (RejectedExecutionException e) {
+          permits.release();
+          throw e;
+        }
+      }
+
+      for (Future<T> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          // reported to the caller through the future
+        }
+      }
+    } catch (InterruptedException | RuntimeException e) {
+      for (Future<T> future : futures) {
+        future.cancel(true);
+      }
+      throw e;
+    }
+
+    return futures;
+  }
+
+  /** Gracefully shuts down the pool, waiting up to the given time for running tasks */
+  public void shutdown(long timeout, TimeUnit timeUnit) {
+    logger.info(String.format("Shutting down %s pool.", name));
+    executorService.shutdown();
+    try {
+      if (!executorService.awaitTermination(timeout, timeUnit)) {
+        executorService.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      executorService.shutdownNow();
+    }
+  }
+
+  private <T> Callable<T> wrap(Callable<T> task, Semaphore permits, String correlationId) {
+    return () -> {
+      String currentName = Thread.currentThread().getName();
+      if (correlationId != null) {
+        Thread.currentThread().setName(currentName + ";" + correlationId);
+      }
+      try {
+        return task.call();
+      } finally {
+        Thread.currentThread().setName(currentName);
+        permits.release();
+      }
+    };
+  }
+
+  private static class NamedThreadFactory implements ThreadFactory {
+    private final AtomicInteger threadCount = new AtomicInteger(0);
+    private final String prefix;
+
+    NamedThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, prefix + "-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
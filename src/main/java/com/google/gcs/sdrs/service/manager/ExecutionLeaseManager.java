@@ -0,0 +1,252 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.service.manager;
+
+import com.google.gcs.sdrs.SdrsApplication;
+import com.google.gcs.sdrs.dao.ExecutionLeaseDao;
+import com.google.gcs.sdrs.dao.SingletonDao;
+import com.google.gcs.sdrs.dao.model.ExecutionLease;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Partitions the policy execution work across SDRS instances with database leases.
+ *
+ * <p>Every instance registers itself with a node lease and holds project leases for at most its
+ * fair share of the projects, i.e. the number of projects divided by the number of live nodes.
+ * Leases are kept alive by a heartbeat. When an instance dies, its leases expire and the remaining
+ * instances take over its projects on their next run.
+ *
+ * <p>An instance only executes its projects when a POLICY run reaches it, so leasing requires every
+ * instance to schedule its own runs with the in-process scheduler. A single external scheduler
+ * behind a load balancer would only run the projects of the instance it happens to call.
+ */
+public class ExecutionLeaseManager {
+
+  static final String NODE_PARTITION_PREFIX = "node/";
+  static final String PROJECT_PARTITION_PREFIX = "project/";
+  private static final String DEFAULT_LEASE_DURATION_IN_SECONDS = "300";
+  private static final String DEFAULT_HEARTBEAT_INTERVAL_IN_SECONDS = "60";
+  private static final Logger logger = LoggerFactory.getLogger(ExecutionLeaseManager.class);
+  private static ExecutionLeaseManager instance;
+
+  private final ExecutionLeaseDao executionLeaseDao;
+  private final String nodeId;
+  private final boolean isEnabled;
+  private final int leaseDurationInSeconds;
+  private final long heartbeatIntervalInSeconds;
+  private ScheduledExecutorService heartbeatExecutor;
+  private boolean isRegistered;
+
+  ExecutionLeaseManager(
+      ExecutionLeaseDao executionLeaseDao,
+      String nodeId,
+      boolean isEnabled,
+      int leaseDurationInSeconds,
+      long heartbeatIntervalInSeconds) {
+    this.executionLeaseDao = executionLeaseDao;
+    this.nodeId = nodeId;
+    this.isEnabled = isEnabled;
+    this.leaseDurationInSeconds = leaseDurationInSeconds;
+    this.heartbeatIntervalInSeconds = heartbeatIntervalInSeconds;
+  }
+
+  public static ExecutionLeaseManager getInstance() {
+    if (instance == null) {
+      synchronized (ExecutionLeaseManager.class) {
+        if (instance == null) {
+          instance =
+              new ExecutionLeaseManager(
+                  SingletonDao.getExecutionLeaseDao(),
+                  SdrsApplication.getAppConfigProperty(
+                      "execution.lease.nodeId", buildDefaultNodeId()),
+                  Boolean.valueOf(
+                      SdrsApplication.getAppConfigProperty("execution.lease.enabled", "false")),
+                  Integer.valueOf(
+                      SdrsApplication.getAppConfigProperty(
+                          "execution.lease.durationInSeconds", DEFAULT_LEASE_DURATION_IN_SECONDS)),
+                  Long.valueOf(
+                      SdrsApplication.getAppConfigProperty(
+                          "execution.lease.heartbeatIntervalInSeconds",
+                          DEFAULT_HEARTBEAT_INTERVAL_IN_SECONDS)));
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Checks that the scheduler configuration of this instance supports execution leases
+   *
+   * @param isLeaseEnabled whether execution leases are enabled
+   * @param isSchedulerEnabled whether the scheduler of this instance is enabled
+   * @param isInProcess whether the scheduled tasks run on this instance
+   * @return false if leases are enabled but this instance does not schedule its own POLICY runs
+   */
+  public static boolean isSchedulerConfigValid(
+      boolean isLeaseEnabled, boolean isSchedulerEnabled, boolean isInProcess) {
+    return !isLeaseEnabled || (isSchedulerEnabled && isInProcess);
+  }
+
+  public boolean isEnabled() {
+    return isEnabled;
+  }
+
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  /**
+   * Selects the projects this instance executes. Keeps the project leases it already holds,
+   * acquires free or expired ones up to its fair share and releases the ones above it, so that
+   * newly started instances get their share.
+   *
+   * @param projectIds all projects of the run
+   * @return the projects this instance holds a lease for. All projects if leasing is disabled.
+   */
+  public synchronized List<String> acquireProjects(List<String> projectIds) {
+    if (!isEnabled) {
+      return projectIds;
+    }
+
+    startHeartbeat();
+    // every start registers a new node id, the leases of stopped nodes are only ever expired
+    executionLeaseDao.deleteExpired();
+    executionLeaseDao.tryAcquire(NODE_PARTITION_PREFIX + nodeId, nodeId, leaseDurationInSeconds);
+    isRegistered = true;
+
+    Set<String> liveNodes = new HashSet<>();
+    liveNodes.add(nodeId);
+    Map<String, String> projectOwners = new HashMap<>();
+    for (ExecutionLease lease : executionLeaseDao.findActiveLeases()) {
+      if (lease.getPartitionKey().startsWith(NODE_PARTITION_PREFIX)) {
+        liveNodes.add(lease.getOwner());
+      } else {
+        projectOwners.put(lease.getPartitionKey(), lease.getOwner());
+      }
+    }
+
+    int fairShare = (projectIds.size() + liveNodes.size() - 1) / liveNodes.size();
+    List<String> ownedProjectIds = new ArrayList<>();
+    List<String> freeProjectIds = new ArrayList<>();
+    for (String projectId : projectIds) {
+      String owner = projectOwners.remove(PROJECT_PARTITION_PREFIX + projectId);
+      if (nodeId.equals(owner)) {
+        ownedProjectIds.add(projectId);
+      } else if (owner == null) {
+        freeProjectIds.add(projectId);
+      }
+    }
+
+    // leases of projects without active rules are not needed anymore
+    for (Map.Entry<String, String> projectOwner : projectOwners.entrySet()) {
+      if (nodeId.equals(projectOwner.getValue())) {
+        executionLeaseDao.release(projectOwner.getKey(), nodeId);
+      }
+    }
+
+    while (ownedProjectIds.size() > fairShare) {
+      String projectId = ownedProjectIds.remove(ownedProjectIds.size() - 1);
+      executionLeaseDao.release(PROJECT_PARTITION_PREFIX + projectId, nodeId);
+    }
+    for (String projectId : freeProjectIds) {
+      if (ownedProjectIds.size() >= fairShare) {
+        break;
+      }
+      if (executionLeaseDao.tryAcquire(
+          PROJECT_PARTITION_PREFIX + projectId, nodeId, leaseDurationInSeconds)) {
+        ownedProjectIds.add(projectId);
+      }
+    }
+
+    // the run starts now, so all leases get a full duration
+    executionLeaseDao.renewAll(nodeId, leaseDurationInSeconds);
+    logger.info(
+        String.format(
+            "Node %s holds %d of %d projects, %d live nodes.",
+            nodeId, ownedProjectIds.size(), projectIds.size(), liveNodes.size()));
+    return ownedProjectIds;
+  }
+
+  /** Stops the heartbeat and releases all leases, so other instances can take over right away */
+  public synchronized void shutdown() {
+    if (heartbeatExecutor != null) {
+      heartbeatExecutor.shutdownNow();
+      heartbeatExecutor = null;
+    }
+    if (!isRegistered) {
+      return;
+    }
+
+    isRegistered = false;
+    try {
+      executionLeaseDao.releaseAll(nodeId);
+    } catch (RuntimeException e) {
+      logger.error(String.format("Failed to release execution leases: %s", e.getMessage()), e);
+    }
+  }
+
+  private void startHeartbeat() {
+    if (heartbeatExecutor != null || heartbeatIntervalInSeconds <= 0) {
+      return;
+    }
+
+    heartbeatExecutor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "execution-lease-heartbeat");
+              thread.setDaemon(true);
+              return thread;
+            });
+    heartbeatExecutor.scheduleWithFixedDelay(
+        () -> {
+          try {
+            executionLeaseDao.renewAll(nodeId, leaseDurationInSeconds);
+          } catch (RuntimeException e) {
+            // keep the schedule alive and try again on the next beat
+            logger.error(String.format("Failed to renew execution leases: %s", e.getMessage()), e);
+          }
+        },
+        heartbeatIntervalInSeconds,
+        heartbeatIntervalInSeconds,
+        TimeUnit.SECONDS);
+  }
+
+  private static String buildDefaultNodeId() {
+    String hostName;
+    try {
+      hostName = InetAddress.getLocalHost().getHostName();
+    } catch (UnknownHostException e) {
+      hostName = "sdrs";
+    }
+    // unique even if an instance restarts on the same host before its old leases expired
+    return hostName + "-" + UUID.randomUUID().toString().substring(0, 8);
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.service.manager;
+
+import com.google.gcs.sdrs.SdrsApplication;
+import com.google.gcs.sdrs.dao.RetentionJobDao;
+import com.google.gcs.sdrs.dao.SingletonDao;
+import com.google.gcs.sdrs.dao.model.RetentionJob;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Moves old retention jobs out of the retention_job and retention_job_validation tables.
+ *
+ * <p>Jobs that are older than the minimum age and have no pending validation are copied to the
+ * archive tables and deleted in small batches, one transaction per batch, with a pause between
+ * batches so the live tables are never locked for long. A run stops after a maximum number of
+ * batches and picks up where it left off on the next run.
+ */
+public class RetentionJobArchiver {
+
+  private static final String DEFAULT_MIN_AGE_IN_DAYS = "90";
+  private static final String DEFAULT_BATCH_SIZE = "500";
+  private static final String DEFAULT_MAX_BATCHES_PER_RUN = "100";
+  private static final String DEFAULT_PAUSE_BETWEEN_BATCHES_IN_MILLIS = "200";
+  private static final String DEFAULT_INTERVAL_IN_MINUTES = "60";
+  private static final Logger logger = LoggerFactory.getLogger(RetentionJobArchiver.class);
+  private static RetentionJobArchiver instance;
+
+  private final RetentionJobDao retentionJobDao;
+  private final boolean isEnabled;
+  private final long minAgeInDays;
+  private final int batchSize;
+  private final int maxBatchesPerRun;
+  private final long pauseBetweenBatchesInMillis;
+  private final long intervalInMinutes;
+  private ScheduledExecutorService archiveExecutor;
+
+  RetentionJobArchiver(
+      RetentionJobDao retentionJobDao,
+      boolean isEnabled,
+      long minAgeInDays,
+      int batchSize,
+      int maxBatchesPerRun,
+      long pauseBetweenBatchesInMillis,
+      long intervalInMinutes) {
+    this.retentionJobDao = retentionJobDao;
+    this.isEnabled = isEnabled;
+    this.minAgeInDays = minAgeInDays;
+    this.batchSize = batchSize;
+    this.maxBatchesPerRun = maxBatchesPerRun;
+    this.pauseBetweenBatchesInMillis = pauseBetweenBatchesInMillis;
+    this.intervalInMinutes = intervalInMinutes;
+  }
+
+  public static RetentionJobArchiver getInstance() {
+    if (instance == null) {
+      synchronized (RetentionJobArchiver.class) {
+        if (instance == null) {
+          instance =
+              new RetentionJobArchiver(
+                  SingletonDao.getRetentionJobDao(),
+                  Boolean.valueOf(SdrsApplication.getAppConfigProperty("archive.enabled", "false")),
+                  Long.valueOf(
+                      SdrsApplication.getAppConfigProperty(
+                          "archive.minAgeInDays", DEFAULT_MIN_AGE_IN_DAYS)),
+                  Integer.valueOf(
+                      SdrsApplication.getAppConfigProperty(
+                          "archive.batchSize", DEFAULT_BATCH_SIZE)),
+                  Integer.valueOf(
+                      SdrsApplication.getAppConfigProperty(
+                          "archive.maxBatchesPerRun", DEFAULT_MAX_BATCHES_PER_RUN)),
+                  Long.valueOf(
+                      SdrsApplication.getAppConfigProperty(
+                          "archive.pauseBetweenBatchesInMillis",
+                          DEFAULT_PAUSE_BETWEEN_BATCHES_IN_MILLIS)),
+                  Long.valueOf(
+                      SdrsApplication.getAppConfigProperty(
+                          "archive.intervalInMinutes", DEFAULT_INTERVAL_IN_MINUTES)));
+        }
+      }
+    }
+    return instance;
+  }
+
+  /** Starts the periodic archiving if it is enabled */
+  public synchronized void start() {
+    if (!isEnabled || archiveExecutor != null || intervalInMinutes <= 0) {
+      return;
+    }
+
+    archiveExecutor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "retention-job-archiver");
+              thread.setDaemon(true);
+              return thread;
+            });
+    archiveExecutor.scheduleWithFixedDelay(
+        () -> {
+          try {
+            archive();
+          } catch (RuntimeException e) {
+            // keep the schedule alive and try again on the next run
+            logger.error(String.format("Failed to archive retention jobs: %s", e.getMessage()), e);
+          }
+        },
+        intervalInMinutes,
+        intervalInMinutes,
+        TimeUnit.MINUTES);
+    logger.info(
+        String.format("Retention job archiving scheduled every %d minutes.", intervalInMinutes));
+  }
+
+  /**
+   * Archives terminal jobs older than the minimum age, batch by batch, until none are left or the
+   * maximum number of batches is reached.
+   *
+   * @return the number of jobs archived
+   */
+  public int archive() {
+    Timestamp createdBefore = Timestamp.from(Instant.now().minus(Duration.ofDays(minAgeInDays)));
+    int archivedCount = 0;
+    for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+      int batchCount = retentionJobDao.archiveBatch(createdBefore, batchSize);
+      archivedCount += batchCount;
+      if (batchCount < batchSize || !pause()) {
+        break;
+      }
+    }
+
+    logger.info(
+        String.format(
+            "Archived %d retention jobs created before %s.", archivedCount, createdBefore));
+    return archivedCount;
+  }
+
+  /**
+   * Gets archived retention jobs
+   *
+   * @param dataStorageName the data storage name of the jobs
+   * @param days how many days back from now to look
+   * @return a {@link List} of archived {@link RetentionJob}s, latest first
+   */
+  public List<RetentionJob> findArchivedJobs(String dataStorageName, int days) {
+    return retentionJobDao.findArchivedJobs(
+        dataStorageName, Timestamp.from(Instant.now().minus(Duration.ofDays(days))));
+  }
+
+  /** Stops the periodic archiving */
+  public synchronized void shutdown() {
+    if (archiveExecutor != null) {
+      archiveExecutor.shutdownNow();
+      archiveExecutor = null;
+    }
+  }
+
+  /** @return false if the thread was interrupted during the pause */
+  private boolean pause() {
+    if (pauseBetweenBatchesInMillis <= 0) {
+      return true;
+    }
+    try {
+      Thread.sleep(pauseBetweenBatchesInMillis);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+}
@@ -25,6 +25,7 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.google.gcs.sdrs.SdrsApplication;
 import com.google.gcs.sdrs.service.mq.events.SuccessDeleteNotificationEvent;
 import com.google.gcs.sdrs.service.mq.events.context.EventContext;
+import com.google.gcs.sdrs.service.mq.events.context.groupRecord;
 import com.google.gcs.sdrs.service.mq.pojo.DeleteNotificationMessage;
 import com.google.gcs.sdrs.util.RetentionUtil;
 import com.google.protobuf.ByteString;
@@ -32,6 +33,8 @@ import com.google.pubsub.v1.PubsubMessage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import org.apache.avro.generic.GenericDatumWriter;
@@ -58,6 +61,7 @@ public class PubSubMessageQueueManagerImpl implements MessageQueueManager {
   public static final String TOPIC_APP_CONFIG_KEY = "pubsub.topic";
   public static final String DELETE_NOTIFICAITON_EVENT_NAME = "SuccessDeleteNotificationEvent";
   public static final String AVRO_MESSAGE_VERSION = "1.0";
+  public static final String DIRECTORY_ATTRIBUTE_KEY = "directory";
 
   public static PubSubMessageQueueManagerImpl getInstance() {
     if (instance == null) {
@@ -163,7 +167,8 @@ public class PubSubMessageQueueManagerImpl implements MessageQueueManager {
   }
 
   /**
-   * Convert a POJO to Avro message
+   * Convert a POJO to Avro message. A grouped message carries its group in the event context and
+   * all of its directories as "directory=" attributes.
    *
    * @param msg A {@link com.google.gcs.sdrs.service.mq.pojo.DeleteNotificationMessage
    *     DeleteNotificationMessage}
@@ -183,6 +188,24 @@ public class PubSubMessageQueueManagerImpl implements MessageQueueManager {
             .setTimestamp(new DateTime())
             .build();
 
+    if (msg.getGroupId() != null) {
+      ctx.setGroup(
+          groupRecord
+              .newBuilder()
+              .setGroupID(msg.getGroupId())
+              .setSequenceNumber(msg.getSequenceNumber())
+              .setTotalNumber(msg.getTotalNumber())
+              .build());
+    }
+    if (msg.getDeletedDirectoryUris() != null) {
+      // the directory field holds a single value. All directories are sent as attributes.
+      List<CharSequence> attributes = new ArrayList<>();
+      for (String deletedDirectoryUri : msg.getDeletedDirectoryUris()) {
+        attributes.add(DIRECTORY_ATTRIBUTE_KEY + "=" + deletedDirectoryUri);
+      }
+      ctx.setAttributes(attributes);
+    }
+
     SuccessDeleteNotificationEvent event =
         SuccessDeleteNotificationEvent.newBuilder()
             .setContext(ctx)
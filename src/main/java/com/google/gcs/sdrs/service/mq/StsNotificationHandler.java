@@ -0,0 +1,145 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.service.mq;
+
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.storagetransfer.v1.model.Operation;
+import com.google.api.services.storagetransfer.v1.model.Status;
+import com.google.gcs.sdrs.dao.RetentionJobValidationDao;
+import com.google.gcs.sdrs.dao.model.RetentionJob;
+import com.google.gcs.sdrs.dao.model.RetentionJobValidation;
+import com.google.gcs.sdrs.service.worker.rule.impl.StsRuleValidator;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Turns STS transfer operation notifications into retention job validation records.
+ *
+ * <p>STS publishes a message when an operation of a job with a notification config finishes. The
+ * attributes name the event, the operation and the job; the JSON payload is the transfer operation.
+ * The operation is recorded for every pending retention job of the STS job that was created before
+ * the operation started, the same way the validation worker records a polled operation.
+ */
+public class StsNotificationHandler {
+
+  static final String EVENT_TYPE_ATTRIBUTE = "eventType";
+  static final String TRANSFER_OPERATION_NAME_ATTRIBUTE = "transferOperationName";
+  static final String TRANSFER_JOB_NAME_ATTRIBUTE = "transferJobName";
+  static final String EVENT_TYPE_SUCCESS = "TRANSFER_OPERATION_SUCCESS";
+  static final String EVENT_TYPE_FAILED = "TRANSFER_OPERATION_FAILED";
+  static final String EVENT_TYPE_ABORTED = "TRANSFER_OPERATION_ABORTED";
+  private static final Logger logger = LoggerFactory.getLogger(StsNotificationHandler.class);
+
+  private final RetentionJobValidationDao retentionJobValidationDao;
+
+  public StsNotificationHandler(RetentionJobValidationDao retentionJobValidationDao) {
+    this.retentionJobValidationDao = retentionJobValidationDao;
+  }
+
+  /**
+   * Records the operation of a notification
+   *
+   * @param attributes the attributes of the Pub/Sub message
+   * @param payload the JSON payload of the Pub/Sub message
+   * @return the number of validation records written. 0 if the notification is not about a
+   *     finished operation or no pending retention job belongs to it.
+   * @throws IOException when the payload is not a valid transfer operation
+   */
+  public int handle(Map<String, String> attributes, String payload) throws IOException {
+    String eventType = attributes.get(EVENT_TYPE_ATTRIBUTE);
+    String operationName = attributes.get(TRANSFER_OPERATION_NAME_ATTRIBUTE);
+    String jobName = attributes.get(TRANSFER_JOB_NAME_ATTRIBUTE);
+    if (!isFinished(eventType) || operationName == null || jobName == null) {
+      logger.debug(String.format("Ignoring STS notification %s for %s.", eventType, operationName));
+      return 0;
+    }
+
+    GenericJson transferOperation =
+        JacksonFactory.getDefaultInstance().fromString(payload, GenericJson.class);
+    Operation operation = new Operation().setName(operationName).setDone(true);
+    operation.setMetadata(transferOperation);
+    if (EVENT_TYPE_SUCCESS.equals(eventType)) {
+      operation.setResponse(Collections.emptyMap());
+    } else {
+      operation.setError(new Status().setMessage(eventType));
+    }
+
+    List<RetentionJob> jobs =
+        retentionJobValidationDao.findPendingRetentionJobsByName(
+            jobName, getStartTime(transferOperation));
+    if (jobs.isEmpty()) {
+      logger.info(
+          String.format(
+              "No pending retention job for STS operation %s of %s.", operationName, jobName));
+      return 0;
+    }
+
+    List<RetentionJobValidation> existingValidations =
+        retentionJobValidationDao.findAllByRetentionJobNames(
+            Collections.singletonList(operationName));
+    String batchId = UUID.randomUUID().toString();
+    List<RetentionJobValidation> validations = new ArrayList<>();
+    for (RetentionJob job : jobs) {
+      RetentionJobValidation validation =
+          StsRuleValidator.convertOperationToJobValidation(operation, job.getId());
+      validation.setBatchId(batchId);
+      for (RetentionJobValidation existingValidation : existingValidations) {
+        if (existingValidation.getRetentionJobId().intValue() == job.getId()) {
+          validation.setId(existingValidation.getId());
+        }
+      }
+      validations.add(validation);
+    }
+
+    retentionJobValidationDao.saveOrUpdateBatch(validations);
+    logger.info(
+        String.format(
+            "STS operation %s recorded as %s for %d retention jobs.",
+            operationName, eventType, validations.size()));
+    return validations.size();
+  }
+
+  private boolean isFinished(String eventType) {
+    return EVENT_TYPE_SUCCESS.equals(eventType)
+        || EVENT_TYPE_FAILED.equals(eventType)
+        || EVENT_TYPE_ABORTED.equals(eventType);
+  }
+
+  /** Gets the start time of the operation, or now if it is not known */
+  private Timestamp getStartTime(GenericJson transferOperation) {
+    Object startTime = transferOperation.get("startTime");
+    if (startTime != null) {
+      try {
+        return Timestamp.from(Instant.parse(startTime.toString()));
+      } catch (DateTimeParseException e) {
+        logger.warn(String.format("Invalid operation start time %s", startTime));
+      }
+    }
+    return Timestamp.from(Instant.now());
+  }
+}
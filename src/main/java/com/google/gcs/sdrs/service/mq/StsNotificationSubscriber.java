@@ -0,0 +1,149 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.service.mq;
+
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.cloud.pubsub.v1.AckReplyConsumer;
+import com.google.cloud.pubsub.v1.Subscriber;
+import com.google.gcs.sdrs.SdrsApplication;
+import com.google.gcs.sdrs.dao.SingletonDao;
+import com.google.pubsub.v1.ProjectSubscriptionName;
+import com.google.pubsub.v1.PubsubMessage;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Subscribes to the STS transfer operation notifications and records finished operations as they
+ * arrive, so the validation worker only has to poll for the operations whose notification got lost.
+ */
+public class StsNotificationSubscriber {
+
+  public static final String ENABLED_APP_CONFIG_KEY = "pubsub.stsNotification.enabled";
+  private static final Logger logger = LoggerFactory.getLogger(StsNotificationSubscriber.class);
+  private static StsNotificationSubscriber instance;
+
+  private final StsNotificationHandler handler;
+  private final boolean isEnabled;
+  private final String subscriptionName;
+  private final String emulatorHost;
+  private Subscriber subscriber;
+  private ManagedChannel emulatorChannel;
+
+  StsNotificationSubscriber(
+      StsNotificationHandler handler,
+      boolean isEnabled,
+      String subscriptionName,
+      String emulatorHost) {
+    this.handler = handler;
+    this.isEnabled = isEnabled;
+    this.subscriptionName = subscriptionName;
+    this.emulatorHost = emulatorHost;
+  }
+
+  public static StsNotificationSubscriber getInstance() {
+    if (instance == null) {
+      synchronized (StsNotificationSubscriber.class) {
+        if (instance == null) {
+          instance =
+              new StsNotificationSubscriber(
+                  new StsNotificationHandler(SingletonDao.getRetentionJobValidationDao()),
+                  isEnabled(),
+                  SdrsApplication.getAppConfigProperty("pubsub.stsNotification.subscription"),
+                  SdrsApplication.getAppConfigProperty("pubsub.stsNotification.emulatorHost"));
+        }
+      }
+    }
+    return instance;
+  }
+
+  /** @return true if the STS notifications are configured to be received */
+  public static boolean isEnabled() {
+    return Boolean.valueOf(SdrsApplication.getAppConfigProperty(ENABLED_APP_CONFIG_KEY, "false"));
+  }
+
+  /** Starts pulling notifications if they are enabled */
+  public synchronized void start() {
+    if (!isEnabled || subscriber != null) {
+      return;
+    }
+    if (subscriptionName == null || subscriptionName.isEmpty()) {
+      logger.error("STS notification subscription is not configured");
+      return;
+    }
+
+    Subscriber.Builder builder =
+        Subscriber.newBuilder(ProjectSubscriptionName.parse(subscriptionName), this::receive);
+    if (emulatorHost != null && !emulatorHost.isEmpty()) {
+      emulatorChannel = ManagedChannelBuilder.forTarget(emulatorHost).usePlaintext().build();
+      builder
+          .setChannelProvider(
+              FixedTransportChannelProvider.create(GrpcTransportChannel.create(emulatorChannel)))
+          .setCredentialsProvider(NoCredentialsProvider.create());
+    }
+    subscriber = builder.build();
+    subscriber.startAsync().awaitRunning();
+    logger.info("Pubsub subscriber started for subscription " + subscriptionName);
+  }
+
+  /** Stops pulling notifications. Messages in progress are redelivered if they are not done. */
+  public synchronized void shutdown() {
+    if (subscriber != null) {
+      try {
+        subscriber.stopAsync().awaitTerminated(30, TimeUnit.SECONDS);
+        logger.info("Pubsub subscriber shutdown complete");
+      } catch (TimeoutException | IllegalStateException e) {
+        logger.error("Failed to shutdown pubsub subscriber");
+      }
+      subscriber = null;
+    }
+    if (emulatorChannel != null) {
+      emulatorChannel.shutdownNow();
+      emulatorChannel = null;
+    }
+  }
+
+  /**
+   * Handles a single message. A message that cannot be parsed is acknowledged, since it would never
+   * succeed. Any other failure leaves the message to be redelivered.
+   */
+  void receive(PubsubMessage message, AckReplyConsumer consumer) {
+    try {
+      handler.handle(message.getAttributesMap(), message.getData().toStringUtf8());
+      consumer.ack();
+    } catch (IOException e) {
+      logger.error(
+          String.format(
+              "Dropping invalid STS notification %s: %s", message.getMessageId(), e.getMessage()),
+          e);
+      consumer.ack();
+    } catch (RuntimeException e) {
+      logger.error(
+          String.format(
+              "Failed to handle STS notification %s: %s", message.getMessageId(), e.getMessage()),
+          e);
+      consumer.nack();
+    }
+  }
+}
@@ -18,6 +18,7 @@
 package com.google.gcs.sdrs.service.mq.pojo;
 
 import java.time.Instant;
+import java.util.List;
 
 /** POJO for successful delete notification message  */
 public class DeleteNotificationMessage {
@@ -26,6 +27,10 @@ public class DeleteNotificationMessage {
   private String deletedDirectoryUri;
   private String trigger;
   private String correlationId;
+  private List<String> deletedDirectoryUris;
+  private String groupId;
+  private int sequenceNumber;
+  private int totalNumber;
 
   public String getProjectId() {
     return projectId;
@@ -66,4 +71,37 @@ public class DeleteNotificationMessage {
   public void setTrigger(String trigger) {
     this.trigger = trigger;
   }
+
+  /** Gets all directories of a grouped message, or null if the message is not grouped */
+  public List<String> getDeletedDirectoryUris() {
+    return deletedDirectoryUris;
+  }
+
+  public void setDeletedDirectoryUris(List<String> deletedDirectoryUris) {
+    this.deletedDirectoryUris = deletedDirectoryUris;
+  }
+
+  public String getGroupId() {
+    return groupId;
+  }
+
+  public void setGroupId(String groupId) {
+    this.groupId = groupId;
+  }
+
+  public int getSequenceNumber() {
+    return sequenceNumber;
+  }
+
+  public void setSequenceNumber(int sequenceNumber) {
+    this.sequenceNumber = sequenceNumber;
+  }
+
+  public int getTotalNumber() {
+    return totalNumber;
+  }
+
+  public void setTotalNumber(int totalNumber) {
+    this.totalNumber = totalNumber;
+  }
 }
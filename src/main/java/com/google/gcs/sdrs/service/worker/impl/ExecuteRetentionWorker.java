@@ -17,6 +17,7 @@
 
 package com.google.gcs.sdrs.service.worker.impl;
 
+import com.google.gcs.sdrs.SdrsApplication;
 import com.google.gcs.sdrs.common.RetentionRuleType;
 import com.google.gcs.sdrs.controller.pojo.ExecutionEventRequest;
 import com.google.gcs.sdrs.dao.RetentionJobDao;
@@ -24,9 +25,12 @@ import com.google.gcs.sdrs.dao.RetentionRuleDao;
 import com.google.gcs.sdrs.dao.SingletonDao;
 import com.google.gcs.sdrs.dao.model.RetentionJob;
 import com.google.gcs.sdrs.dao.model.RetentionRule;
+import com.google.gcs.sdrs.service.manager.BoundedTaskExecutor;
+import com.google.gcs.sdrs.service.manager.ExecutionLeaseManager;
 import com.google.gcs.sdrs.service.worker.BaseWorker;
 import com.google.gcs.sdrs.service.worker.WorkerResult;
 import com.google.gcs.sdrs.service.worker.rule.RuleExecutor;
+import com.google.gcs.sdrs.service.worker.rule.RuleSnapshot;
 import com.google.gcs.sdrs.service.worker.rule.impl.StsRuleExecutor;
 import com.google.gcs.sdrs.util.RetentionUtil;
 import java.io.IOException;
@@ -36,18 +40,29 @@ import java.time.LocalTime;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /** A worker class for executing dataset retention jobs */
 public class ExecuteRetentionWorker extends BaseWorker {
 
+  private static final String DEFAULT_PROJECT_THREAD_POOL_SIZE = "8";
+  private static final String DEFAULT_MAX_CONCURRENT_PROJECTS = "8";
+  private static BoundedTaskExecutor projectExecutor;
+
   private final ExecutionEventRequest executionEvent;
   private final Logger logger = LoggerFactory.getLogger(ExecuteRetentionWorker.class);
 
   RetentionRuleDao retentionRuleDao = SingletonDao.getRetentionRuleDao();
   RetentionJobDao retentionJobDao = SingletonDao.getRetentionJobDao();
   RuleExecutor ruleExecutor;
+  ExecutionLeaseManager executionLeaseManager = ExecutionLeaseManager.getInstance();
+  boolean isProjectConcurrencyEnabled;
+  int maxConcurrentProjects;
 
   /**
    * The Execute Retention Worker construct
@@ -59,6 +74,15 @@ public class ExecuteRetentionWorker extends BaseWorker {
 
     this.executionEvent = executionEvent;
     ruleExecutor = StsRuleExecutor.getInstance();
+    isProjectConcurrencyEnabled =
+        Boolean.valueOf(
+            SdrsApplication.getAppConfigProperty(
+                "execution.projectConcurrency.enabled", "false"));
+    maxConcurrentProjects =
+        Integer.valueOf(
+            SdrsApplication.getAppConfigProperty(
+                "execution.projectConcurrency.maxConcurrentProjects",
+                DEFAULT_MAX_CONCURRENT_PROJECTS));
   }
 
   /** The function that will be executed when the worker is submitted */
@@ -115,19 +139,94 @@ public class ExecuteRetentionWorker extends BaseWorker {
   }
 
   private void executePolicy() throws IOException, SQLException {
-    List<String> projectIds = retentionRuleDao.getAllDatasetRuleProjectIds();
-    if (projectIds == null) {
-      throw new SQLException("Failed to get project IDs");
+    // one consistent view of all rules for the whole run instead of several queries per project
+    RuleSnapshot ruleSnapshot = RuleSnapshot.load(retentionRuleDao);
+    List<String> projectIds = ruleSnapshot.getProjectIds();
+    logger.info(String.format("Loaded active rules of %d projects.", projectIds.size()));
+    // other instances execute the projects this instance holds no lease for
+    projectIds = executionLeaseManager.acquireProjects(projectIds);
+    if (isProjectConcurrencyEnabled) {
+      executePolicyConcurrently(projectIds, ruleSnapshot);
+      return;
+    }
+    for (String projectId : projectIds) {
+      executePolicyByProject(projectId, ruleSnapshot);
     }
+  }
+
+  /**
+   * Executes the policy of every project on the shared project pool. A project that fails does not
+   * stop the others; all failures are reported together once every project has finished.
+   */
+  private void executePolicyConcurrently(List<String> projectIds, RuleSnapshot ruleSnapshot)
+      throws IOException {
+    List<Callable<Void>> tasks = new ArrayList<>();
     for (String projectId : projectIds) {
-      executePolicyByProject(projectId);
+      tasks.add(
+          () -> {
+            executePolicyByProject(projectId, ruleSnapshot);
+            return null;
+          });
+    }
+
+    List<Future<Void>> results;
+    try {
+      results = getProjectExecutor().invokeAll(tasks, maxConcurrentProjects);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while executing policy for all projects", e);
+    }
+
+    List<String> failedProjectIds = new ArrayList<>();
+    for (int i = 0; i < results.size(); i++) {
+      try {
+        results.get(i).get();
+      } catch (ExecutionException | InterruptedException e) {
+        Throwable cause = e.getCause() == null ? e : e.getCause();
+        logger.error(
+            String.format(
+                "Error executing policy for project %s: %s",
+                projectIds.get(i), cause.getMessage()),
+            cause);
+        failedProjectIds.add(projectIds.get(i));
+      }
+    }
+
+    logger.info(
+        String.format(
+            "Policy execution finished for %d projects, %d failed.",
+            projectIds.size(), failedProjectIds.size()));
+    if (!failedProjectIds.isEmpty()) {
+      throw new IOException(
+          String.format(
+              "Failed to execute policy for %d of %d projects: %s",
+              failedProjectIds.size(), projectIds.size(), String.join(",", failedProjectIds)));
     }
   }
 
   private void executePolicyByProject(String projectId) throws IOException, SQLException {
-    List<RetentionRule> datasetRules = retentionRuleDao.findDatasetRulesByProjectId(projectId);
-    List<RetentionRule> defaultRules = retentionRuleDao.findDefaultRulesByProjectId(projectId);
-    RetentionRule globalDefaultRule = retentionRuleDao.findGlobalRuleByProjectId(projectId);
+    executePolicyByProject(
+        projectId,
+        retentionRuleDao.findDatasetRulesByProjectId(projectId),
+        retentionRuleDao.findDefaultRulesByProjectId(projectId),
+        retentionRuleDao.findGlobalRuleByProjectId(projectId));
+  }
+
+  private void executePolicyByProject(String projectId, RuleSnapshot ruleSnapshot)
+      throws IOException, SQLException {
+    executePolicyByProject(
+        projectId,
+        ruleSnapshot.getDatasetRules(projectId),
+        ruleSnapshot.getDefaultRules(projectId),
+        ruleSnapshot.getGlobalRule(projectId));
+  }
+
+  private void executePolicyByProject(
+      String projectId,
+      List<RetentionRule> datasetRules,
+      List<RetentionRule> defaultRules,
+      RetentionRule globalDefaultRule)
+      throws IOException, SQLException {
     boolean noDatasetRules = false;
     boolean noDefaultRules = false;
     boolean noGlobalRule = false;
@@ -162,16 +261,7 @@ public class ExecuteRetentionWorker extends BaseWorker {
         ruleExecutor.executeDefaultRule(
             globalDefaultRule, defaultRules, datasetRules, atMidnight(), projectId));
 
-    if (retentionJobs != null) {
-      for (RetentionJob job : retentionJobs) {
-        job.setBatchId(getUuid());
-        if (job.getName() == null) {
-          errorJobs.add(job);
-        } else {
-          retentionJobDao.save(job);
-        }
-      }
-    }
+    saveRetentionJobs(retentionJobs, errorJobs);
 
     if (!errorJobs.isEmpty()) {
       throw new IOException(
@@ -183,16 +273,7 @@ public class ExecuteRetentionWorker extends BaseWorker {
   private void executeDatasetRules(List<RetentionRule> rules, String projectId) throws IOException {
     List<RetentionJob> errorJobs = new ArrayList<>();
     List<RetentionJob> jobs = ruleExecutor.executeDatasetRule(rules, projectId);
-    if (jobs != null) {
-      for (RetentionJob job : jobs) {
-        job.setBatchId(getUuid());
-        if (job.getName() == null) {
-          errorJobs.add(job);
-        } else {
-          retentionJobDao.save(job);
-        }
-      }
-    }
+    saveRetentionJobs(jobs, errorJobs);
 
     if (!errorJobs.isEmpty()) {
       throw new IOException(
@@ -205,16 +286,7 @@ public class ExecuteRetentionWorker extends BaseWorker {
     List<RetentionRule> userRules = new ArrayList<>();
     userRules.add(buildUserCommandedRule(target, projectId));
     List<RetentionJob> jobs = ruleExecutor.executeUserCommandedRule(userRules, projectId);
-    if (jobs != null) {
-      for (RetentionJob job : jobs) {
-        job.setBatchId(getUuid());
-        if (job.getName() == null) {
-          errorJobs.add(job);
-        } else {
-          retentionJobDao.save(job);
-        }
-      }
-    }
+    saveRetentionJobs(jobs, errorJobs);
 
     if (!errorJobs.isEmpty()) {
       throw new IOException(
@@ -223,6 +295,34 @@ public class ExecuteRetentionWorker extends BaseWorker {
     }
   }
 
+  /**
+   * Saves the scheduled retention jobs of one execution in a single batch. Jobs that were not
+   * scheduled or failed to save are added to the error jobs.
+   */
+  private void saveRetentionJobs(List<RetentionJob> jobs, List<RetentionJob> errorJobs) {
+    if (jobs == null) {
+      return;
+    }
+
+    List<RetentionJob> scheduledJobs = new ArrayList<>();
+    for (RetentionJob job : jobs) {
+      job.setBatchId(getUuid());
+      if (job.getName() == null) {
+        errorJobs.add(job);
+      } else {
+        scheduledJobs.add(job);
+      }
+    }
+
+    for (RetentionJob failedJob : retentionJobDao.insertBatch(scheduledJobs)) {
+      logger.error(
+          String.format(
+              "Failed to save retention job %s for %s.",
+              failedJob.getName(), failedJob.getRetentionRuleDataStorageName()));
+      errorJobs.add(failedJob);
+    }
+  }
+
   private RetentionRule buildUserCommandedRule(String target, String projectId) {
     RetentionRule rule = new RetentionRule();
     String dataStorageName = getDataStorageName(target);
@@ -243,6 +343,29 @@ public class ExecuteRetentionWorker extends BaseWorker {
     return target;
   }
 
+  private static synchronized BoundedTaskExecutor getProjectExecutor() {
+    if (projectExecutor == null) {
+      projectExecutor =
+          new BoundedTaskExecutor(
+              "project-execution",
+              Integer.valueOf(
+                  SdrsApplication.getAppConfigProperty(
+                      "execution.projectConcurrency.threadPoolSize",
+                      DEFAULT_PROJECT_THREAD_POOL_SIZE)));
+    }
+    return projectExecutor;
+  }
+
+  /** Gracefully shuts down the project pool, waiting up to the given time for running executions */
+  public static synchronized void shutdown(long timeout, TimeUnit timeUnit) {
+    if (projectExecutor == null) {
+      return;
+    }
+
+    projectExecutor.shutdown(timeout, timeUnit);
+    projectExecutor = null;
+  }
+
   private ZonedDateTime atMidnight() {
     return ZonedDateTime.now(Clock.systemUTC()).with(LocalTime.MIDNIGHT).plusDays(1);
   }
@@ -18,17 +18,27 @@
 
 package com.google.gcs.sdrs.service.worker.impl;
 
+import com.google.gcs.sdrs.SdrsApplication;
+import com.google.gcs.sdrs.common.RetentionJobStatusType;
 import com.google.gcs.sdrs.dao.RetentionJobValidationDao;
 import com.google.gcs.sdrs.dao.SingletonDao;
 import com.google.gcs.sdrs.dao.model.RetentionJob;
 import com.google.gcs.sdrs.dao.model.RetentionJobValidation;
+import com.google.gcs.sdrs.service.manager.BoundedTaskExecutor;
 import com.google.gcs.sdrs.service.worker.BaseWorker;
 import com.google.gcs.sdrs.service.worker.WorkerResult;
 import com.google.gcs.sdrs.service.worker.rule.impl.StsRuleValidator;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,13 +46,52 @@ import org.slf4j.LoggerFactory;
 /** A worker class to do the validation */
 public class ValidationWorker extends BaseWorker {
 
+  private static final String DEFAULT_PROJECT_THREAD_POOL_SIZE = "8";
+  private static final String DEFAULT_MAX_CONCURRENT_PROJECTS = "8";
+  private static final String DEFAULT_RECHECK_INITIAL_DELAY_IN_MINUTES = "30";
+  private static final String DEFAULT_RECHECK_MAX_DELAY_IN_MINUTES = "720";
+  private static BoundedTaskExecutor projectExecutor;
+
   private final Logger logger = LoggerFactory.getLogger(ValidationWorker.class);
 
   RetentionJobValidationDao dao = SingletonDao.getRetentionJobValidationDao();
   StsRuleValidator stsRuleValidator = StsRuleValidator.getInstance();
+  boolean isProjectConcurrencyEnabled;
+  int maxConcurrentProjects;
+  boolean isRecheckBackoffEnabled;
+  Duration recheckInitialDelay;
+  Duration recheckMaxDelay;
+  boolean isBulkUpsertEnabled;
 
   public ValidationWorker(String correlationId) {
     super(correlationId);
+
+    isProjectConcurrencyEnabled =
+        Boolean.valueOf(
+            SdrsApplication.getAppConfigProperty(
+                "validation.projectConcurrency.enabled", "false"));
+    maxConcurrentProjects =
+        Integer.valueOf(
+            SdrsApplication.getAppConfigProperty(
+                "validation.projectConcurrency.maxConcurrentProjects",
+                DEFAULT_MAX_CONCURRENT_PROJECTS));
+    isRecheckBackoffEnabled =
+        Boolean.valueOf(
+            SdrsApplication.getAppConfigProperty("validation.recheck.enabled", "false"));
+    recheckInitialDelay =
+        Duration.ofMinutes(
+            Long.valueOf(
+                SdrsApplication.getAppConfigProperty(
+                    "validation.recheck.initialDelayInMinutes",
+                    DEFAULT_RECHECK_INITIAL_DELAY_IN_MINUTES)));
+    recheckMaxDelay =
+        Duration.ofMinutes(
+            Long.valueOf(
+                SdrsApplication.getAppConfigProperty(
+                    "validation.recheck.maxDelayInMinutes", DEFAULT_RECHECK_MAX_DELAY_IN_MINUTES)));
+    isBulkUpsertEnabled =
+        Boolean.valueOf(
+            SdrsApplication.getAppConfigProperty("validation.bulkUpsert.enabled", "false"));
   }
 
   /**
@@ -52,6 +101,7 @@ public class ValidationWorker extends BaseWorker {
   @Override
   public void doWork() {
     List<RetentionJob> retentionJobs = dao.findAllPendingRetentionJobs();
+    boolean isComplete = true;
 
     if (retentionJobs.size() > 0) {
       // An STS job status query can only be done on one project id at a time, so split the list
@@ -60,11 +110,18 @@ public class ValidationWorker extends BaseWorker {
           retentionJobs.stream()
               .collect(Collectors.groupingBy(RetentionJob::getRetentionRuleProjectId));
 
+      // Get validation results from STS for each group of jobs
+      List<List<RetentionJobValidation>> validationsPerProject = new ArrayList<>();
+      if (isProjectConcurrencyEnabled) {
+        isComplete = validateConcurrently(jobsByProject, validationsPerProject);
+      } else {
+        for (List<RetentionJob> jobs : jobsByProject.values()) {
+          validationsPerProject.add(stsRuleValidator.validateRetentionJobs(jobs));
+        }
+      }
+
       Map<String, List<RetentionJobValidation>> stsValidations = new HashMap<>();
-      for (List<RetentionJob> jobs : jobsByProject.values()) {
-        // Get validation results from STS for each group of jobs
-        List<RetentionJobValidation> retentionJobValidations =
-            stsRuleValidator.validateRetentionJobs(jobs);
+      for (List<RetentionJobValidation> retentionJobValidations : validationsPerProject) {
         // Combine all retentionJobValidation results from STS into one map by JobName so we can
         // quickly search it later on
         retentionJobValidations.stream()
@@ -83,36 +140,152 @@ public class ValidationWorker extends BaseWorker {
       }
 
       if (stsValidations.size() > 0) {
-        // Our map of STS validations may or may not already exist in the DB. We need to query the
-        // DB for each one to see if it exists.
-        List<RetentionJobValidation> existingValidations =
-            dao.findAllByRetentionJobNames(new ArrayList<>(stsValidations.keySet()));
-
-        // For each validation that exists in the DB, update the matching STS validation with the Id
-        // so it can be properly updated
-        for (RetentionJobValidation existingValidation : existingValidations) {
-          stsValidations.get(existingValidation.getJobOperationName()).stream()
-              .forEach(
-                  validation -> {
-                    if (existingValidation.getRetentionJobId().intValue()
-                        == validation.getRetentionJobId().intValue()) {
-                      validation.setId(existingValidation.getId());
-                    }
-                  });
-        }
-
         List<RetentionJobValidation> finalValidationList =
             stsValidations.values().stream()
-                .reduce(
-                    (v1, v2) -> {
-                      v1.addAll(v2);
-                      return v1;
-                    })
-                .get();
-
-        dao.saveOrUpdateBatch(finalValidationList);
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+        Instant now = Instant.now();
+
+        if (isBulkUpsertEnabled) {
+          // the database matches the validations to the existing records and extends the next
+          // check of the records that are still pending
+          for (RetentionJobValidation validation : finalValidationList) {
+            validation.setNextCheckAt(getNextCheckAt(validation, null, now));
+          }
+          dao.upsertBatch(finalValidationList);
+        } else {
+          // Our map of STS validations may or may not already exist in the DB. We need to query
+          // the DB for each one to see if it exists.
+          List<RetentionJobValidation> existingValidations =
+              dao.findAllByRetentionJobNames(new ArrayList<>(stsValidations.keySet()));
+
+          // For each validation that exists in the DB, update the matching STS validation with the
+          // Id so it can be properly updated
+          for (RetentionJobValidation existingValidation : existingValidations) {
+            stsValidations.get(existingValidation.getJobOperationName()).stream()
+                .forEach(
+                    validation -> {
+                      if (existingValidation.getRetentionJobId().intValue()
+                          == validation.getRetentionJobId().intValue()) {
+                        validation.setId(existingValidation.getId());
+                        validation.setNextCheckAt(
+                            getNextCheckAt(validation, existingValidation.getCreatedAt(), now));
+                      }
+                    });
+          }
+
+          for (RetentionJobValidation validation : finalValidationList) {
+            if (validation.getId() == null) {
+              validation.setNextCheckAt(getNextCheckAt(validation, null, now));
+            }
+          }
+
+          dao.saveOrUpdateBatch(finalValidationList);
+        }
+      }
+    }
+    workerResult.setStatus(
+        isComplete
+            ? WorkerResult.WorkerResultStatus.SUCCESS
+            : WorkerResult.WorkerResultStatus.FAILED);
+  }
+
+  /**
+   * Gets the time a pending validation is due to be checked again. The delay is the time the
+   * operation has been pending so far, bounded by the initial and the maximum delay, so it doubles
+   * with every check while the operation stays pending.
+   *
+   * @param validation the validation as just read from STS
+   * @param firstSeenAt when the operation was first recorded as pending, or null if it is new
+   * @param now the time of this check
+   * @return the time of the next check, or null to check it on every run
+   */
+  Timestamp getNextCheckAt(RetentionJobValidation validation, Timestamp firstSeenAt, Instant now) {
+    if (!isRecheckBackoffEnabled || validation.getStatus() != RetentionJobStatusType.PENDING) {
+      return null;
+    }
+
+    Duration delay = recheckInitialDelay;
+    if (firstSeenAt != null) {
+      Duration pendingFor = Duration.between(firstSeenAt.toInstant(), now);
+      if (pendingFor.compareTo(delay) > 0) {
+        delay = pendingFor;
       }
     }
-    workerResult.setStatus(WorkerResult.WorkerResultStatus.SUCCESS);
+    if (delay.compareTo(recheckMaxDelay) > 0) {
+      delay = recheckMaxDelay;
+    }
+    return Timestamp.from(now.plus(delay));
+  }
+
+  /**
+   * Validates the jobs of every project on the shared project pool. Each project returns its own
+   * results, which are only combined on the calling thread once all projects have finished. A
+   * project that fails does not stop the others.
+   *
+   * @param jobsByProject the pending jobs grouped by project ID
+   * @param validationsPerProject receives the validation results of each successful project
+   * @return true if all projects were validated, false otherwise
+   */
+  private boolean validateConcurrently(
+      Map<String, List<RetentionJob>> jobsByProject,
+      List<List<RetentionJobValidation>> validationsPerProject) {
+    List<String> projectIds = new ArrayList<>(jobsByProject.keySet());
+    List<Callable<List<RetentionJobValidation>>> tasks = new ArrayList<>();
+    for (String projectId : projectIds) {
+      List<RetentionJob> jobs = jobsByProject.get(projectId);
+      tasks.add(() -> stsRuleValidator.validateRetentionJobs(jobs));
+    }
+
+    List<Future<List<RetentionJobValidation>>> results;
+    try {
+      results = getProjectExecutor().invokeAll(tasks, maxConcurrentProjects);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger.error("Interrupted while validating jobs for all projects", e);
+      return false;
+    }
+
+    int failedCount = 0;
+    for (int i = 0; i < results.size(); i++) {
+      try {
+        validationsPerProject.add(results.get(i).get());
+      } catch (ExecutionException | InterruptedException e) {
+        Throwable cause = e.getCause() == null ? e : e.getCause();
+        logger.error(
+            String.format(
+                "Error validating jobs for project %s: %s", projectIds.get(i), cause.getMessage()),
+            cause);
+        failedCount++;
+      }
+    }
+
+    logger.info(
+        String.format(
+            "Validation finished for %d projects, %d failed.", projectIds.size(), failedCount));
+    return failedCount == 0;
+  }
+
+  private static synchronized BoundedTaskExecutor getProjectExecutor() {
+    if (projectExecutor == null) {
+      projectExecutor =
+          new BoundedTaskExecutor(
+              "project-validation",
+              Integer.valueOf(
+                  SdrsApplication.getAppConfigProperty(
+                      "validation.projectConcurrency.threadPoolSize",
+                      DEFAULT_PROJECT_THREAD_POOL_SIZE)));
+    }
+    return projectExecutor;
+  }
+
+  /** Gracefully shuts down the project pool, waiting up to the given time for running projects */
+  public static synchronized void shutdown(long timeout, TimeUnit timeUnit) {
+    if (projectExecutor == null) {
+      return;
+    }
+
+    projectExecutor.shutdown(timeout, timeUnit);
+    projectExecutor = null;
   }
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.service.worker.rule;
+
+import com.google.gcs.sdrs.SdrsApplication;
+import com.google.gcs.sdrs.common.RetentionRuleType;
+import com.google.gcs.sdrs.dao.RetentionRuleDao;
+import com.google.gcs.sdrs.dao.model.RetentionRule;
+import com.google.gcs.sdrs.util.RetentionUtil;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * An in-memory, read-only view of all active retention rules, loaded with a single query.
+ *
+ * <p>Rules are indexed by project, bucket and type. Global rules are kept apart and resolved per
+ * project, falling back to the rule of the default project.
+ */
+public class RuleSnapshot {
+
+  private final Map<String, Map<RetentionRuleType, Map<String, List<RetentionRule>>>> projectRules =
+      new LinkedHashMap<>();
+  private final Map<String, RetentionRule> globalRules = new HashMap<>();
+  private final String defaultProjectId;
+
+  /**
+   * Builds a snapshot from the given rules
+   *
+   * @param rules the active {@link RetentionRule}s
+   * @param defaultProjectId the project id that denotes the default global rule
+   */
+  public RuleSnapshot(List<RetentionRule> rules, @Nullable String defaultProjectId) {
+    this.defaultProjectId = defaultProjectId;
+    for (RetentionRule rule : rules) {
+      if (rule.getType() == RetentionRuleType.GLOBAL) {
+        globalRules.putIfAbsent(rule.getProjectId(), rule);
+      } else {
+        projectRules
+            .computeIfAbsent(rule.getProjectId(), k -> new HashMap<>())
+            .computeIfAbsent(rule.getType(), k -> new LinkedHashMap<>())
+            .computeIfAbsent(
+                RetentionUtil.getBucketName(rule.getDataStorageName()), k -> new ArrayList<>())
+            .add(rule);
+      }
+    }
+  }
+
+  /**
+   * Loads all active rules in one read-only transaction
+   *
+   * @param retentionRuleDao the {@link RetentionRuleDao} to load the rules with
+   * @return the {@link RuleSnapshot}
+   */
+  public static RuleSnapshot load(RetentionRuleDao retentionRuleDao) {
+    List<RetentionRule> rules = retentionRuleDao.findAllActiveRules();
+    if (rules == null) {
+      rules = Collections.emptyList();
+    }
+    return new RuleSnapshot(rules, SdrsApplication.getAppConfigProperty("sts.defaultProjectId"));
+  }
+
+  /** Gets the ids of all projects with at least one active non-global rule */
+  public List<String> getProjectIds() {
+    return new ArrayList<>(projectRules.keySet());
+  }
+
+  /** Gets all dataset rules of a project */
+  public List<RetentionRule> getDatasetRules(String projectId) {
+    return getRules(projectId, RetentionRuleType.DATASET);
+  }
+
+  /** Gets all default rules of a project */
+  public List<RetentionRule> getDefaultRules(String projectId) {
+    return getRules(projectId, RetentionRuleType.DEFAULT);
+  }
+
+  /**
+   * Gets the rules of a given type that apply to a single bucket
+   *
+   * @param projectId the GCP project id
+   * @param bucketName the bucket name, without the gs:// prefix
+   * @param retentionRuleType the rule type
+   * @return a {@link List} of {@link RetentionRule}s. Empty if there is none.
+   */
+  public List<RetentionRule> getBucketRules(
+      String projectId, String bucketName, RetentionRuleType retentionRuleType) {
+    Map<String, List<RetentionRule>> bucketRules = getRulesByBucket(projectId, retentionRuleType);
+    List<RetentionRule> rules = bucketRules.get(bucketName);
+    return rules == null ? new ArrayList<>() : new ArrayList<>(rules);
+  }
+
+  /**
+   * Gets the global rule of a project. Falls back to the global rule of the default project when
+   * the project has none.
+   *
+   * @param projectId the GCP project id
+   * @return the global {@link RetentionRule}, or null if there is none
+   */
+  public RetentionRule getGlobalRule(String projectId) {
+    RetentionRule globalRule = globalRules.get(projectId);
+    if (globalRule == null && defaultProjectId != null) {
+      globalRule = globalRules.get(defaultProjectId);
+    }
+    return globalRule;
+  }
+
+  private List<RetentionRule> getRules(String projectId, RetentionRuleType retentionRuleType) {
+    List<RetentionRule> rules = new ArrayList<>();
+    for (List<RetentionRule> bucketRules : getRulesByBucket(projectId, retentionRuleType).values()) {
+      rules.addAll(bucketRules);
+    }
+    return rules;
+  }
+
+  private Map<String, List<RetentionRule>> getRulesByBucket(
+      String projectId, RetentionRuleType retentionRuleType) {
+    Map<RetentionRuleType, Map<String, List<RetentionRule>>> typeRules =
+        projectRules.get(projectId);
+    if (typeRules == null || !typeRules.containsKey(retentionRuleType)) {
+      return Collections.emptyMap();
+    }
+    return typeRules.get(retentionRuleType);
+  }
+}
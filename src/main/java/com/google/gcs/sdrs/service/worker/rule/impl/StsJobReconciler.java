@@ -0,0 +1,264 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.service.worker.rule.impl;
+
+import com.google.api.services.storagetransfer.v1.Storagetransfer;
+import com.google.api.services.storagetransfer.v1.model.GcsData;
+import com.google.api.services.storagetransfer.v1.model.ObjectConditions;
+import com.google.api.services.storagetransfer.v1.model.TransferJob;
+import com.google.api.services.storagetransfer.v1.model.TransferOptions;
+import com.google.api.services.storagetransfer.v1.model.TransferSpec;
+import com.google.gcs.sdrs.service.cache.TransferJobCache;
+import com.google.gcs.sdrs.util.StsUtil;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Brings existing STS transfer jobs to a desired state with as few writes as possible.
+ *
+ * <p>The desired job is compared with the actual job field by field. A job that already matches is
+ * left alone, otherwise only the fields that differ are sent in a PATCH. An instance is used for a
+ * single rule execution and counts the skipped, patched and created jobs of that execution.
+ */
+class StsJobReconciler {
+
+  static final String FIELD_DESCRIPTION = "description";
+  static final String FIELD_TRANSFER_SPEC = "transfer_spec";
+  static final String FIELD_STATUS = "status";
+  static final String FIELD_NOTIFICATION_CONFIG = "notification_config";
+  // a random exclude prefix that matches no object, added when a default job has nothing to exclude
+  static final String NOOP_EXCLUDE_PREFIX_SUFFIX = "_NOOP_EXCLUDE_PREFIX/";
+
+  private final Storagetransfer client;
+  private final TransferJobCache transferJobCache;
+  private final AtomicInteger skippedCount = new AtomicInteger();
+  private final AtomicInteger patchedCount = new AtomicInteger();
+  private final AtomicInteger createdCount = new AtomicInteger();
+  private static final Logger logger = LoggerFactory.getLogger(StsJobReconciler.class);
+
+  StsJobReconciler(Storagetransfer client, TransferJobCache transferJobCache) {
+    this.client = client;
+    this.transferJobCache = transferJobCache;
+  }
+
+  /**
+   * Updates the actual job to the desired state if they differ
+   *
+   * @param actualJob the {@link TransferJob} as it currently exists in STS
+   * @param desiredJob a {@link TransferJob} with the desired description, transfer spec, status
+   *     and optionally notification config
+   * @param projectId the project ID of the job
+   * @return the up to date {@link TransferJob}
+   * @throws IOException when the PATCH request fails
+   */
+  TransferJob reconcile(TransferJob actualJob, TransferJob desiredJob, String projectId)
+      throws IOException {
+    List<String> changedFields = diff(actualJob, desiredJob);
+    if (changedFields.isEmpty()) {
+      logger.info(String.format("Transfer job %s is up to date.", actualJob.getName()));
+      skippedCount.incrementAndGet();
+      return actualJob;
+    }
+
+    TransferJob jobToUpdate = new TransferJob();
+    if (changedFields.contains(FIELD_DESCRIPTION)) {
+      jobToUpdate.setDescription(desiredJob.getDescription());
+    }
+    if (changedFields.contains(FIELD_TRANSFER_SPEC)) {
+      // STS only accepts a complete transfer spec
+      jobToUpdate.setTransferSpec(desiredJob.getTransferSpec());
+    }
+    if (changedFields.contains(FIELD_STATUS)) {
+      jobToUpdate.setStatus(desiredJob.getStatus());
+    }
+    if (changedFields.contains(FIELD_NOTIFICATION_CONFIG)) {
+      jobToUpdate.set(
+          StsUtil.NOTIFICATION_CONFIG_FIELD, desiredJob.get(StsUtil.NOTIFICATION_CONFIG_FIELD));
+    }
+
+    TransferJob updatedJob;
+    try {
+      updatedJob =
+          StsUtil.updateExistingJob(
+              client, jobToUpdate, actualJob.getName(), projectId, String.join(",", changedFields));
+    } finally {
+      // the cached state is outdated even if the update failed part way
+      transferJobCache.invalidate(actualJob.getName());
+    }
+    patchedCount.incrementAndGet();
+    return updatedJob;
+  }
+
+  /** Counts a job that did not exist and was created */
+  void recordCreated(TransferJob createdJob) {
+    if (createdJob != null) {
+      transferJobCache.invalidate(createdJob.getName());
+    }
+    createdCount.incrementAndGet();
+  }
+
+  int getSkippedCount() {
+    return skippedCount.get();
+  }
+
+  int getPatchedCount() {
+    return patchedCount.get();
+  }
+
+  int getCreatedCount() {
+    return createdCount.get();
+  }
+
+  /** Logs the job counts of this execution */
+  void logSummary(String jobType, String projectId) {
+    logger.info(
+        String.format(
+            "%s STS jobs for project %s: %d skipped, %d patched, %d created.",
+            jobType, projectId, getSkippedCount(), getPatchedCount(), getCreatedCount()));
+    transferJobCache.logStats();
+  }
+
+  /**
+   * Gets the names of the updatable fields that differ between the actual and the desired job
+   *
+   * @return a {@link List} of field names, as used in the PATCH field mask. Empty if the jobs match.
+   */
+  static List<String> diff(TransferJob actualJob, TransferJob desiredJob) {
+    List<String> changedFields = new ArrayList<>();
+    if (!Objects.equals(actualJob.getDescription(), desiredJob.getDescription())) {
+      changedFields.add(FIELD_DESCRIPTION);
+    }
+    if (!isSameTransferSpec(actualJob.getTransferSpec(), desiredJob.getTransferSpec())) {
+      changedFields.add(FIELD_TRANSFER_SPEC);
+    }
+    if (!Objects.equals(actualJob.getStatus(), desiredJob.getStatus())) {
+      changedFields.add(FIELD_STATUS);
+    }
+    // a job keeps its notification config when none is desired
+    if (!isSameNotificationConfig(
+        actualJob.get(StsUtil.NOTIFICATION_CONFIG_FIELD),
+        desiredJob.get(StsUtil.NOTIFICATION_CONFIG_FIELD))) {
+      changedFields.add(FIELD_NOTIFICATION_CONFIG);
+    }
+    return changedFields;
+  }
+
+  private static boolean isSameNotificationConfig(Object actual, Object desired) {
+    if (desired == null) {
+      return true;
+    }
+    if (!(actual instanceof Map)) {
+      return false;
+    }
+
+    Map<?, ?> actualConfig = (Map<?, ?>) actual;
+    Map<?, ?> desiredConfig = (Map<?, ?>) desired;
+    return Objects.equals(actualConfig.get("pubsubTopic"), desiredConfig.get("pubsubTopic"))
+        && Objects.equals(actualConfig.get("payloadFormat"), desiredConfig.get("payloadFormat"))
+        && toEventTypeSet(actualConfig).equals(toEventTypeSet(desiredConfig));
+  }
+
+  private static Set<Object> toEventTypeSet(Map<?, ?> notificationConfig) {
+    Object eventTypes = notificationConfig.get("eventTypes");
+    return eventTypes instanceof Collection
+        ? new HashSet<>((Collection<?>) eventTypes)
+        : new HashSet<>();
+  }
+
+  private static boolean isSameTransferSpec(TransferSpec actual, TransferSpec desired) {
+    if (actual == null || desired == null) {
+      return actual == desired;
+    }
+
+    if (actual.getAwsS3DataSource() != null || actual.getHttpDataSource() != null) {
+      return false;
+    }
+
+    return Objects.equals(
+            getBucketName(actual.getGcsDataSource()), getBucketName(desired.getGcsDataSource()))
+        && Objects.equals(
+            getBucketName(actual.getGcsDataSink()), getBucketName(desired.getGcsDataSink()))
+        && isSameObjectConditions(actual.getObjectConditions(), desired.getObjectConditions())
+        && isSameTransferOptions(actual.getTransferOptions(), desired.getTransferOptions());
+  }
+
+  private static boolean isSameObjectConditions(
+      ObjectConditions actual, ObjectConditions desired) {
+    if (actual == null) {
+      actual = new ObjectConditions();
+    }
+    if (desired == null) {
+      desired = new ObjectConditions();
+    }
+
+    return Objects.equals(
+            actual.getMinTimeElapsedSinceLastModification(),
+            desired.getMinTimeElapsedSinceLastModification())
+        && Objects.equals(
+            actual.getMaxTimeElapsedSinceLastModification(),
+            desired.getMaxTimeElapsedSinceLastModification())
+        && toSet(actual.getIncludePrefixes()).equals(toSet(desired.getIncludePrefixes()))
+        && toExcludeSet(actual.getExcludePrefixes())
+            .equals(toExcludeSet(desired.getExcludePrefixes()));
+  }
+
+  private static boolean isSameTransferOptions(TransferOptions actual, TransferOptions desired) {
+    if (actual == null) {
+      actual = new TransferOptions();
+    }
+    if (desired == null) {
+      desired = new TransferOptions();
+    }
+
+    return isTrue(actual.getDeleteObjectsFromSourceAfterTransfer())
+            == isTrue(desired.getDeleteObjectsFromSourceAfterTransfer())
+        && isTrue(actual.getDeleteObjectsUniqueInSink())
+            == isTrue(desired.getDeleteObjectsUniqueInSink())
+        && isTrue(actual.getOverwriteObjectsAlreadyExistingInSink())
+            == isTrue(desired.getOverwriteObjectsAlreadyExistingInSink());
+  }
+
+  private static String getBucketName(GcsData gcsData) {
+    return gcsData == null ? null : gcsData.getBucketName();
+  }
+
+  private static Set<String> toSet(List<String> values) {
+    // STS does not care about the order of prefixes
+    return values == null ? new HashSet<>() : new HashSet<>(values);
+  }
+
+  private static Set<String> toExcludeSet(List<String> values) {
+    // every run generates a new no-op prefix, they all exclude nothing
+    Set<String> excludePrefixes = toSet(values);
+    excludePrefixes.removeIf(prefix -> prefix.endsWith(NOOP_EXCLUDE_PREFIX_SUFFIX));
+    return excludePrefixes;
+  }
+
+  private static boolean isTrue(Boolean value) {
+    return value != null && value;
+  }
+}
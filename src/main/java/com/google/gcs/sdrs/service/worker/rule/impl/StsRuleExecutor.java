@@ -20,25 +20,26 @@ package com.google.gcs.sdrs.service.worker.rule.impl;
 
 import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
 import com.google.api.services.storagetransfer.v1.Storagetransfer;
-import com.google.api.services.storagetransfer.v1.model.ObjectConditions;
 import com.google.api.services.storagetransfer.v1.model.TransferJob;
-import com.google.api.services.storagetransfer.v1.model.TransferSpec;
 import com.google.gcs.sdrs.SdrsApplication;
 import com.google.gcs.sdrs.common.RetentionRuleType;
 import com.google.gcs.sdrs.common.RetentionValue;
 import com.google.gcs.sdrs.controller.validation.ValidationConstants;
-import com.google.gcs.sdrs.dao.PooledStsJobDao;
 import com.google.gcs.sdrs.dao.RetentionJobDao;
 import com.google.gcs.sdrs.dao.SingletonDao;
 import com.google.gcs.sdrs.dao.model.PooledStsJob;
 import com.google.gcs.sdrs.dao.model.RetentionJob;
 import com.google.gcs.sdrs.dao.model.RetentionRule;
+import com.google.gcs.sdrs.service.cache.PooledStsJobIndex;
+import com.google.gcs.sdrs.service.cache.TransferJobCache;
+import com.google.gcs.sdrs.service.manager.BoundedTaskExecutor;
 import com.google.gcs.sdrs.service.mq.PubSubMessageQueueManagerImpl;
 import com.google.gcs.sdrs.service.mq.pojo.DeleteNotificationMessage;
 import com.google.gcs.sdrs.service.worker.BaseWorker;
 import com.google.gcs.sdrs.service.worker.rule.RuleExecutor;
 import com.google.gcs.sdrs.util.CredentialsUtil;
 import com.google.gcs.sdrs.util.PrefixGeneratorUtility;
+import com.google.gcs.sdrs.util.PrefixMinimizer;
 import com.google.gcs.sdrs.util.RetentionUtil;
 import com.google.gcs.sdrs.util.StsUtil;
 import java.io.IOException;
@@ -46,16 +47,23 @@ import java.time.Clock;
 import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -73,16 +81,30 @@ public class StsRuleExecutor implements RuleExecutor {
   private final String[] DEFAULT_LOG_CAT_BUCKET_PREFIX = {
     "2017/", "2018/", "2019/", "2020/", "2021"
   };
+  private final String DEFAULT_BUCKET_THREAD_POOL_SIZE = "16";
+  private final String DEFAULT_MAX_CONCURRENT_BUCKETS = "8";
+  private final String DEFAULT_FULL_RECONCILE_INTERVAL_IN_HOURS = "24";
+  private final String DEFAULT_MAX_DIRECTORIES_PER_NOTIFICATION = "100";
+  private final String NOOP_EXCLUDE_PREFIX_SUFFIX = StsJobReconciler.NOOP_EXCLUDE_PREFIX_SUFFIX;
   private final String JOB_TYPE_STS = "STS";
   private String shadowBucketExtension;
   private boolean isShadowBucketExtensionPrefix;
   private String defaultProjectId;
-  private int maxPrefixCount;
+  int maxPrefixCount;
   private int lookBackInDays;
   private boolean isStsJobPoolOnly;
+  private int bucketThreadPoolSize;
+  private BoundedTaskExecutor bucketExecutor;
+  boolean isBucketConcurrencyEnabled;
+  boolean isIncrementalExecutionEnabled;
+  int fullReconcileIntervalInHours;
+  boolean isGroupedNotificationEnabled;
+  int maxDirectoriesPerNotification;
+  int maxConcurrentBuckets;
   Storagetransfer client;
   RetentionJobDao retentionJobDao;
-  PooledStsJobDao stsJobDao;
+  TransferJobCache transferJobCache = TransferJobCache.getInstance();
+  PooledStsJobIndex pooledStsJobIndex = PooledStsJobIndex.getInstance();
 
   private static final Logger logger = LoggerFactory.getLogger(StsRuleExecutor.class);
 
@@ -122,11 +144,36 @@ public class StsRuleExecutor implements RuleExecutor {
         Integer.valueOf(
             SdrsApplication.getAppConfigProperty(
                 "sts.maxLookBackInDays", DEFAULT_LOOKBACK_IN_DAYS));
+    isBucketConcurrencyEnabled =
+        Boolean.valueOf(
+            SdrsApplication.getAppConfigProperty("sts.bucketConcurrency.enabled", "false"));
+    bucketThreadPoolSize =
+        Integer.valueOf(
+            SdrsApplication.getAppConfigProperty(
+                "sts.bucketConcurrency.threadPoolSize", DEFAULT_BUCKET_THREAD_POOL_SIZE));
+    maxConcurrentBuckets =
+        Integer.valueOf(
+            SdrsApplication.getAppConfigProperty(
+                "sts.bucketConcurrency.maxConcurrentBuckets", DEFAULT_MAX_CONCURRENT_BUCKETS));
+    isIncrementalExecutionEnabled =
+        Boolean.valueOf(SdrsApplication.getAppConfigProperty("sts.incremental.enabled", "false"));
+    fullReconcileIntervalInHours =
+        Integer.valueOf(
+            SdrsApplication.getAppConfigProperty(
+                "sts.incremental.fullReconcileIntervalInHours",
+                DEFAULT_FULL_RECONCILE_INTERVAL_IN_HOURS));
+    isGroupedNotificationEnabled =
+        Boolean.valueOf(
+            SdrsApplication.getAppConfigProperty("pubsub.groupedNotification.enabled", "false"));
+    maxDirectoriesPerNotification =
+        Integer.valueOf(
+            SdrsApplication.getAppConfigProperty(
+                "pubsub.groupedNotification.maxDirectoriesPerMessage",
+                DEFAULT_MAX_DIRECTORIES_PER_NOTIFICATION));
 
     GoogleCredential credentials = credentialsUtil.getCredentials();
     client = StsUtil.createStsClient(credentials);
     retentionJobDao = SingletonDao.getRetentionJobDao();
-    stsJobDao = SingletonDao.getPooledStsJobDao();
   }
 
   /**
@@ -231,103 +278,240 @@ public class StsRuleExecutor implements RuleExecutor {
   @Override
   public List<RetentionJob> executeDatasetRule(
       Collection<RetentionRule> datasetRules, String projectId) {
-    List<RetentionJob> datasetRuleJobs = new ArrayList<>();
     // get all dataset rules for a bucket
     Map<String, List<RetentionRule>> bucketDatasetMap = buildBucketRuleMap(datasetRules);
     String correlationId = getCorrelationId();
     ZonedDateTime zonedDateTimeNow = ZonedDateTime.now(Clock.systemUTC());
-    String scheduleTimeOfDay = getNextScheduledAt(zonedDateTimeNow, 1);
+    StsJobReconciler reconciler = new StsJobReconciler(client, transferJobCache);
 
+    List<Callable<List<RetentionJob>>> bucketTasks = new ArrayList<>();
     for (String bucketName : bucketDatasetMap.keySet()) {
+      bucketTasks.add(
+          () ->
+              executeDatasetRulePerBucket(
+                  bucketName,
+                  bucketDatasetMap.get(bucketName),
+                  projectId,
+                  correlationId,
+                  zonedDateTimeNow,
+                  reconciler));
+    }
 
-      List<String> prefixes = new ArrayList<>();
-      Map<String, List<String>> prefixesPerDatasetMap = new HashMap<>();
+    List<RetentionJob> datasetRuleJobs = new ArrayList<>();
+    try {
+      for (List<RetentionJob> bucketJobs : runBucketTasks(bucketTasks)) {
+        datasetRuleJobs.addAll(bucketJobs);
+      }
+    } finally {
+      reconciler.logSummary(RetentionRuleType.DATASET.toString(), projectId);
+    }
+    return datasetRuleJobs;
+  }
 
-      // create prefixes from all dataset rules for a bucket
-      for (RetentionRule datasetRule : bucketDatasetMap.get(bucketName)) {
-        if (datasetRule.getType() != RetentionRuleType.DATASET) {
-          logger.warn("Rule type is not dataset.");
-          continue;
-        }
+  private List<RetentionJob> executeDatasetRulePerBucket(
+      String bucketName,
+      List<RetentionRule> bucketDatasetRules,
+      String projectId,
+      String correlationId,
+      ZonedDateTime zonedDateTimeNow,
+      StsJobReconciler reconciler) {
+    List<RetentionJob> datasetRuleJobs = new ArrayList<>();
+    List<String> prefixes = new ArrayList<>();
+    Map<String, List<String>> prefixesPerDatasetMap = new HashMap<>();
 
-        List<String> tmpPrefixes =
-            PrefixGeneratorUtility.generateTimePrefixes(
-                RetentionUtil.getDatasetPath(datasetRule.getDataStorageName()),
-                zonedDateTimeNow.minusDays(lookBackInDays),
-                zonedDateTimeNow.minusDays(
-                    RetentionValue.convertValue(
-                        RetentionValue.parse(datasetRule.getRetentionValue()))));
-        prefixesPerDatasetMap.put(datasetRule.getDataStorageName(), tmpPrefixes);
-        prefixes.addAll(tmpPrefixes);
+    // create prefixes from all dataset rules for a bucket
+    for (RetentionRule datasetRule : bucketDatasetRules) {
+      if (datasetRule.getType() != RetentionRuleType.DATASET) {
+        logger.warn("Rule type is not dataset.");
+        continue;
       }
 
-      sendDeleteNotification(
-          projectId, bucketName, prefixes, zonedDateTimeNow.toInstant(), correlationId);
+      List<String> tmpPrefixes =
+          PrefixGeneratorUtility.generateTimePrefixes(
+              RetentionUtil.getDatasetPath(datasetRule.getDataStorageName()),
+              zonedDateTimeNow.minusDays(lookBackInDays),
+              zonedDateTimeNow.minusDays(
+                  RetentionValue.convertValue(
+                      RetentionValue.parse(datasetRule.getRetentionValue()))));
+      prefixesPerDatasetMap.put(datasetRule.getDataStorageName(), tmpPrefixes);
+    }
 
-      String sourceBucket = bucketName;
-      String destinationBucket =
-          buildDestinationBucketName(
-              bucketName, shadowBucketExtension, isShadowBucketExtensionPrefix);
-      String description =
-          buildDescription(
-              RetentionRuleType.DATASET.toString(),
-              bucketDatasetMap.get(bucketName),
-              scheduleTimeOfDay);
+    // merge complete sets of time prefixes and drop prefixes that overlap across datasets
+    prefixesPerDatasetMap = PrefixMinimizer.minimizePerDataset(prefixesPerDatasetMap);
+    for (List<String> datasetPrefixes : prefixesPerDatasetMap.values()) {
+      prefixes.addAll(datasetPrefixes);
+    }
 
+    String sourceBucket = bucketName;
+    String destinationBucket =
+        buildDestinationBucketName(
+            bucketName, shadowBucketExtension, isShadowBucketExtensionPrefix);
+
+    // STS rejects jobs with too many prefixes. Each run only schedules one shard on the pooled job
+    // of the next hour, so no run overwrites a shard that a later hour has yet to run.
+    List<Map<String, List<String>>> prefixShards =
+        buildPrefixShards(bucketDatasetRules, prefixesPerDatasetMap);
+    int shard = selectPrefixShard(zonedDateTimeNow, prefixShards.size());
+    if (prefixShards.size() > 1) {
       logger.info(
           String.format(
-              "Scheduling dataset STS job with projectId: %s, "
-                  + "description: %s, source: %s, destination: %s",
-              projectId, description, sourceBucket, destinationBucket));
+              "Splitting %d prefixes of %s/%s into %d STS jobs of at most %d prefixes. "
+                  + "Scheduling shard %d.",
+              prefixes.size(),
+              projectId,
+              bucketName,
+              prefixShards.size(),
+              maxPrefixCount,
+              shard + 1));
+    }
 
-      TransferJob job = null;
-      try {
-        TransferJob stsPooledJob =
-            findPooledJob(projectId, bucketName, scheduleTimeOfDay, RetentionRuleType.DATASET);
-        if (stsPooledJob == null && !isStsJobPoolOnly) {
-          job =
-              StsUtil.createStsJob(
-                  client,
-                  projectId,
-                  sourceBucket,
-                  destinationBucket,
-                  prefixes,
-                  description,
-                  zonedDateTimeNow);
-        } else {
-          TransferJob jobToUpdate = new TransferJob();
-          jobToUpdate
-              .setDescription(description)
-              .setTransferSpec(
-                  StsUtil.buildTransferSpec(sourceBucket, destinationBucket, prefixes, false, null))
-              .setStatus(StsUtil.STS_ENABLED_STRING);
-          job = StsUtil.updateExistingJob(client, jobToUpdate, stsPooledJob.getName(), projectId);
-        }
-      } catch (IOException e) {
-        logger.error(
-            String.format(
-                "Failed to schedule dataset STS job for %s/%s. %s",
-                projectId, sourceBucket, e.getMessage()), e);
-      }
+    Map<String, List<String>> shardPrefixesPerDatasetMap = prefixShards.get(shard);
+    List<String> shardPrefixes = new ArrayList<>();
+    for (List<String> datasetPrefixes : shardPrefixesPerDatasetMap.values()) {
+      shardPrefixes.addAll(datasetPrefixes);
+    }
 
-      String jobName = null;
-      if (job != null) {
-        jobName = job.getName();
-      }
+    sendDeleteNotification(
+        projectId, bucketName, shardPrefixes, zonedDateTimeNow.toInstant(), correlationId);
 
-      for (RetentionRule datasetRule : bucketDatasetMap.get(bucketName)) {
+    TransferJob job =
+        scheduleDatasetJob(
+            projectId,
+            sourceBucket,
+            destinationBucket,
+            shardPrefixes,
+            bucketDatasetRules,
+            zonedDateTimeNow,
+            getNextScheduledAt(zonedDateTimeNow, 1),
+            reconciler);
+
+    String jobName = null;
+    if (job != null) {
+      jobName = job.getName();
+    }
+
+    for (RetentionRule datasetRule : bucketDatasetRules) {
+      List<String> ruleShardPrefixes =
+          shardPrefixesPerDatasetMap.get(datasetRule.getDataStorageName());
+      // rules without prefixes are recorded with every job, as before
+      if (ruleShardPrefixes != null || !hasPrefixes(prefixesPerDatasetMap, datasetRule)) {
         datasetRuleJobs.add(
             buildRetentionJobEntity(
-                jobName,
-                datasetRule,
-                convertPrefixToString(
-                    prefixesPerDatasetMap.get(datasetRule.getDataStorageName()))));
+                jobName, datasetRule, convertPrefixToString(ruleShardPrefixes)));
       }
     }
 
     return datasetRuleJobs;
   }
 
+  private TransferJob scheduleDatasetJob(
+      String projectId,
+      String sourceBucket,
+      String destinationBucket,
+      List<String> prefixes,
+      List<RetentionRule> bucketDatasetRules,
+      ZonedDateTime zonedDateTimeNow,
+      String scheduleTimeOfDay,
+      StsJobReconciler reconciler) {
+    String description =
+        buildDescription(
+            RetentionRuleType.DATASET.toString(), bucketDatasetRules, scheduleTimeOfDay);
+
+    logger.info(
+        String.format(
+            "Scheduling dataset STS job with projectId: %s, "
+                + "description: %s, source: %s, destination: %s",
+            projectId, description, sourceBucket, destinationBucket));
+
+    TransferJob job = null;
+    try {
+      TransferJob stsPooledJob =
+          findPooledJob(projectId, sourceBucket, scheduleTimeOfDay, RetentionRuleType.DATASET);
+      if (stsPooledJob == null && !isStsJobPoolOnly) {
+        job =
+            StsUtil.createStsJob(
+                client,
+                projectId,
+                sourceBucket,
+                destinationBucket,
+                prefixes,
+                description,
+                zonedDateTimeNow);
+        reconciler.recordCreated(job);
+      } else if (stsPooledJob != null) {
+        TransferJob desiredJob = new TransferJob();
+        desiredJob
+            .setDescription(description)
+            .setTransferSpec(
+                StsUtil.buildTransferSpec(sourceBucket, destinationBucket, prefixes, false, null))
+            .setStatus(StsUtil.STS_ENABLED_STRING);
+        StsUtil.setNotificationConfig(desiredJob);
+        job = reconciler.reconcile(stsPooledJob, desiredJob, projectId);
+      }
+    } catch (IOException e) {
+      logger.error(
+          String.format(
+              "Failed to schedule dataset STS job for %s/%s. %s",
+              projectId, sourceBucket, e.getMessage()), e);
+    }
+    return job;
+  }
+
+  /**
+   * Splits the prefixes of a bucket into shards of at most maxPrefixCount prefixes. Datasets are
+   * ordered by name so the same prefixes always end up in the same shard.
+   *
+   * @return a {@link List} of shards, each mapping a dataset to its prefixes in that shard. Has at
+   *     least one, possibly empty, shard.
+   */
+  List<Map<String, List<String>>> buildPrefixShards(
+      List<RetentionRule> bucketDatasetRules, Map<String, List<String>> prefixesPerDatasetMap) {
+    List<String> datasetNames = new ArrayList<>();
+    for (RetentionRule datasetRule : bucketDatasetRules) {
+      if (prefixesPerDatasetMap.containsKey(datasetRule.getDataStorageName())) {
+        datasetNames.add(datasetRule.getDataStorageName());
+      }
+    }
+    Collections.sort(datasetNames);
+
+    int shardSize = Math.max(1, maxPrefixCount);
+    List<Map<String, List<String>>> shards = new ArrayList<>();
+    Map<String, List<String>> currentShard = new LinkedHashMap<>();
+    int currentShardSize = 0;
+    shards.add(currentShard);
+    for (String datasetName : datasetNames) {
+      for (String prefix : prefixesPerDatasetMap.get(datasetName)) {
+        if (currentShardSize == shardSize) {
+          currentShard = new LinkedHashMap<>();
+          currentShardSize = 0;
+          shards.add(currentShard);
+        }
+        currentShard.computeIfAbsent(datasetName, k -> new ArrayList<>()).add(prefix);
+        currentShardSize++;
+      }
+    }
+    return shards;
+  }
+
+  /**
+   * Selects the prefix shard of a run. The shard is derived from the hour of the pooled job the
+   * run schedules, so consecutive runs cycle through all shards.
+   *
+   * @param zonedDateTimeNow the time of the run
+   * @param shardCount the number of prefix shards of the bucket
+   * @return the index of the shard to schedule on the pooled job of the next hour
+   */
+  static int selectPrefixShard(ZonedDateTime zonedDateTimeNow, int shardCount) {
+    long scheduledHour = zonedDateTimeNow.plusHours(1).toEpochSecond() / 3600;
+    return (int) (scheduledHour % Math.max(1, shardCount));
+  }
+
+  private boolean hasPrefixes(
+      Map<String, List<String>> prefixesPerDatasetMap, RetentionRule datasetRule) {
+    List<String> prefixes = prefixesPerDatasetMap.get(datasetRule.getDataStorageName());
+    return prefixes != null && !prefixes.isEmpty();
+  }
+
   /**
    * Apply default retention. Default rule is set
    *
@@ -346,7 +530,6 @@ public class StsRuleExecutor implements RuleExecutor {
       Collection<RetentionRule> datasetRules,
       ZonedDateTime scheduledTime,
       String projectId) {
-    List<RetentionJob> defaultRuleJobs = new ArrayList<>();
     Map<String, Set<String>> prefixesToExcludeMap = buildDefaultStsJobPrefixMap(datasetRules);
     Map<String, RetentionRule> defaultRuleMap = buildDefaultRuleMap(defaultRules);
 
@@ -354,13 +537,9 @@ public class StsRuleExecutor implements RuleExecutor {
     bucketsToProcess.addAll(prefixesToExcludeMap.keySet());
     bucketsToProcess.addAll(defaultRuleMap.keySet());
 
+    StsJobReconciler reconciler = new StsJobReconciler(client, transferJobCache);
+    List<Callable<RetentionJob>> bucketTasks = new ArrayList<>();
     for (String bucketName : bucketsToProcess) {
-      String fullSourceBucket = ValidationConstants.STORAGE_PREFIX + bucketName;
-      String destinationBucket =
-          buildDestinationBucketName(
-              bucketName, shadowBucketExtension, isShadowBucketExtensionPrefix);
-      List<String> prefixesToExclude = buildPrefixesToExclude(prefixesToExcludeMap, bucketName);
-
       RetentionRule defaultRule = defaultRuleMap.get(bucketName);
 
       if (defaultRule == null) {
@@ -369,33 +548,207 @@ public class StsRuleExecutor implements RuleExecutor {
       }
 
       if (defaultRule != null) {
-        TransferJob transferJob =
-            applyDefaultRulePerBucket(
-                defaultRule,
-                scheduledTime,
-                projectId,
-                bucketName,
-                destinationBucket,
-                prefixesToExclude);
+        RetentionRule bucketDefaultRule = defaultRule;
+        bucketTasks.add(
+            () ->
+                executeDefaultRulePerBucket(
+                    bucketDefaultRule,
+                    buildPrefixesToExclude(prefixesToExcludeMap, bucketName),
+                    scheduledTime,
+                    projectId,
+                    bucketName,
+                    reconciler));
+      }
+    }
 
-        String jobName = null;
-        if (transferJob != null) {
-          jobName = transferJob.getName();
+    List<RetentionJob> defaultRuleJobs = new ArrayList<>();
+    try {
+      for (RetentionJob defaultRuleJob : runBucketTasks(bucketTasks)) {
+        // buckets skipped by incremental execution have no job
+        if (defaultRuleJob != null) {
+          defaultRuleJobs.add(defaultRuleJob);
         }
+      }
+    } finally {
+      reconciler.logSummary(RetentionRuleType.DEFAULT.toString(), projectId);
+    }
+    return defaultRuleJobs;
+  }
 
-        if (defaultRule.getType() == RetentionRuleType.GLOBAL) {
-          // Save the job with the actual projectId it is being created for, not the fake global
-          // projectId that is set on the global default rule. Same for data storage.
-          defaultRule.setProjectId(projectId);
-          defaultRule.setDataStorageName(fullSourceBucket);
+  private RetentionJob executeDefaultRulePerBucket(
+      RetentionRule defaultRule,
+      List<String> prefixesToExclude,
+      ZonedDateTime scheduledTime,
+      String projectId,
+      String bucketName,
+      StsJobReconciler reconciler) {
+    String fullSourceBucket = ValidationConstants.STORAGE_PREFIX + bucketName;
+    String destinationBucket =
+        buildDestinationBucketName(
+            bucketName, shadowBucketExtension, isShadowBucketExtensionPrefix);
+
+    RetentionJob existingDefaultRetentionJob =
+        retentionJobDao.findLatestDefaultJob(fullSourceBucket);
+    if (isIncrementalExecutionEnabled
+        && isDefaultJobUpToDate(existingDefaultRetentionJob, defaultRule, prefixesToExclude)) {
+      logger.info(
+          String.format(
+              "Skipping default STS job for %s/%s. Rule %s:%s and excluded prefixes are unchanged"
+                  + " since job %s created at %s",
+              projectId,
+              bucketName,
+              defaultRule.getId(),
+              defaultRule.getVersion(),
+              existingDefaultRetentionJob.getName(),
+              existingDefaultRetentionJob.getCreatedAt()));
+      return null;
+    }
+
+    TransferJob transferJob =
+        applyDefaultRulePerBucket(
+            defaultRule,
+            scheduledTime,
+            projectId,
+            bucketName,
+            destinationBucket,
+            prefixesToExclude,
+            existingDefaultRetentionJob,
+            reconciler);
+
+    String jobName = null;
+    if (transferJob != null) {
+      jobName = transferJob.getName();
+    }
+
+    RetentionJob defaultRetentionJob =
+        buildRetentionJobEntity(jobName, defaultRule, convertPrefixToString(prefixesToExclude));
+    if (defaultRule.getType() == RetentionRuleType.GLOBAL) {
+      // Save the job with the actual projectId it is being created for, not the fake global
+      // projectId that is set on the global default rule. Same for data storage. The rule itself
+      // is shared by all buckets and is left untouched.
+      defaultRetentionJob.setRetentionRuleProjectId(projectId);
+      defaultRetentionJob.setRetentionRuleDataStorageName(fullSourceBucket);
+      defaultRetentionJob.setDataStorageRoot(RetentionUtil.getBucketName(fullSourceBucket));
+    }
+    return defaultRetentionJob;
+  }
+
+  /**
+   * Runs one task per bucket, either one after another or on the bucket pool when bucket
+   * concurrency is enabled. The calls made for a single bucket always stay in order.
+   *
+   * @return the task results, in the same order as the tasks
+   */
+  private <T> List<T> runBucketTasks(List<Callable<T>> bucketTasks) {
+    List<T> results = new ArrayList<>();
+    if (!isBucketConcurrencyEnabled || bucketTasks.size() < 2) {
+      for (Callable<T> bucketTask : bucketTasks) {
+        results.add(callBucketTask(bucketTask));
+      }
+      return results;
+    }
+
+    List<Future<T>> futures;
+    try {
+      futures = getBucketExecutor().invokeAll(bucketTasks, maxConcurrentBuckets);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while scheduling STS jobs", e);
+    }
+
+    RuntimeException firstError = null;
+    for (Future<T> future : futures) {
+      try {
+        results.add(future.get());
+      } catch (ExecutionException | InterruptedException e) {
+        Throwable cause = e.getCause() == null ? e : e.getCause();
+        logger.error(String.format("Failed to schedule STS job. %s", cause.getMessage()), cause);
+        if (firstError == null) {
+          firstError =
+              cause instanceof RuntimeException
+                  ? (RuntimeException) cause
+                  : new IllegalStateException(cause);
         }
-        RetentionJob defaultRetentionJob =
-            buildRetentionJobEntity(jobName, defaultRule, convertPrefixToString(prefixesToExclude));
-        defaultRuleJobs.add(defaultRetentionJob);
       }
     }
 
-    return defaultRuleJobs;
+    // surface failures the same way the sequential mode does, once every bucket has been handled
+    if (firstError != null) {
+      throw firstError;
+    }
+    return results;
+  }
+
+  private <T> T callBucketTask(Callable<T> bucketTask) {
+    try {
+      return bucketTask.call();
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private synchronized BoundedTaskExecutor getBucketExecutor() {
+    if (bucketExecutor == null) {
+      bucketExecutor = new BoundedTaskExecutor("sts-bucket", bucketThreadPoolSize);
+    }
+    return bucketExecutor;
+  }
+
+  /** Gracefully shuts down the bucket pool, waiting up to the given time for running buckets */
+  public static void shutdown(long timeout, TimeUnit timeUnit) {
+    if (instance != null) {
+      instance.shutdownBucketExecutor(timeout, timeUnit);
+    }
+  }
+
+  private synchronized void shutdownBucketExecutor(long timeout, TimeUnit timeUnit) {
+    if (bucketExecutor == null) {
+      return;
+    }
+
+    bucketExecutor.shutdown(timeout, timeUnit);
+    bucketExecutor = null;
+  }
+
+  /**
+   * Checks whether the latest default job of a bucket was scheduled with the same rule version and
+   * the same excluded prefixes, recently enough that a full reconcile is not due yet.
+   */
+  boolean isDefaultJobUpToDate(
+      @Nullable RetentionJob latestJob, RetentionRule defaultRule, List<String> prefixesToExclude) {
+    if (latestJob == null || latestJob.getName() == null || latestJob.getCreatedAt() == null) {
+      return false;
+    }
+
+    if (!Objects.equals(latestJob.getRetentionRuleId(), defaultRule.getId())
+        || !Objects.equals(latestJob.getRetentionRuleVersion(), defaultRule.getVersion())) {
+      return false;
+    }
+
+    Instant fullReconcileAfter =
+        latestJob.getCreatedAt().toInstant().plus(fullReconcileIntervalInHours, ChronoUnit.HOURS);
+    if (!Instant.now(Clock.systemUTC()).isBefore(fullReconcileAfter)) {
+      return false;
+    }
+
+    List<String> latestPrefixes = new ArrayList<>();
+    if (latestJob.getMetadata() != null) {
+      latestPrefixes.addAll(Arrays.asList(latestJob.getMetadata().split(";")));
+    }
+    return getEffectivePrefixes(latestPrefixes).equals(getEffectivePrefixes(prefixesToExclude));
+  }
+
+  private Set<String> getEffectivePrefixes(List<String> prefixes) {
+    // the no-op prefix is random on every run and does not exclude anything
+    Set<String> effectivePrefixes = new HashSet<>();
+    for (String prefix : prefixes) {
+      if (!prefix.endsWith(NOOP_EXCLUDE_PREFIX_SUFFIX)) {
+        effectivePrefixes.add(prefix);
+      }
+    }
+    return effectivePrefixes;
   }
 
   private List<String> buildPrefixesToExclude(
@@ -415,7 +768,7 @@ public class StsRuleExecutor implements RuleExecutor {
       }
     } else if (predDefinedList == null || predDefinedList.isEmpty()) {
       // we have to add a "fake" no-op exclude prefix. otherwise STS throws an error.
-      prefixesToExclude.add(UUID.randomUUID().toString() + "_NOOP_EXCLUDE_PREFIX/");
+      prefixesToExclude.add(UUID.randomUUID().toString() + NOOP_EXCLUDE_PREFIX_SUFFIX);
     }
 
     return prefixesToExclude;
@@ -429,57 +782,32 @@ public class StsRuleExecutor implements RuleExecutor {
   private TransferJob updateDefaultJobIfNeeded(
       TransferJob existingTransferJob,
       RetentionRule defaultRule,
+      String sourceBucket,
+      String destinationBucket,
       List<String> prefixesToExclude,
-      String description)
+      String description,
+      StsJobReconciler reconciler)
       throws IOException {
 
     if (existingTransferJob == null) {
       return null;
     }
-    TransferSpec transferSpec = existingTransferJob.getTransferSpec();
-    ObjectConditions objectConditions = transferSpec.getObjectConditions();
-    if (objectConditions == null) {
-      objectConditions = new ObjectConditions();
-      transferSpec.setObjectConditions(objectConditions);
-    }
-
-    boolean retentionPeriodChanged = false;
-    boolean prefixesToExcludeChanged = false;
-
-    TransferJob updatedJob = existingTransferJob;
-
-    // Check if retention period changed
-    String existingRetention = objectConditions.getMinTimeElapsedSinceLastModification();
-    String updatedRetention =
-        StsUtil.convertRetentionInDaysToDuration(
-            RetentionValue.convertValue(RetentionValue.parse(defaultRule.getRetentionValue())));
-
-    if (existingRetention == null || !existingRetention.equals(updatedRetention)) {
-      objectConditions.setMinTimeElapsedSinceLastModification(updatedRetention);
-      retentionPeriodChanged = true;
-    }
 
-    // check if prefixes to exclude changed
-    List<String> existingExcludePrefixList = objectConditions.getExcludePrefixes();
-    List<String> updatedPrefixesToExclude = prefixesToExclude;
-
-    if (!isSamePrefixList(existingExcludePrefixList, updatedPrefixesToExclude)) {
-      objectConditions.setExcludePrefixes(updatedPrefixesToExclude);
-      prefixesToExcludeChanged = true;
-    }
+    TransferJob desiredJob = new TransferJob();
+    desiredJob
+        .setDescription(description)
+        .setTransferSpec(
+            StsUtil.buildTransferSpec(
+                sourceBucket,
+                destinationBucket,
+                prefixesToExclude,
+                true,
+                RetentionValue.convertValue(RetentionValue.parse(defaultRule.getRetentionValue()))))
+        .setStatus(StsUtil.STS_ENABLED_STRING);
+    StsUtil.setNotificationConfig(desiredJob);
 
-    // only update if the retention period or prefix list has changed
-    if (retentionPeriodChanged || prefixesToExcludeChanged) {
-      // Build transfer job object
-      updatedJob = new TransferJob();
-      updatedJob.setName(existingTransferJob.getName());
-      updatedJob.setDescription(description);
-      updatedJob.setTransferSpec(transferSpec);
-      updatedJob.setStatus("ENABLED");
-      StsUtil.updateExistingJob(
-          client, updatedJob, existingTransferJob.getName(), existingTransferJob.getProjectId());
-    }
-    return updatedJob;
+    // only the fields that differ from the existing job are updated
+    return reconciler.reconcile(existingTransferJob, desiredJob, existingTransferJob.getProjectId());
   }
 
   private TransferJob applyDefaultRulePerBucket(
@@ -488,7 +816,9 @@ public class StsRuleExecutor implements RuleExecutor {
       String projectId,
       String sourceBucket,
       String destinationBucket,
-      List<String> prefixesToExclude) {
+      List<String> prefixesToExclude,
+      @Nullable RetentionJob existingDefaultRetentionJob,
+      StsJobReconciler reconciler) {
     String description =
         buildDescription(
             defaultRule.getType().toString(),
@@ -506,8 +836,6 @@ public class StsRuleExecutor implements RuleExecutor {
 
     try {
       stsPooledJob = findPooledJob(projectId, sourceBucket, null, RetentionRuleType.DEFAULT);
-      RetentionJob existingDefaultRetentionJob =
-          retentionJobDao.findLatestDefaultJob(ValidationConstants.STORAGE_PREFIX + sourceBucket);
 
       if (stsPooledJob == null && existingDefaultRetentionJob == null && !isStsJobPoolOnly) {
         transferJob =
@@ -520,11 +848,11 @@ public class StsRuleExecutor implements RuleExecutor {
                 description,
                 scheduledTime,
                 RetentionValue.convertValue(RetentionValue.parse(defaultRule.getRetentionValue())));
-
+        reconciler.recordCreated(transferJob);
       } else {
         if (stsPooledJob == null && existingDefaultRetentionJob != null) {
           stsPooledJob =
-              StsUtil.getExistingJob(
+              transferJobCache.getJob(
                   client,
                   existingDefaultRetentionJob.getRetentionRuleProjectId(),
                   existingDefaultRetentionJob.getName());
@@ -534,7 +862,14 @@ public class StsRuleExecutor implements RuleExecutor {
           }
         }
         transferJob =
-            updateDefaultJobIfNeeded(stsPooledJob, defaultRule, prefixesToExclude, description);
+            updateDefaultJobIfNeeded(
+                stsPooledJob,
+                defaultRule,
+                sourceBucket,
+                destinationBucket,
+                prefixesToExclude,
+                description,
+                reconciler);
       }
     } catch (IOException e) {
       logger.error(
@@ -561,29 +896,6 @@ public class StsRuleExecutor implements RuleExecutor {
     return String.format("%s %s %s", type, sb.toString(), moreDetails);
   }
 
-  private boolean isSamePrefixList(List<String> oldList, List<String> newList) {
-    if (oldList == null && newList == null) {
-      return true;
-    }
-
-    if (oldList == null || newList == null) {
-      return false;
-    }
-
-    if (oldList.size() != newList.size()) {
-      return false;
-    }
-
-    Collections.sort(oldList);
-    Collections.sort(newList);
-
-    if (oldList.equals(newList)) {
-      return true;
-    }
-
-    return false;
-  }
-
   private Map<String, Set<String>> buildDefaultStsJobPrefixMap(
       final Collection<RetentionRule> datasetRules) {
     Map<String, Set<String>> prefixMap = new HashMap<>();
@@ -659,7 +971,7 @@ public class StsRuleExecutor implements RuleExecutor {
       RetentionRuleType retentionRuleType)
       throws IOException {
     PooledStsJob pooledJob =
-        stsJobDao.getJob(
+        pooledStsJobIndex.getJob(
             bucketName, projectId, scheduledAt, retentionRuleType.toDatabaseRepresentation());
     String jobName = null;
     if (pooledJob != null) {
@@ -672,7 +984,7 @@ public class StsRuleExecutor implements RuleExecutor {
       return null;
     }
 
-    TransferJob transferJob = StsUtil.getExistingJob(client, projectId, jobName);
+    TransferJob transferJob = transferJobCache.getJob(client, projectId, jobName);
     if (!isValidPooledJob(transferJob, jobName, projectId, bucketName, scheduledAt)) {
       logger.error(
           String.format("Pooled job %s scheduled at %s for %s/%s is not valid"),
@@ -747,23 +1059,74 @@ public class StsRuleExecutor implements RuleExecutor {
       Instant deletedAt,
       String correlationId) {
 
+    for (DeleteNotificationMessage msg :
+        buildDeleteNotificationMessages(projectId, bucket, prefixList, deletedAt, correlationId)) {
+      try {
+        PubSubMessageQueueManagerImpl.getInstance().sendSuccessDeleteMessage(msg);
+      } catch (IOException e) {
+        logger.error(String.format("Error sending delete notification. %s", e.getMessage()), e);
+      }
+    }
+  }
+
+  /**
+   * Builds the delete notifications of a bucket. Without grouping there is one message per prefix.
+   * With grouping the prefixes are packed into as few messages as maxDirectoriesPerMessage allows,
+   * all sharing one group ID.
+   */
+  List<DeleteNotificationMessage> buildDeleteNotificationMessages(
+      String projectId,
+      String bucket,
+      List<String> prefixList,
+      Instant deletedAt,
+      String correlationId) {
+    List<String> deletedDirectoryUris = new ArrayList<>();
     for (String prefix : prefixList) {
-      DeleteNotificationMessage msg = new DeleteNotificationMessage();
-      msg.setCorrelationId(correlationId);
-      msg.setDeletedAt(deletedAt);
-      msg.setProjectId(projectId);
-      msg.setTrigger(correlationId);
-      msg.setDeletedDirectoryUri(
+      deletedDirectoryUris.add(
           ValidationConstants.STORAGE_PREFIX
               + bucket
               + ValidationConstants.STORAGE_SEPARATOR
               + prefix);
-      try {
-        PubSubMessageQueueManagerImpl.getInstance().sendSuccessDeleteMessage(msg);
-      } catch (IOException e) {
-        logger.error(String.format("Error sending delete notification. %s", e.getMessage()), e);
+    }
+
+    List<DeleteNotificationMessage> messages = new ArrayList<>();
+    if (!isGroupedNotificationEnabled) {
+      for (String deletedDirectoryUri : deletedDirectoryUris) {
+        messages.add(
+            buildDeleteNotificationMessage(
+                projectId, deletedDirectoryUri, deletedAt, correlationId));
       }
+      return messages;
     }
+
+    int groupSize = Math.max(1, maxDirectoriesPerNotification);
+    int totalNumber = (deletedDirectoryUris.size() + groupSize - 1) / groupSize;
+    String groupId = UUID.randomUUID().toString();
+    for (int i = 0; i < totalNumber; i++) {
+      List<String> groupUris =
+          deletedDirectoryUris.subList(
+              i * groupSize, Math.min((i + 1) * groupSize, deletedDirectoryUris.size()));
+      // the directory field keeps the first directory for consumers that ignore the group
+      DeleteNotificationMessage msg =
+          buildDeleteNotificationMessage(projectId, groupUris.get(0), deletedAt, correlationId);
+      msg.setDeletedDirectoryUris(new ArrayList<>(groupUris));
+      msg.setGroupId(groupId);
+      msg.setSequenceNumber(i + 1);
+      msg.setTotalNumber(totalNumber);
+      messages.add(msg);
+    }
+    return messages;
+  }
+
+  private DeleteNotificationMessage buildDeleteNotificationMessage(
+      String projectId, String deletedDirectoryUri, Instant deletedAt, String correlationId) {
+    DeleteNotificationMessage msg = new DeleteNotificationMessage();
+    msg.setCorrelationId(correlationId);
+    msg.setDeletedAt(deletedAt);
+    msg.setProjectId(projectId);
+    msg.setTrigger(correlationId);
+    msg.setDeletedDirectoryUri(deletedDirectoryUri);
+    return msg;
   }
 
   private String getCorrelationId() {
@@ -20,11 +20,13 @@ package com.google.gcs.sdrs.service.worker.rule.impl;
 
 import com.google.api.services.storagetransfer.v1.Storagetransfer;
 import com.google.api.services.storagetransfer.v1.model.Operation;
+import com.google.gcs.sdrs.SdrsApplication;
 import com.google.gcs.sdrs.common.RetentionJobStatusType;
 import com.google.gcs.sdrs.dao.model.RetentionJob;
 import com.google.gcs.sdrs.dao.model.RetentionJobValidation;
 import com.google.gcs.sdrs.service.worker.rule.RuleValidator;
 import com.google.gcs.sdrs.util.CredentialsUtil;
+import com.google.gcs.sdrs.util.StsAsyncClient;
 import com.google.gcs.sdrs.util.StsUtil;
 import java.io.IOException;
 import java.sql.Timestamp;
@@ -43,9 +45,12 @@ import org.slf4j.LoggerFactory;
 public class StsRuleValidator implements RuleValidator {
 
   public static StsRuleValidator instance;
+  private static final String DEFAULT_OPERATION_BATCH_SIZE = "50";
   static CredentialsUtil credentialsUtil = CredentialsUtil.getInstance();
 
   Storagetransfer client;
+  StsAsyncClient asyncClient;
+  int operationBatchSize;
   private static final Logger logger = LoggerFactory.getLogger(StsRuleValidator.class);
 
   /**
@@ -120,7 +125,13 @@ public class StsRuleValidator implements RuleValidator {
       }
     }
 
-    List<Operation> jobOperations = StsUtil.getSubmittedStsJobs(client, projectId, jobs);
+    // the operations of the different STS jobs are requested in parallel
+    List<Operation> jobOperations;
+    if (operationBatchSize > 1) {
+      jobOperations = asyncClient.getSubmittedStsJobs(projectId, jobs, operationBatchSize).join();
+    } else {
+      jobOperations = asyncClient.getSubmittedStsJobs(projectId, jobs).join();
+    }
     List<RetentionJobValidation> validationRecords = new ArrayList<>();
     for (Operation operation : jobOperations) {
       String stsJobId = extractStsJobId(operation.getName());
@@ -134,7 +145,15 @@ public class StsRuleValidator implements RuleValidator {
     return validationRecords;
   }
 
-  RetentionJobValidation convertOperationToJobValidation(Operation operation, int jobId) {
+  /**
+   * Converts an STS transfer operation into the validation record of a retention job
+   *
+   * @param operation the STS {@link Operation}. Its metadata holds the transfer operation.
+   * @param jobId the ID of the {@link RetentionJob} the operation belongs to
+   * @return a {@link RetentionJobValidation} without an ID or batch ID
+   */
+  public static RetentionJobValidation convertOperationToJobValidation(
+      Operation operation, int jobId) {
     RetentionJobValidation validation = new RetentionJobValidation();
     validation.setJobOperationName(operation.getName());
     validation.setRetentionJobId(jobId);
@@ -184,19 +203,24 @@ public class StsRuleValidator implements RuleValidator {
 
   private StsRuleValidator() throws IOException {
     client = StsUtil.createStsClient(credentialsUtil.getCredentials());
+    asyncClient = new StsAsyncClient(client);
+    operationBatchSize =
+        Integer.valueOf(
+            SdrsApplication.getAppConfigProperty(
+                "sts.operationListBatchSize", DEFAULT_OPERATION_BATCH_SIZE));
   }
 
-  private Timestamp getJobTime(Operation operation, boolean isStart) {
+  private static Timestamp getJobTime(Operation operation, boolean isStart) {
     if (operation == null) {
       return null;
     }
 
     String operationTimeStr = isStart ? "startTime" : "endTime";
     Timestamp timestamp = null;
-    String timeStr = operation.getMetadata().get(operationTimeStr).toString();
-    if (timeStr != null) {
+    Object time = operation.getMetadata().get(operationTimeStr);
+    if (time != null) {
       try {
-        timestamp = new Timestamp(Instant.parse(timeStr).toEpochMilli());
+        timestamp = new Timestamp(Instant.parse(time.toString()).toEpochMilli());
       } catch (DateTimeParseException e) {
         return null;
       }
@@ -22,16 +22,35 @@ import com.google.api.client.googleapis.util.Utils;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.JsonFactory;
 import java.io.IOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-/** Utility to provide GoogleCredentials. */
+/**
+ * Utility to provide GoogleCredentials.
+ *
+ * <p>The application default credentials are looked up once and then shared. The credential
+ * refreshes its access token on its own while requests are sent; an access token that is about to
+ * expire is also refreshed when the credential is handed out.
+ */
 public class CredentialsUtil {
 
+  static final long REFRESH_MARGIN_IN_SECONDS = 300;
+  private static final Logger logger = LoggerFactory.getLogger(CredentialsUtil.class);
   private static CredentialsUtil instance;
 
-  private CredentialsUtil() {}
+  private final CredentialLoader credentialLoader;
+  private GoogleCredential credential;
+
+  private CredentialsUtil() {
+    credentialLoader = new ApplicationDefaultCredentialLoader();
+  }
+
+  CredentialsUtil(CredentialLoader credentialLoader) {
+    this.credentialLoader = credentialLoader;
+  }
 
   /** Gets an instance */
-  public static CredentialsUtil getInstance() {
+  public static synchronized CredentialsUtil getInstance() {
     if (instance == null) {
       instance = new CredentialsUtil();
     }
@@ -41,13 +60,41 @@ public class CredentialsUtil {
   /**
    * Gets currently available GoogleCredentials
    * @return {@link GoogleCredential}
-   * @throws IOException
+   * @throws IOException when the application default credentials can't be loaded
    */
-  public GoogleCredential getCredentials() throws IOException {
-    HttpTransport httpTransport = Utils.getDefaultTransport();
-    JsonFactory jsonFactory = Utils.getDefaultJsonFactory();
-    GoogleCredential credential =
-        GoogleCredential.getApplicationDefault(httpTransport, jsonFactory);
+  public synchronized GoogleCredential getCredentials() throws IOException {
+    if (credential == null) {
+      credential = credentialLoader.load();
+    }
+    refreshIfExpiring(credential);
     return credential;
   }
+
+  private void refreshIfExpiring(GoogleCredential credential) {
+    Long expiresInSeconds = credential.getExpiresInSeconds();
+    if (expiresInSeconds == null || expiresInSeconds > REFRESH_MARGIN_IN_SECONDS) {
+      return;
+    }
+
+    try {
+      credential.refreshToken();
+    } catch (IOException e) {
+      // the credential tries again when it is used for a request
+      logger.warn(String.format("Failed to refresh the access token: %s", e.getMessage()));
+    }
+  }
+
+  /** Loads the credentials */
+  interface CredentialLoader {
+    GoogleCredential load() throws IOException;
+  }
+
+  private static class ApplicationDefaultCredentialLoader implements CredentialLoader {
+    @Override
+    public GoogleCredential load() throws IOException {
+      HttpTransport httpTransport = SharedHttpTransport.getInstance().getTransport();
+      JsonFactory jsonFactory = Utils.getDefaultJsonFactory();
+      return GoogleCredential.getApplicationDefault(httpTransport, jsonFactory);
+    }
+  }
 }
@@ -70,7 +70,7 @@ public class GcsHelper {
 
   /** Creates an instance of the GCS Client */
   private Storage createStorageClient(GoogleCredential credential) {
-    HttpTransport httpTransport = Utils.getDefaultTransport();
+    HttpTransport httpTransport = SharedHttpTransport.getInstance().getTransport();
     JsonFactory jsonFactory = Utils.getDefaultJsonFactory();
     return createStorageClient(httpTransport, jsonFactory, credential);
   }
@@ -19,10 +19,15 @@ package com.google.gcs.sdrs.util;
 
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /** A utility to generate bucket name prefixes within a time interval. */
 public class PrefixGeneratorUtility {
@@ -40,55 +45,145 @@ public class PrefixGeneratorUtility {
    */
   public static List<String> generateTimePrefixes(
       String pattern, ZonedDateTime startTime, ZonedDateTime endTime) {
+    List<String> result = new ArrayList<>();
+    iterateTimePrefixes(pattern, startTime, endTime).forEachRemaining(result::add);
+    return result;
+  }
+
+  /**
+   * Lazily generate the same prefixes as {@link #generateTimePrefixes}, most recent first.
+   *
+   * @param pattern indicating the base portion of the prefix.
+   * @param startTime indicating the time of the least recent prefix to generate. This value must be
+   *     earlier than {@code endTime}.
+   * @param endTime indicating the time of the most recent prefix to generate.
+   * @return an {@link Iterator} that computes each prefix when it is requested.
+   */
+  public static Iterator<String> iterateTimePrefixes(
+      String pattern, ZonedDateTime startTime, ZonedDateTime endTime) {
 
     if (endTime.isBefore(startTime)) {
       throw new IllegalArgumentException("endTime occurs before startTime; try swapping them.");
     }
 
-    endTime = endTime.truncatedTo(ChronoUnit.HOURS);
+    return new TimePrefixIterator(pattern, startTime, endTime.truncatedTo(ChronoUnit.HOURS));
+  }
 
-    List<String> result = new ArrayList<>();
+  /**
+   * Lazily generate the same prefixes as {@link #generateTimePrefixes}, most recent first.
+   *
+   * @see #iterateTimePrefixes
+   */
+  public static Stream<String> streamTimePrefixes(
+      String pattern, ZonedDateTime startTime, ZonedDateTime endTime) {
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(
+            iterateTimePrefixes(pattern, startTime, endTime),
+            Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL),
+        false);
+  }
 
-    // The general approach here is to work backwards from the endTime to the start time at the
-    // largest interval granularity possible. This means that first prefixes on the same day as the
-    // endTime will be generated, then month, then year.
-    ZonedDateTime currentTime = ZonedDateTime.from(endTime);
-    // Generate all prefixes on the current day
-    while (currentTime.getHour() > 0 && currentTime.isAfter(startTime)) {
-      currentTime = currentTime.minus(1, ChronoUnit.HOURS);
-      result.add(formatPrefix(currentTime, pattern, DateTimeFormatter.ofPattern("yyyy/MM/dd/HH")));
-    }
-    // Generate all prefixes in the current month
-    while (currentTime.getDayOfMonth() > 1 && currentTime.isAfter(startTime)) {
-      currentTime = currentTime.minus(1, ChronoUnit.DAYS);
-      result.add(formatPrefix(currentTime, pattern, DateTimeFormatter.ofPattern("yyyy/MM/dd")));
-    }
-    // Generate all prefixes in the current year
-    while (currentTime.getMonthValue() > 1 && currentTime.isAfter(startTime)) {
-      currentTime = currentTime.minus(1, ChronoUnit.MONTHS);
-      result.add(formatPrefix(currentTime, pattern, DateTimeFormatter.ofPattern("yyyy/MM")));
+  /**
+   * Works backwards from the end time to the start time at the largest interval granularity
+   * possible. This means that first prefixes on the same day as the end time are generated, then
+   * month, then year. Year prefixes might include values older than the start time.
+   *
+   * <p>Prefixes are built in a single reused {@link StringBuilder}, with the UTC date fields
+   * appended as digits.
+   */
+  private static class TimePrefixIterator implements Iterator<String> {
+
+    private static final int HOUR = 0;
+    private static final int DAY = 1;
+    private static final int MONTH = 2;
+    private static final int YEAR = 3;
+
+    private final ZonedDateTime startTime;
+    private final StringBuilder builder;
+    private final int baseLength;
+    private ZonedDateTime currentTime;
+    private int granularity = HOUR;
+
+    TimePrefixIterator(String pattern, ZonedDateTime startTime, ZonedDateTime endTime) {
+      this.startTime = startTime;
+      this.currentTime = endTime;
+      builder = new StringBuilder(pattern.length() + 16);
+      // prefixes cannot begin with a /. If the pattern is empty, leave out the leading slash
+      if (pattern.startsWith("/")) {
+        builder.append(pattern, 1, pattern.length()).append('/');
+      } else if (!pattern.isEmpty()) {
+        builder.append(pattern).append('/');
+      }
+      baseLength = builder.length();
     }
-    // From here on only year prefixes will be added. This might include values older than the
-    // provided startTime
-    while (currentTime.isAfter(startTime)) {
-      currentTime = currentTime.minus(1, ChronoUnit.YEARS);
-      result.add(formatPrefix(currentTime, pattern, DateTimeFormatter.ofPattern("yyyy")));
+
+    @Override
+    public boolean hasNext() {
+      return currentTime.isAfter(startTime);
     }
 
-    return result;
-  }
+    @Override
+    public String next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+
+      if (granularity == HOUR && currentTime.getHour() <= 0) {
+        granularity = DAY;
+      }
+      if (granularity == DAY && currentTime.getDayOfMonth() <= 1) {
+        granularity = MONTH;
+      }
+      if (granularity == MONTH && currentTime.getMonthValue() <= 1) {
+        granularity = YEAR;
+      }
 
-  private static String formatPrefix(
-      ZonedDateTime time, String pattern, DateTimeFormatter formatter) {
+      switch (granularity) {
+        case HOUR:
+          currentTime = currentTime.minus(1, ChronoUnit.HOURS);
+          break;
+        case DAY:
+          currentTime = currentTime.minus(1, ChronoUnit.DAYS);
+          break;
+        case MONTH:
+          currentTime = currentTime.minus(1, ChronoUnit.MONTHS);
+          break;
+        default:
+          currentTime = currentTime.minus(1, ChronoUnit.YEARS);
+      }
+      return formatPrefix();
+    }
 
-    String formattedPrefix =
-        String.format("%s/%s/", pattern, formatter.withZone(ZoneOffset.UTC).format(time));
+    private String formatPrefix() {
+      ZonedDateTime utcTime = currentTime;
+      if (!ZoneOffset.UTC.equals(currentTime.getOffset())) {
+        utcTime = currentTime.withZoneSameInstant(ZoneOffset.UTC);
+      }
 
-    // prefixes cannot begin with a /. If the pattern is empty, remove the leading slash
-    if (formattedPrefix.startsWith("/")) {
-      formattedPrefix = formattedPrefix.replaceFirst("/", "");
+      builder.setLength(baseLength);
+      appendDigits(utcTime.getYear(), 4);
+      if (granularity <= MONTH) {
+        appendDigits(utcTime.getMonthValue(), 2);
+      }
+      if (granularity <= DAY) {
+        appendDigits(utcTime.getDayOfMonth(), 2);
+      }
+      if (granularity == HOUR) {
+        appendDigits(utcTime.getHour(), 2);
+      }
+      return builder.toString();
     }
 
-    return formattedPrefix;
+    /** Appends a zero padded value followed by a slash */
+    private void appendDigits(int value, int width) {
+      int limit = 10;
+      for (int digits = 1; digits < width; digits++) {
+        if (value < limit) {
+          builder.append('0');
+        }
+        limit *= 10;
+      }
+      builder.append(value).append('/');
+    }
   }
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.util;
+
+import java.time.DateTimeException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A utility to reduce a set of include prefixes to the smallest equivalent set.
+ *
+ * <p>Two reductions are applied. Time prefixes as generated by {@link PrefixGeneratorUtility} are
+ * merged into their parent when all of the parent's children are present, i.e. 24 hours into a
+ * day, all days of a month into the month and 12 months into the year. Prefixes that are covered by
+ * a shorter prefix in the set are dropped.
+ */
+public class PrefixMinimizer {
+
+  private static final Pattern HOUR_PREFIX =
+      Pattern.compile("^(|.*/)(\\d{4})/(\\d{2})/(\\d{2})/(\\d{2})/$");
+  private static final Pattern DAY_PREFIX = Pattern.compile("^(|.*/)(\\d{4})/(\\d{2})/(\\d{2})/$");
+  private static final Pattern MONTH_PREFIX = Pattern.compile("^(|.*/)(\\d{4})/(\\d{2})/$");
+
+  /**
+   * Minimize a collection of prefixes.
+   *
+   * @param prefixes the prefixes to minimize. Duplicates are allowed.
+   * @return a sorted {@link List} of prefixes that matches exactly the same objects.
+   */
+  public static List<String> minimize(Collection<String> prefixes) {
+    Set<String> result = new TreeSet<>(prefixes);
+    mergeChildren(result, HOUR_PREFIX);
+    mergeChildren(result, DAY_PREFIX);
+    mergeChildren(result, MONTH_PREFIX);
+    return removeCoveredPrefixes(result);
+  }
+
+  /**
+   * Minimize the prefixes of several datasets of the same bucket. Each dataset is minimized on its
+   * own first. A prefix that is also matched by a prefix of another dataset is then only kept once,
+   * with the dataset that holds the shorter prefix or, if both are equal, the first dataset by name.
+   *
+   * @param prefixesPerDataset the prefixes keyed by dataset
+   * @return a {@link Map} of the minimized prefixes per dataset, ordered by dataset. A dataset whose
+   *     prefixes are all covered by other datasets is mapped to an empty list.
+   */
+  public static Map<String, List<String>> minimizePerDataset(
+      Map<String, List<String>> prefixesPerDataset) {
+    Map<String, List<String>> minimized = new TreeMap<>();
+    for (Map.Entry<String, List<String>> entry : prefixesPerDataset.entrySet()) {
+      minimized.put(entry.getKey(), minimize(entry.getValue()));
+    }
+
+    // the first dataset, by name, claims a prefix that several datasets share
+    Map<String, String> prefixOwners = new HashMap<>();
+    for (Map.Entry<String, List<String>> entry : minimized.entrySet()) {
+      for (String prefix : entry.getValue()) {
+        prefixOwners.putIfAbsent(prefix, entry.getKey());
+      }
+    }
+
+    Map<String, List<String>> result = new LinkedHashMap<>();
+    for (Map.Entry<String, List<String>> entry : minimized.entrySet()) {
+      List<String> datasetPrefixes = new ArrayList<>();
+      for (String prefix : entry.getValue()) {
+        if (entry.getKey().equals(prefixOwners.get(prefix))
+            && !isCoveredByShorterPrefix(prefix, prefixOwners.keySet())) {
+          datasetPrefixes.add(prefix);
+        }
+      }
+      result.put(entry.getKey(), datasetPrefixes);
+    }
+    return result;
+  }
+
+  /** Replaces every complete set of children with their parent prefix */
+  private static void mergeChildren(Set<String> prefixes, Pattern childPattern) {
+    Map<String, List<String>> childrenPerParent = new HashMap<>();
+    Map<String, Integer> childCountPerParent = new HashMap<>();
+    for (String prefix : prefixes) {
+      Matcher matcher = childPattern.matcher(prefix);
+      if (!matcher.matches()) {
+        continue;
+      }
+      int childCount = getChildCount(matcher);
+      if (childCount > 0) {
+        String parent = prefix.substring(0, prefix.lastIndexOf('/', prefix.length() - 2) + 1);
+        childrenPerParent.computeIfAbsent(parent, k -> new ArrayList<>()).add(prefix);
+        childCountPerParent.put(parent, childCount);
+      }
+    }
+
+    for (Map.Entry<String, List<String>> entry : childrenPerParent.entrySet()) {
+      if (entry.getValue().size() == childCountPerParent.get(entry.getKey())) {
+        prefixes.removeAll(entry.getValue());
+        prefixes.add(entry.getKey());
+      }
+    }
+  }
+
+  /**
+   * Gets the number of siblings of a time prefix, including itself.
+   *
+   * @return the number of siblings, or 0 if the prefix is not a valid time prefix
+   */
+  private static int getChildCount(Matcher matcher) {
+    try {
+      int year = Integer.parseInt(matcher.group(2));
+      int month = Integer.parseInt(matcher.group(3));
+      YearMonth yearMonth = YearMonth.of(year, month);
+      if (matcher.groupCount() == 3) {
+        return 12;
+      }
+
+      int day = Integer.parseInt(matcher.group(4));
+      if (day < 1 || day > yearMonth.lengthOfMonth()) {
+        return 0;
+      }
+      if (matcher.groupCount() == 4) {
+        return yearMonth.lengthOfMonth();
+      }
+
+      int hour = Integer.parseInt(matcher.group(5));
+      return hour < 24 ? 24 : 0;
+    } catch (DateTimeException e) {
+      return 0;
+    }
+  }
+
+  private static List<String> removeCoveredPrefixes(Set<String> sortedPrefixes) {
+    // all prefixes that start with a given prefix directly follow it in sorted order
+    List<String> result = new ArrayList<>();
+    String lastPrefix = null;
+    for (String prefix : sortedPrefixes) {
+      if (lastPrefix == null || !prefix.startsWith(lastPrefix)) {
+        result.add(prefix);
+        lastPrefix = prefix;
+      }
+    }
+    return result;
+  }
+
+  private static boolean isCoveredByShorterPrefix(String prefix, Set<String> prefixes) {
+    for (int length = 0; length < prefix.length(); length++) {
+      if (prefixes.contains(prefix.substring(0, length))) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -25,10 +25,12 @@ import com.google.api.client.http.HttpBackOffUnsuccessfulResponseHandler.BackOff
 import com.google.api.client.http.HttpRequest;
 import com.google.api.client.http.HttpRequestInitializer;
 import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseInterceptor;
 import com.google.api.client.http.HttpUnsuccessfulResponseHandler;
 import com.google.api.client.util.ExponentialBackOff;
 import com.google.api.client.util.Sleeper;
 import com.google.common.base.Preconditions;
+import java.io.IOException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,7 +44,7 @@ public class RetryHttpInitializerWrapper implements HttpRequestInitializer {
   private final Credential wrappedCredential;
   private final Sleeper sleeper;
   private boolean backOffRequiredRateLimit;
-  private static final int MILLIS_PER_MINUTE = 60 * 1000;
+  private final RequestRateLimiter rateLimiter;
   public static final int TOO_MANY_REQUESTS_429 = 429;
 
   /**
@@ -64,9 +66,18 @@ public class RetryHttpInitializerWrapper implements HttpRequestInitializer {
    */
   RetryHttpInitializerWrapper(
       Credential wrappedCredential, Sleeper sleeper, boolean backOffRequiredRateLimit) {
+    this(wrappedCredential, sleeper, backOffRequiredRateLimit, null);
+  }
+
+  RetryHttpInitializerWrapper(
+      Credential wrappedCredential,
+      Sleeper sleeper,
+      boolean backOffRequiredRateLimit,
+      RequestRateLimiter rateLimiter) {
     this.wrappedCredential = Preconditions.checkNotNull(wrappedCredential);
     this.sleeper = sleeper;
     this.backOffRequiredRateLimit = backOffRequiredRateLimit;
+    this.rateLimiter = rateLimiter;
   }
 
   /**
@@ -82,24 +93,56 @@ public class RetryHttpInitializerWrapper implements HttpRequestInitializer {
     this(wrappedCredential, Sleeper.DEFAULT, backOffRequiredRateLimit);
   }
 
+  /**
+   * A constructor using default Sleeper that passes every request, including retries, through a
+   * rate limiter
+   *
+   * @param wrappedCredential the credential used to authenticate with a Google Cloud Platform
+   *     project
+   * @param backOffRequiredRateLimit whether or not exponential backoff retry is for server error or
+   *     server error plugs rate limit error only
+   * @param rateLimiter the {@link RequestRateLimiter} to acquire a permit from before each request
+   */
+  public RetryHttpInitializerWrapper(
+      Credential wrappedCredential,
+      boolean backOffRequiredRateLimit,
+      RequestRateLimiter rateLimiter) {
+    this(wrappedCredential, Sleeper.DEFAULT, backOffRequiredRateLimit, rateLimiter);
+  }
+
   /**
    * Initialize an HttpRequest.
    *
    * @param request an HttpRequest that should be initialized
    */
   public void initialize(HttpRequest request) {
-    request.setReadTimeout(2 * MILLIS_PER_MINUTE); // 2 minutes read timeout
+    SharedHttpTransport sharedHttpTransport = SharedHttpTransport.getInstance();
+    request.setConnectTimeout(sharedHttpTransport.getConnectTimeoutMillis());
+    request.setReadTimeout(sharedHttpTransport.getReadTimeoutMillis());
     final HttpUnsuccessfulResponseHandler backoffHandler =
         new HttpBackOffUnsuccessfulResponseHandler(new ExponentialBackOff()).setSleeper(sleeper);
     if (backOffRequiredRateLimit) {
       ((HttpBackOffUnsuccessfulResponseHandler) backoffHandler)
           .setBackOffRequired(SdrsBackOffRequired.ON_SERVER_ERROR_RATE_LIMIT);
     }
-    request.setInterceptor(wrappedCredential);
+    if (rateLimiter == null) {
+      request.setInterceptor(wrappedCredential);
+    } else {
+      request.setInterceptor(
+          (final HttpRequest interceptedRequest) -> {
+            rateLimiter.acquire(interceptedRequest);
+            wrappedCredential.intercept(interceptedRequest);
+          });
+      request.setResponseInterceptor(rateLimiter);
+    }
     request.setUnsuccessfulResponseHandler(
         (final HttpRequest unsuccessfulRequest,
             final HttpResponse response,
             final boolean supportsRetry) -> {
+          if (rateLimiter != null) {
+            // the response interceptor only sees the last attempt, report retried ones here
+            rateLimiter.onUnsuccessfulResponse(response);
+          }
           if (wrappedCredential.handleResponse(unsuccessfulRequest, response, supportsRetry)) {
             // If credential decides it can handle it, the return code or message indicated
             // something specific to authentication, and no backoff is desired.
@@ -123,4 +166,29 @@ public class RetryHttpInitializerWrapper implements HttpRequestInitializer {
             response.getStatusCode() / 100 == 5
                 || response.getStatusCode() == TOO_MANY_REQUESTS_429;
   }
+
+  /**
+   * Limits the rate of outgoing requests. A permit is acquired before every attempt of a request,
+   * so retries are limited as well, and every response is reported back to the limiter. Successful
+   * responses reach it as a response interceptor, unsuccessful ones through {@link
+   * #onUnsuccessfulResponse}.
+   */
+  public interface RequestRateLimiter extends HttpResponseInterceptor {
+
+    /**
+     * Blocks until the request may be sent
+     *
+     * @param request the {@link HttpRequest} that is about to be sent
+     * @throws IOException when the wait is interrupted
+     */
+    void acquire(HttpRequest request) throws IOException;
+
+    /**
+     * Reports an unsuccessful response. Called for every attempt, including the ones that are
+     * retried.
+     *
+     * @param response the unsuccessful {@link HttpResponse}
+     */
+    void onUnsuccessfulResponse(HttpResponse response);
+  }
 }
@@ -25,6 +25,8 @@ import com.google.gcs.sdrs.SdrsApplication;
 import java.io.IOException;
 import java.security.interfaces.RSAPrivateKey;
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.Invocation;
@@ -45,6 +47,11 @@ public class SdrsRequestClientUtil {
 
   static CredentialsUtil credentialsUtil = CredentialsUtil.getInstance();
 
+  private static final long JWT_LIFETIME_IN_SECONDS = 3600;
+  // a cached token is replaced this long before it expires
+  private static final long JWT_REFRESH_MARGIN_IN_SECONDS = 300;
+  static final Map<String, SignedJwt> jwtCache = new ConcurrentHashMap<>();
+
   private SdrsRequestClientUtil() {}
 
   /**
@@ -55,7 +62,7 @@ public class SdrsRequestClientUtil {
    * @return a builder that can be used to invoke the request
    */
   public static Invocation.Builder request(Client client, String path) {
-    String jwt = generateJwt(String.format("https://%s", getServiceUrl()));
+    String jwt = getJwt(String.format("https://%s", getServiceUrl()));
 
     Invocation.Builder result =
         client
@@ -68,12 +75,28 @@ public class SdrsRequestClientUtil {
     return result;
   }
 
-  private static String generateJwt(String audience) {
+  /** Gets a signed JWT for the audience, reusing the last one until it is about to expire */
+  private static String getJwt(String audience) {
+    long now = System.currentTimeMillis();
+    SignedJwt jwt = jwtCache.get(audience);
+    if (jwt == null
+        || now >= jwt.expiresAtMillis - TimeUnit.SECONDS.toMillis(JWT_REFRESH_MARGIN_IN_SECONDS)) {
+      String token = generateJwt(audience, now);
+      if (token.isEmpty()) {
+        return token;
+      }
+      jwt = new SignedJwt(token, now + TimeUnit.SECONDS.toMillis(JWT_LIFETIME_IN_SECONDS));
+      jwtCache.put(audience, jwt);
+    }
+    return jwt.token;
+  }
+
+  private static String generateJwt(String audience, long nowMillis) {
     try {
       GoogleCredential cred = credentialsUtil.getCredentials();
 
-      Date now = new Date();
-      Date expTime = new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(3600));
+      Date now = new Date(nowMillis);
+      Date expTime = new Date(nowMillis + TimeUnit.SECONDS.toMillis(JWT_LIFETIME_IN_SECONDS));
 
       JWTCreator.Builder token =
           JWT.create()
@@ -127,4 +150,14 @@ public class SdrsRequestClientUtil {
     }
     return port;
   }
+
+  static class SignedJwt {
+    private final String token;
+    private final long expiresAtMillis;
+
+    SignedJwt(String token, long expiresAtMillis) {
+      this.token = token;
+      this.expiresAtMillis = expiresAtMillis;
+    }
+  }
 }
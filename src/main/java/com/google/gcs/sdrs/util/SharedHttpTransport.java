@@ -0,0 +1,199 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.util;
+
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.ApacheHttpTransport;
+import com.google.gcs.sdrs.SdrsApplication;
+import java.net.ProxySelector;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.params.ClientPNames;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.ProxySelectorRoutePlanner;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.pool.PoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The HTTP transport shared by all Google API clients of the process.
+ *
+ * <p>Connections are pooled per route and kept alive between requests, so clients that fan out
+ * calls to the same API reuse their TLS connections instead of doing a new handshake for every
+ * request. The pool is created on first use and its usage is shown by the `/status` endpoint.
+ */
+public class SharedHttpTransport {
+
+  private static final String DEFAULT_MAX_CONNECTIONS_TOTAL = "200";
+  private static final String DEFAULT_MAX_CONNECTIONS_PER_ROUTE = "20";
+  private static final String DEFAULT_KEEP_ALIVE_IN_SECONDS = "60";
+  private static final String DEFAULT_CONNECT_TIMEOUT_IN_SECONDS = "20";
+  private static final String DEFAULT_READ_TIMEOUT_IN_SECONDS = "120";
+  private static final int SOCKET_BUFFER_SIZE = 8192;
+  private static final Logger logger = LoggerFactory.getLogger(SharedHttpTransport.class);
+  private static SharedHttpTransport instance;
+
+  private final int maxConnectionsTotal;
+  private final int maxConnectionsPerRoute;
+  private final long keepAliveMillis;
+  private final int connectTimeoutMillis;
+  private final int readTimeoutMillis;
+  private PoolingClientConnectionManager connectionManager;
+  private HttpTransport transport;
+
+  SharedHttpTransport(
+      int maxConnectionsTotal,
+      int maxConnectionsPerRoute,
+      long keepAliveInSeconds,
+      int connectTimeoutInSeconds,
+      int readTimeoutInSeconds) {
+    this.maxConnectionsTotal = maxConnectionsTotal;
+    this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    this.keepAliveMillis = TimeUnit.SECONDS.toMillis(keepAliveInSeconds);
+    this.connectTimeoutMillis = (int) TimeUnit.SECONDS.toMillis(connectTimeoutInSeconds);
+    this.readTimeoutMillis = (int) TimeUnit.SECONDS.toMillis(readTimeoutInSeconds);
+  }
+
+  public static synchronized SharedHttpTransport getInstance() {
+    if (instance == null) {
+      instance =
+          new SharedHttpTransport(
+              Integer.valueOf(
+                  SdrsApplication.getAppConfigProperty(
+                      "http.transport.maxConnectionsTotal", DEFAULT_MAX_CONNECTIONS_TOTAL)),
+              Integer.valueOf(
+                  SdrsApplication.getAppConfigProperty(
+                      "http.transport.maxConnectionsPerRoute", DEFAULT_MAX_CONNECTIONS_PER_ROUTE)),
+              Long.valueOf(
+                  SdrsApplication.getAppConfigProperty(
+                      "http.transport.keepAliveInSeconds", DEFAULT_KEEP_ALIVE_IN_SECONDS)),
+              Integer.valueOf(
+                  SdrsApplication.getAppConfigProperty(
+                      "http.transport.connectTimeoutInSeconds",
+                      DEFAULT_CONNECT_TIMEOUT_IN_SECONDS)),
+              Integer.valueOf(
+                  SdrsApplication.getAppConfigProperty(
+                      "http.transport.readTimeoutInSeconds", DEFAULT_READ_TIMEOUT_IN_SECONDS)));
+    }
+    return instance;
+  }
+
+  /**
+   * Gets the shared transport. It is created on the first call.
+   *
+   * @return the pooled {@link HttpTransport}
+   */
+  public synchronized HttpTransport getTransport() {
+    if (transport == null) {
+      transport = createTransport();
+      logger.info(
+          String.format(
+              "Shared HTTP transport created with %d connections, %d per route.",
+              maxConnectionsTotal, maxConnectionsPerRoute));
+    }
+    return transport;
+  }
+
+  /** Gets the connect timeout that requests on the shared transport use */
+  public int getConnectTimeoutMillis() {
+    return connectTimeoutMillis;
+  }
+
+  /** Gets the read timeout that requests on the shared transport use */
+  public int getReadTimeoutMillis() {
+    return readTimeoutMillis;
+  }
+
+  /** Gets a human readable summary of the connection pool metrics */
+  public synchronized String getStatsSummary() {
+    if (connectionManager == null) {
+      return "not created";
+    }
+
+    PoolStats stats = connectionManager.getTotalStats();
+    return String.format(
+        "leased: %d, available: %d, pending: %d, max: %d, max per route: %d",
+        stats.getLeased(),
+        stats.getAvailable(),
+        stats.getPending(),
+        stats.getMax(),
+        connectionManager.getDefaultMaxPerRoute());
+  }
+
+  /** Closes all pooled connections. The transport is created again on the next use. */
+  public synchronized void shutdown() {
+    if (connectionManager != null) {
+      connectionManager.shutdown();
+      connectionManager = null;
+      transport = null;
+    }
+  }
+
+  /**
+   * Creates the same client as {@link ApacheHttpTransport#newDefaultHttpClient()}, but with a
+   * configurable connection pool and keep-alive.
+   */
+  @SuppressWarnings("deprecation")
+  private HttpTransport createTransport() {
+    SchemeRegistry registry = new SchemeRegistry();
+    registry.register(new Scheme("http", 80, PlainSocketFactory.getSocketFactory()));
+    registry.register(new Scheme("https", 443, SSLSocketFactory.getSocketFactory()));
+
+    connectionManager = new PoolingClientConnectionManager(registry);
+    connectionManager.setMaxTotal(maxConnectionsTotal);
+    connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+    HttpParams params = new BasicHttpParams();
+    HttpConnectionParams.setStaleCheckingEnabled(params, false);
+    HttpConnectionParams.setSocketBufferSize(params, SOCKET_BUFFER_SIZE);
+    HttpConnectionParams.setConnectionTimeout(params, connectTimeoutMillis);
+    HttpConnectionParams.setSoTimeout(params, readTimeoutMillis);
+    HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
+    params.setBooleanParameter(ClientPNames.HANDLE_REDIRECTS, false);
+
+    DefaultHttpClient httpClient = new DefaultHttpClient(connectionManager, params);
+    // retries are done by the request initializers of the clients
+    httpClient.setHttpRequestRetryHandler(new DefaultHttpRequestRetryHandler(0, false));
+    httpClient.setRoutePlanner(new ProxySelectorRoutePlanner(registry, ProxySelector.getDefault()));
+    httpClient.setKeepAliveStrategy(buildKeepAliveStrategy(keepAliveMillis));
+    return new ApacheHttpTransport(httpClient);
+  }
+
+  /** Keeps a connection alive as long as the server allows, but no longer than the given time */
+  static ConnectionKeepAliveStrategy buildKeepAliveStrategy(long keepAliveMillis) {
+    return (response, context) -> {
+      long serverKeepAliveMillis =
+          DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+      return serverKeepAliveMillis > 0
+          ? Math.min(serverKeepAliveMillis, keepAliveMillis)
+          : keepAliveMillis;
+    };
+  }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.util;
+
+import com.google.api.services.storagetransfer.v1.Storagetransfer;
+import com.google.api.services.storagetransfer.v1.model.Operation;
+import com.google.api.services.storagetransfer.v1.model.TransferJob;
+import com.google.gcs.sdrs.SdrsApplication;
+import com.google.gcs.sdrs.dao.model.RetentionJob;
+import com.google.gcs.sdrs.service.worker.BaseWorker;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An asynchronous facade over the STS calls of {@link StsUtil}.
+ *
+ * <p>Each call runs on a dedicated I/O pool that is shared by all instances and returns a {@link
+ * CompletableFuture} right away, so a caller can have many requests outstanding without blocking a
+ * worker thread for each of them. A failed request completes its future exceptionally with the
+ * original {@link IOException}. The correlation ID of the calling worker is carried over to the
+ * I/O threads.
+ */
+public class StsAsyncClient {
+
+  private static final String DEFAULT_THREAD_POOL_SIZE = "32";
+  private static final Logger logger = LoggerFactory.getLogger(StsAsyncClient.class);
+  private static ExecutorService sharedIoExecutor;
+
+  private final Storagetransfer client;
+  private final Executor ioExecutor;
+
+  /**
+   * Creates a facade that runs its calls on the shared STS I/O pool
+   *
+   * @param client the {@link Storagetransfer} client to use
+   */
+  public StsAsyncClient(Storagetransfer client) {
+    this(client, getSharedIoExecutor());
+  }
+
+  StsAsyncClient(Storagetransfer client, Executor ioExecutor) {
+    this.client = client;
+    this.ioExecutor = ioExecutor;
+  }
+
+  /** Same as {@link StsUtil#createStsJob}, without blocking the calling thread */
+  public CompletableFuture<TransferJob> createStsJob(
+      String projectId,
+      String sourceBucket,
+      String destinationBucket,
+      List<String> prefixes,
+      String description,
+      ZonedDateTime startDateTime) {
+    return supplyAsync(
+        () ->
+            StsUtil.createStsJob(
+                client,
+                projectId,
+                sourceBucket,
+                destinationBucket,
+                prefixes,
+                description,
+                startDateTime));
+  }
+
+  /** Same as {@link StsUtil#createDefaultStsJob}, without blocking the calling thread */
+  public CompletableFuture<TransferJob> createDefaultStsJob(
+      String projectId,
+      String sourceBucket,
+      String destinationBucket,
+      List<String> prefixesToExclude,
+      String description,
+      ZonedDateTime startDateTime,
+      Integer retentionInDays) {
+    return supplyAsync(
+        () ->
+            StsUtil.createDefaultStsJob(
+                client,
+                projectId,
+                sourceBucket,
+                destinationBucket,
+                prefixesToExclude,
+                description,
+                startDateTime,
+                retentionInDays));
+  }
+
+  /** Same as {@link StsUtil#updateExistingJob}, without blocking the calling thread */
+  public CompletableFuture<TransferJob> updateExistingJob(
+      TransferJob jobToUpdate, String jobName, String projectId, String updateFieldMask) {
+    return supplyAsync(
+        () -> StsUtil.updateExistingJob(client, jobToUpdate, jobName, projectId, updateFieldMask));
+  }
+
+  /** Same as {@link StsUtil#getExistingJob}, without blocking the calling thread */
+  public CompletableFuture<TransferJob> getExistingJob(String projectId, String jobName) {
+    return supplyAsync(() -> StsUtil.getExistingJob(client, projectId, jobName));
+  }
+
+  /**
+   * Same as {@link StsUtil#getSubmittedStsJobs(Storagetransfer, String, List)}, without blocking
+   * the calling thread. The operations of the different STS jobs are requested in parallel.
+   *
+   * @param projectId a {@link String} of the project ID to search
+   * @param retentionJobs a {@link List} of jobs to retrieve
+   * @return a future of the {@link Operation}s associated with the given jobs, in the order of the
+   *     jobs. Jobs whose request failed are left out, the future itself does not fail.
+   */
+  public CompletableFuture<List<Operation>> getSubmittedStsJobs(
+      String projectId, List<RetentionJob> retentionJobs) {
+    List<CompletableFuture<List<Operation>>> futures = new ArrayList<>();
+    for (RetentionJob job : StsUtil.getJobsWithDistinctNames(retentionJobs)) {
+      futures.add(
+          supplyOperations(
+              job.getName(),
+              () -> {
+                Operation operation = StsUtil.getSubmittedStsJob(client, projectId, job);
+                return operation == null
+                    ? Collections.emptyList()
+                    : Collections.singletonList(operation);
+              }));
+    }
+    return combine(futures);
+  }
+
+  /**
+   * Same as {@link StsUtil#getSubmittedStsJobs(Storagetransfer, String, List, int)}, without
+   * blocking the calling thread. The batches are requested in parallel.
+   *
+   * @param projectId a {@link String} of the project ID to search
+   * @param retentionJobs a {@link List} of jobs to retrieve
+   * @param batchSize the maximum number of STS job names per request
+   * @return a future of the {@link Operation}s associated with the given jobs, in the order of the
+   *     jobs. Jobs whose batch failed are left out, the future itself does not fail.
+   */
+  public CompletableFuture<List<Operation>> getSubmittedStsJobs(
+      String projectId, List<RetentionJob> retentionJobs, int batchSize) {
+    List<CompletableFuture<List<Operation>>> futures = new ArrayList<>();
+    for (List<RetentionJob> batch : StsUtil.partitionByDistinctNames(retentionJobs, batchSize)) {
+      futures.add(
+          supplyOperations(
+              String.format("%d jobs starting with %s", batch.size(), batch.get(0).getName()),
+              () -> StsUtil.getSubmittedStsJobBatch(client, projectId, batch)));
+    }
+    return combine(futures);
+  }
+
+  /** Gracefully shuts down the shared I/O pool, waiting up to the given time for running calls */
+  public static synchronized void shutdown(long timeout, TimeUnit timeUnit) {
+    if (sharedIoExecutor == null) {
+      return;
+    }
+
+    logger.info("Shutting down STS I/O pool.");
+    sharedIoExecutor.shutdown();
+    try {
+      if (!sharedIoExecutor.awaitTermination(timeout, timeUnit)) {
+        sharedIoExecutor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      sharedIoExecutor.shutdownNow();
+    }
+    sharedIoExecutor = null;
+  }
+
+  /** Runs an operation lookup. A failed lookup is logged and completes with no operations. */
+  private CompletableFuture<List<Operation>> supplyOperations(
+      String description, StsCall<List<Operation>> call) {
+    return supplyAsync(call)
+        .exceptionally(
+            e -> {
+              logger.error(
+                  String.format(
+                      "Could not get the operations of STS job %s: %s",
+                      description, e.getMessage()));
+              return Collections.emptyList();
+            });
+  }
+
+  private static CompletableFuture<List<Operation>> combine(
+      List<CompletableFuture<List<Operation>>> futures) {
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+        .thenApply(
+            ignored -> {
+              List<Operation> operations = new ArrayList<>();
+              for (CompletableFuture<List<Operation>> future : futures) {
+                operations.addAll(future.join());
+              }
+              return operations;
+            });
+  }
+
+  private <T> CompletableFuture<T> supplyAsync(StsCall<T> call) {
+    String correlationId = BaseWorker.getCorrelationId();
+    CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      ioExecutor.execute(
+          () -> {
+            String currentName = Thread.currentThread().getName();
+            if (correlationId != null) {
+              Thread.currentThread().setName(currentName + ";" + correlationId);
+            }
+            try {
+              future.complete(call.call());
+            } catch (IOException | RuntimeException e) {
+              future.completeExceptionally(e);
+            } finally {
+              Thread.currentThread().setName(currentName);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  private static synchronized ExecutorService getSharedIoExecutor() {
+    if (sharedIoExecutor == null) {
+      int threadPoolSize =
+          Integer.valueOf(
+              SdrsApplication.getAppConfigProperty(
+                  "sts.asyncClient.threadPoolSize", DEFAULT_THREAD_POOL_SIZE));
+      AtomicInteger threadCount = new AtomicInteger(0);
+      sharedIoExecutor =
+          Executors.newFixedThreadPool(
+              threadPoolSize,
+              runnable -> {
+                Thread thread = new Thread(runnable, "sts-io-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+              });
+      logger.info(String.format("STS I/O pool created with %d threads.", threadPoolSize));
+    }
+    return sharedIoExecutor;
+  }
+
+  /** A blocking STS call */
+  private interface StsCall<T> {
+    T call() throws IOException;
+  }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.util;
+
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.json.JsonHttpContent;
+import com.google.api.client.util.Sleeper;
+import com.google.api.services.storagetransfer.v1.model.TransferJob;
+import com.google.api.services.storagetransfer.v1.model.UpdateTransferJobRequest;
+import com.google.gcs.sdrs.SdrsApplication;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An adaptive rate limiter for the requests sent to the Storage Transfer Service.
+ *
+ * <p>Requests are limited by a token bucket per project and method class. The rate of a bucket
+ * follows an additive increase, multiplicative decrease scheme: every 429 response cuts the rate by
+ * the decrease factor, at most once per second, and successful responses raise it again by a fixed
+ * amount per second until the maximum rate is reached. The current rates and the time spent waiting
+ * for a permit are shown by the `/status` endpoint.
+ */
+public class StsRateLimiter implements RetryHttpInitializerWrapper.RequestRateLimiter {
+
+  /** The class of an STS method. Each class of a project has its own rate. */
+  public enum MethodClass {
+    READ,
+    WRITE,
+    LIST
+  }
+
+  static final String UNKNOWN_PROJECT = "unknown";
+
+  private static final String DEFAULT_INITIAL_RATE = "5";
+  private static final String DEFAULT_MIN_RATE = "0.2";
+  private static final String DEFAULT_MAX_RATE = "20";
+  private static final String DEFAULT_INCREASE_PER_SECOND = "0.1";
+  private static final String DEFAULT_DECREASE_FACTOR = "0.5";
+  private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+  private static final Pattern FILTER_PROJECT_ID =
+      Pattern.compile("\"project_id\"\\s*:\\s*\"([^\"]*)\"");
+  private static final Logger logger = LoggerFactory.getLogger(StsRateLimiter.class);
+  private static StsRateLimiter instance;
+
+  private final double initialRate;
+  private final double minRate;
+  private final double maxRate;
+  private final double increasePerSecond;
+  private final double decreaseFactor;
+  private final LongSupplier nanoClock;
+  private final Sleeper sleeper;
+  private final Map<String, AdaptiveTokenBucket> buckets = new ConcurrentHashMap<>();
+
+  StsRateLimiter(
+      double initialRate,
+      double minRate,
+      double maxRate,
+      double increasePerSecond,
+      double decreaseFactor,
+      LongSupplier nanoClock,
+      Sleeper sleeper) {
+    this.minRate = minRate;
+    this.maxRate = Math.max(minRate, maxRate);
+    this.initialRate = Math.min(this.maxRate, Math.max(minRate, initialRate));
+    this.increasePerSecond = increasePerSecond;
+    this.decreaseFactor = decreaseFactor;
+    this.nanoClock = nanoClock;
+    this.sleeper = sleeper;
+  }
+
+  public static StsRateLimiter getInstance() {
+    if (instance == null) {
+      synchronized (StsRateLimiter.class) {
+        if (instance == null) {
+          instance =
+              new StsRateLimiter(
+                  Double.valueOf(
+                      SdrsApplication.getAppConfigProperty(
+                          "sts.rateLimit.initialRatePerSecond", DEFAULT_INITIAL_RATE)),
+                  Double.valueOf(
+                      SdrsApplication.getAppConfigProperty(
+                          "sts.rateLimit.minRatePerSecond", DEFAULT_MIN_RATE)),
+                  Double.valueOf(
+                      SdrsApplication.getAppConfigProperty(
+                          "sts.rateLimit.maxRatePerSecond", DEFAULT_MAX_RATE)),
+                  Double.valueOf(
+                      SdrsApplication.getAppConfigProperty(
+                          "sts.rateLimit.increasePerSecond", DEFAULT_INCREASE_PER_SECOND)),
+                  Double.valueOf(
+                      SdrsApplication.getAppConfigProperty(
+                          "sts.rateLimit.decreaseFactor", DEFAULT_DECREASE_FACTOR)),
+                  System::nanoTime,
+                  Sleeper.DEFAULT);
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Blocks until the bucket of the request has a permit
+   *
+   * @param request the STS {@link HttpRequest} that is about to be sent
+   * @throws IOException when the wait is interrupted
+   */
+  @Override
+  public void acquire(HttpRequest request) throws IOException {
+    acquire(getProjectId(request), getMethodClass(request));
+  }
+
+  /**
+   * Blocks until a permit for the given project and method class is available
+   *
+   * @param projectId the project the request is sent for
+   * @param methodClass the {@link MethodClass} of the request
+   * @throws IOException when the wait is interrupted
+   */
+  public void acquire(String projectId, MethodClass methodClass) throws IOException {
+    AdaptiveTokenBucket bucket = getBucket(projectId, methodClass);
+    long waitNanos = bucket.reserve(nanoClock.getAsLong());
+    if (waitNanos <= 0) {
+      return;
+    }
+
+    bucket.waitedNanos.addAndGet(waitNanos);
+    try {
+      sleeper.sleep(TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the STS rate limit");
+    }
+  }
+
+  /**
+   * Raises the rate of the request's bucket. The HTTP client only calls response interceptors once
+   * the retries of a request are over, so unsuccessful responses are left to {@link
+   * #onUnsuccessfulResponse}.
+   */
+  @Override
+  public void interceptResponse(HttpResponse response) {
+    if (response.isSuccessStatusCode()) {
+      reportResponse(response);
+    }
+  }
+
+  /** Adjusts the rate of the request's bucket to an unsuccessful response of any attempt */
+  @Override
+  public void onUnsuccessfulResponse(HttpResponse response) {
+    reportResponse(response);
+  }
+
+  private void reportResponse(HttpResponse response) {
+    HttpRequest request = response.getRequest();
+    onResponse(getProjectId(request), getMethodClass(request), response.getStatusCode());
+  }
+
+  /**
+   * Adjusts the rate of a bucket. A 429 response cuts the rate, any other successful response
+   * raises it.
+   *
+   * @param projectId the project the request was sent for
+   * @param methodClass the {@link MethodClass} of the request
+   * @param statusCode the HTTP status code of the response
+   */
+  public void onResponse(String projectId, MethodClass methodClass, int statusCode) {
+    AdaptiveTokenBucket bucket = getBucket(projectId, methodClass);
+    if (statusCode == RetryHttpInitializerWrapper.TOO_MANY_REQUESTS_429) {
+      double rate = bucket.decrease(nanoClock.getAsLong());
+      logger.warn(
+          String.format(
+              "STS rate limit hit for %s %s requests. Rate is now %.2f/s.",
+              projectId, methodClass, rate));
+    } else if (statusCode / 100 == 2) {
+      bucket.increase(nanoClock.getAsLong());
+    }
+  }
+
+  /**
+   * Gets the current rate of a bucket
+   *
+   * @return the rate in requests per second
+   */
+  public double getRate(String projectId, MethodClass methodClass) {
+    return getBucket(projectId, methodClass).getRate();
+  }
+
+  /**
+   * Gets the total time requests of a bucket waited for a permit
+   *
+   * @return the wait time in milliseconds
+   */
+  public long getThrottledWaitMillis(String projectId, MethodClass methodClass) {
+    return TimeUnit.NANOSECONDS.toMillis(getBucket(projectId, methodClass).waitedNanos.get());
+  }
+
+  /** Gets a human readable summary of the rate limiter metrics */
+  public String getStatsSummary() {
+    List<String> bucketSummaries = new ArrayList<>();
+    for (Map.Entry<String, AdaptiveTokenBucket> entry : buckets.entrySet()) {
+      AdaptiveTokenBucket bucket = entry.getValue();
+      bucketSummaries.add(
+          String.format(
+              "%s rate: %.2f/s, throttled wait: %d ms, 429s: %d",
+              entry.getKey(),
+              bucket.getRate(),
+              TimeUnit.NANOSECONDS.toMillis(bucket.waitedNanos.get()),
+              bucket.rateLimitedCount.get()));
+    }
+    bucketSummaries.sort(null);
+    return bucketSummaries.isEmpty() ? "no requests" : String.join("; ", bucketSummaries);
+  }
+
+  /** Gets the method class of an STS request */
+  static MethodClass getMethodClass(HttpRequest request) {
+    if (!"GET".equals(request.getRequestMethod())) {
+      return MethodClass.WRITE;
+    }
+
+    String path = request.getUrl().getRawPath();
+    if (path.endsWith("/" + StsUtil.TRANSFER_OPERATION_STRING) || path.endsWith("/transferJobs")) {
+      return MethodClass.LIST;
+    }
+    return MethodClass.READ;
+  }
+
+  /** Gets the project of an STS request from its parameters, filter or body */
+  static String getProjectId(HttpRequest request) {
+    Object projectId = request.getUrl().getFirst("projectId");
+    if (projectId != null) {
+      return projectId.toString();
+    }
+
+    Object filter = request.getUrl().getFirst("filter");
+    if (filter != null) {
+      Matcher matcher = FILTER_PROJECT_ID.matcher(filter.toString());
+      if (matcher.find()) {
+        return matcher.group(1);
+      }
+    }
+
+    HttpContent content = request.getContent();
+    if (content instanceof JsonHttpContent) {
+      Object data = ((JsonHttpContent) content).getData();
+      if (data instanceof TransferJob && ((TransferJob) data).getProjectId() != null) {
+        return ((TransferJob) data).getProjectId();
+      }
+      if (data instanceof UpdateTransferJobRequest
+          && ((UpdateTransferJobRequest) data).getProjectId() != null) {
+        return ((UpdateTransferJobRequest) data).getProjectId();
+      }
+    }
+    return UNKNOWN_PROJECT;
+  }
+
+  private AdaptiveTokenBucket getBucket(String projectId, MethodClass methodClass) {
+    return buckets.computeIfAbsent(
+        projectId + "|" + methodClass,
+        k -> new AdaptiveTokenBucket(initialRate, nanoClock.getAsLong()));
+  }
+
+  /**
+   * A token bucket whose rate can change. Permits are reserved ahead, so the token count goes
+   * negative while requests wait and a caller only sleeps for its own turn.
+   */
+  private class AdaptiveTokenBucket {
+
+    private final AtomicLong waitedNanos = new AtomicLong();
+    private final AtomicLong rateLimitedCount = new AtomicLong();
+    private double rate;
+    private double tokens;
+    private long lastRefillNanos;
+    private long lastIncreaseNanos;
+    private long lastDecreaseNanos;
+
+    AdaptiveTokenBucket(double rate, long nowNanos) {
+      this.rate = rate;
+      this.tokens = 1;
+      this.lastRefillNanos = nowNanos;
+      this.lastIncreaseNanos = nowNanos;
+      this.lastDecreaseNanos = nowNanos - NANOS_PER_SECOND;
+    }
+
+    /** Takes a token and returns how long the caller has to wait for it */
+    synchronized long reserve(long nowNanos) {
+      refill(nowNanos);
+      tokens -= 1;
+      if (tokens >= 0) {
+        return 0;
+      }
+      return (long) Math.ceil(-tokens / rate * NANOS_PER_SECOND);
+    }
+
+    synchronized double increase(long nowNanos) {
+      refill(nowNanos);
+      // only the time since the previous response counts, up to a second, so the idle time between
+      // two runs does not raise the rate learned from earlier 429 responses
+      double elapsedSeconds =
+          Math.min(1.0, (double) (nowNanos - lastIncreaseNanos) / NANOS_PER_SECOND);
+      rate = Math.min(maxRate, rate + increasePerSecond * elapsedSeconds);
+      lastIncreaseNanos = nowNanos;
+      return rate;
+    }
+
+    synchronized double decrease(long nowNanos) {
+      rateLimitedCount.incrementAndGet();
+      refill(nowNanos);
+      // requests that were already in flight report the same overload, only cut once for them
+      if (nowNanos - lastDecreaseNanos >= NANOS_PER_SECOND) {
+        rate = Math.max(minRate, rate * decreaseFactor);
+        lastDecreaseNanos = nowNanos;
+        tokens = Math.min(tokens, 0);
+      }
+      lastIncreaseNanos = nowNanos;
+      return rate;
+    }
+
+    synchronized double getRate() {
+      return rate;
+    }
+
+    private void refill(long nowNanos) {
+      double elapsedSeconds = (double) (nowNanos - lastRefillNanos) / NANOS_PER_SECOND;
+      if (elapsedSeconds > 0) {
+        // allow a burst of up to one second worth of requests
+        tokens = Math.min(Math.max(1, rate), tokens + elapsedSeconds * rate);
+        lastRefillNanos = nowNanos;
+      }
+    }
+  }
+}
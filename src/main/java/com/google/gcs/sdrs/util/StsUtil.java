@@ -22,6 +22,7 @@ import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
 import com.google.api.client.googleapis.util.Utils;
 import com.google.api.client.http.HttpRequestInitializer;
 import com.google.api.client.http.HttpTransport;
+import com.google.api.client.json.GenericJson;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.util.Preconditions;
 import com.google.api.services.storage.StorageScopes;
@@ -29,6 +30,7 @@ import com.google.api.services.storagetransfer.v1.Storagetransfer;
 import com.google.api.services.storagetransfer.v1.StoragetransferScopes;
 import com.google.api.services.storagetransfer.v1.model.Date;
 import com.google.api.services.storagetransfer.v1.model.GcsData;
+import com.google.api.services.storagetransfer.v1.model.ListOperationsResponse;
 import com.google.api.services.storagetransfer.v1.model.ObjectConditions;
 import com.google.api.services.storagetransfer.v1.model.Operation;
 import com.google.api.services.storagetransfer.v1.model.Schedule;
@@ -37,8 +39,10 @@ import com.google.api.services.storagetransfer.v1.model.TransferJob;
 import com.google.api.services.storagetransfer.v1.model.TransferOptions;
 import com.google.api.services.storagetransfer.v1.model.TransferSpec;
 import com.google.api.services.storagetransfer.v1.model.UpdateTransferJobRequest;
+import com.google.gcs.sdrs.SdrsApplication;
 import com.google.gcs.sdrs.common.RetentionRuleType;
 import com.google.gcs.sdrs.dao.model.RetentionJob;
+import com.google.common.collect.Lists;
 import com.google.gson.Gson;
 import java.io.IOException;
 import java.time.Instant;
@@ -46,8 +50,12 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.validation.constraints.NotNull;
 import org.slf4j.Logger;
@@ -58,11 +66,18 @@ public class StsUtil {
 
   public static final String STS_ENABLED_STRING = "ENABLED";
   public static final String TRANSFER_OPERATION_STRING = "transferOperations";
+  // the storagetransfer model predates notification configs, so they are set as a generic field
+  public static final String NOTIFICATION_CONFIG_FIELD = "notificationConfig";
+  static final List<String> NOTIFICATION_EVENT_TYPES =
+      Arrays.asList(
+          "TRANSFER_OPERATION_SUCCESS", "TRANSFER_OPERATION_FAILED", "TRANSFER_OPERATION_ABORTED");
+  private static final String TRANSFER_JOB_NAME_KEY = "transferJobName";
+  private static final int OPERATION_PAGE_SIZE = 256;
   private static final Logger logger = LoggerFactory.getLogger(StsUtil.class);
 
   /** Creates an instance of the STS Client */
   public static Storagetransfer createStsClient(GoogleCredential credential) {
-    HttpTransport httpTransport = Utils.getDefaultTransport();
+    HttpTransport httpTransport = SharedHttpTransport.getInstance().getTransport();
     JsonFactory jsonFactory = Utils.getDefaultJsonFactory();
     return createStorageTransferClient(httpTransport, jsonFactory, credential);
   }
@@ -163,11 +178,34 @@ public class StsUtil {
   public static TransferJob updateExistingJob(
       Storagetransfer client, TransferJob jobToUpdate, String jobName, String projectId)
       throws IOException {
+    return updateExistingJob(client, jobToUpdate, jobName, projectId, null);
+  }
+
+  /**
+   * Updates only the given fields of an existing transfer job within STS
+   *
+   * @param client the {@link Storagetransfer} client to use
+   * @param jobToUpdate the {@link TransferJob} object to submit as an update
+   * @param updateFieldMask a comma separated list of the fields to update, i.e.
+   *     "description,transfer_spec,status". All fields set on the job are updated when null.
+   * @return the updated {@link TransferJob} object
+   * @throws IOException when the client connection can't be established or the request fails
+   */
+  public static TransferJob updateExistingJob(
+      Storagetransfer client,
+      TransferJob jobToUpdate,
+      String jobName,
+      String projectId,
+      String updateFieldMask)
+      throws IOException {
 
     UpdateTransferJobRequest requestBody = new UpdateTransferJobRequest();
 
     requestBody.setProjectId(projectId);
     requestBody.setTransferJob(jobToUpdate);
+    if (updateFieldMask != null) {
+      requestBody.setUpdateTransferJobFieldMask(updateFieldMask);
+    }
 
     Storagetransfer.TransferJobs.Patch request = client.transferJobs().patch(jobName, requestBody);
 
@@ -207,52 +245,68 @@ public class StsUtil {
       Storagetransfer client, String projectId, List<RetentionJob> retentionJobs) {
 
     List<Operation> operations = new ArrayList<>();
-    Set<String> jobNames = new HashSet<>();
-
-    for (RetentionJob job : retentionJobs) {
-
+    for (RetentionJob job : getJobsWithDistinctNames(retentionJobs)) {
       try {
-        if (jobNames.contains(job.getName())) {
-          continue;
-        } else {
-          jobNames.add(job.getName());
-        }
-        List<String> jobNameList = new ArrayList<>();
-        jobNameList.add(job.getName());
-        Storagetransfer.TransferOperations.List operationRequest =
-            client
-                .transferOperations()
-                .list(TRANSFER_OPERATION_STRING)
-                .setFilter(buildOperationFilterString(projectId, jobNameList))
-                .setPageSize(5);
-
-        List<Operation> operationsPerJob = operationRequest.execute().getOperations();
-        Operation operationClosestToJobCreatedAtTime = null;
-        Instant closestTime = Instant.MAX;
-        if (operationsPerJob != null) {
-          for (Operation operation : operationsPerJob) {
-            if (job.getRetentionRuleType() == RetentionRuleType.DATASET
-                || job.getRetentionRuleType() == RetentionRuleType.USER) {
-              operationClosestToJobCreatedAtTime = operation;
-              break;
-            } else {
-              String opeationStartTimeString = operation.getMetadata().get("startTime").toString();
-              Instant operationStartTime = Instant.parse(opeationStartTimeString);
-              Instant retentionJobCreatedAtTime = job.getCreatedAt().toInstant();
-              if (operationStartTime.isAfter(retentionJobCreatedAtTime)) {
-                if (operationClosestToJobCreatedAtTime == null
-                    || operationStartTime.isBefore(closestTime)) {
-                  operationClosestToJobCreatedAtTime = operation;
-                  closestTime = operationStartTime;
-                }
-              }
-            }
-          }
+        Operation operation = getSubmittedStsJob(client, projectId, job);
+        if (operation != null) {
+          operations.add(operation);
         }
+      } catch (IOException ex) {
+        logger.error("Could not establish connection with STS: ", ex.getMessage());
+      }
+    }
 
-        if (operationClosestToJobCreatedAtTime != null) {
-          operations.add(operationClosestToJobCreatedAtTime);
-        }
+    return operations;
+  }
+
+  /**
+   * Gets the operation of a submitted STS job that belongs to the given retention job
+   *
+   * @param client the {@link Storagetransfer} client to use for the request
+   * @param projectId a {@link String} of the project ID to search
+   * @param job the {@link RetentionJob} to get the operation for
+   * @return the {@link Operation} of the job, or null if there is none yet
+   * @throws IOException when the request fails
+   */
+  public static Operation getSubmittedStsJob(
+      Storagetransfer client, String projectId, RetentionJob job) throws IOException {
+    List<String> jobNameList = new ArrayList<>();
+    jobNameList.add(job.getName());
+    Storagetransfer.TransferOperations.List operationRequest =
+        client
+            .transferOperations()
+            .list(TRANSFER_OPERATION_STRING)
+            .setFilter(buildOperationFilterString(projectId, jobNameList))
+            .setPageSize(5);
+
+    List<Operation> operationsPerJob = operationRequest.execute().getOperations();
+    Operation selectedOperation = null;
+    if (operationsPerJob != null) {
+      for (Operation operation : operationsPerJob) {
+        selectedOperation = selectOperation(job, selectedOperation, operation);
+      }
+    }
+
+    return selectedOperation;
+  }
+
+  /**
+   * Gets the operations of many submitted STS jobs with as few requests as possible. The operations
+   * of up to {@code batchSize} job names are listed by one paged request, and matched back to the
+   * retention jobs by their transfer job name.
+   *
+   * @param client the {@link Storagetransfer} client to use for the request
+   * @param projectId a {@link String} of the project ID to search
+   * @param retentionJobs a {@link List} of jobs to retrieve
+   * @param batchSize the maximum number of job names per request
+   * @return a {@link List} of {@link Operation} objects associated with the given jobs
+   */
+  public static List<Operation> getSubmittedStsJobs(
+      Storagetransfer client, String projectId, List<RetentionJob> retentionJobs, int batchSize) {
+    List<Operation> operations = new ArrayList<>();
+    for (List<RetentionJob> batch : partitionByDistinctNames(retentionJobs, batchSize)) {
+      try {
+        operations.addAll(getSubmittedStsJobBatch(client, projectId, batch));
       } catch (IOException ex) {
         logger.error("Could not establish connection with STS: ", ex.getMessage());
       }
@@ -261,6 +315,129 @@ public class StsUtil {
     return operations;
   }
 
+  /**
+   * Gets the operations of a batch of submitted STS jobs, paging through all results
+   *
+   * @param client the {@link Storagetransfer} client to use for the request
+   * @param projectId a {@link String} of the project ID to search
+   * @param retentionJobs the jobs of the batch, one per STS job name
+   * @return a {@link List} of the {@link Operation} selected for each job, in the order of the
+   *     jobs. Jobs without an operation are left out.
+   * @throws IOException when a request fails
+   */
+  public static List<Operation> getSubmittedStsJobBatch(
+      Storagetransfer client, String projectId, List<RetentionJob> retentionJobs)
+      throws IOException {
+    Map<String, RetentionJob> jobsByName = new LinkedHashMap<>();
+    for (RetentionJob job : retentionJobs) {
+      jobsByName.putIfAbsent(job.getName(), job);
+    }
+    Map<String, Operation> selectedOperations = new HashMap<>();
+
+    Storagetransfer.TransferOperations.List operationRequest =
+        client
+            .transferOperations()
+            .list(TRANSFER_OPERATION_STRING)
+            .setFilter(buildOperationFilterString(projectId, new ArrayList<>(jobsByName.keySet())))
+            .setPageSize(OPERATION_PAGE_SIZE);
+    String pageToken = null;
+    do {
+      ListOperationsResponse response = operationRequest.setPageToken(pageToken).execute();
+      if (response.getOperations() != null) {
+        for (Operation operation : response.getOperations()) {
+          String jobName = getTransferJobName(operation);
+          RetentionJob job = jobsByName.get(jobName);
+          if (job != null) {
+            selectedOperations.put(
+                jobName, selectOperation(job, selectedOperations.get(jobName), operation));
+          }
+        }
+      }
+      pageToken = response.getNextPageToken();
+    } while (pageToken != null && !pageToken.isEmpty());
+
+    List<Operation> operations = new ArrayList<>();
+    for (String jobName : jobsByName.keySet()) {
+      Operation operation = selectedOperations.get(jobName);
+      if (operation != null) {
+        operations.add(operation);
+      }
+    }
+    return operations;
+  }
+
+  /**
+   * Splits jobs into batches of distinct STS job names
+   *
+   * @return a {@link List} of batches with up to {@code batchSize} jobs each
+   */
+  static List<List<RetentionJob>> partitionByDistinctNames(
+      List<RetentionJob> retentionJobs, int batchSize) {
+    return Lists.partition(getJobsWithDistinctNames(retentionJobs), Math.max(1, batchSize));
+  }
+
+  /**
+   * Picks the operation that belongs to a retention job. One time jobs only ever run once, so the
+   * first operation listed is theirs. For recurring jobs it is the first operation that started
+   * after the retention job was created.
+   *
+   * @param job the {@link RetentionJob}
+   * @param selected the {@link Operation} picked so far, or null
+   * @param candidate the next {@link Operation} of the job's transfer job
+   * @return the {@link Operation} to keep, or null if none matches yet
+   */
+  static Operation selectOperation(RetentionJob job, Operation selected, Operation candidate) {
+    if (job.getRetentionRuleType() == RetentionRuleType.DATASET
+        || job.getRetentionRuleType() == RetentionRuleType.USER) {
+      return selected != null ? selected : candidate;
+    }
+
+    Instant candidateStartTime = getStartTime(candidate);
+    if (!candidateStartTime.isAfter(job.getCreatedAt().toInstant())) {
+      return selected;
+    }
+    if (selected == null || candidateStartTime.isBefore(getStartTime(selected))) {
+      return candidate;
+    }
+    return selected;
+  }
+
+  /** Gets the name of the transfer job an operation belongs to, i.e. "transferJobs/123" */
+  static String getTransferJobName(Operation operation) {
+    if (operation.getMetadata() != null
+        && operation.getMetadata().get(TRANSFER_JOB_NAME_KEY) != null) {
+      return operation.getMetadata().get(TRANSFER_JOB_NAME_KEY).toString();
+    }
+
+    // operation names have the format "transferOperations/transferJobs-<job id>-<operation id>"
+    String operationName = operation.getName();
+    int firstHyphenIndex = operationName.indexOf('-');
+    int lastHyphenIndex = operationName.lastIndexOf('-');
+    if (firstHyphenIndex == -1 || firstHyphenIndex == lastHyphenIndex) {
+      return null;
+    }
+    return "transferJobs/" + operationName.substring(firstHyphenIndex + 1, lastHyphenIndex);
+  }
+
+  private static Instant getStartTime(Operation operation) {
+    return Instant.parse(operation.getMetadata().get("startTime").toString());
+  }
+
+  /**
+   * Gets the first retention job of each STS job name. Jobs that share an STS job share its
+   * operations, so only one request is needed per name.
+   */
+  static List<RetentionJob> getJobsWithDistinctNames(List<RetentionJob> retentionJobs) {
+    List<RetentionJob> distinctJobs = new ArrayList<>();
+    Set<String> jobNames = new HashSet<>();
+    for (RetentionJob job : retentionJobs) {
+      if (jobNames.add(job.getName())) {
+        distinctJobs.add(job);
+      }
+    }
+    return distinctJobs;
+  }
+
   /**
    * Converts an int value to a Google Duration string
    *
@@ -282,14 +459,47 @@ public class StsUtil {
       Boolean isOneTimeSchedule,
       Boolean isExcludePrefixes,
       Integer retentionInDays) {
-    return new TransferJob()
-        .setProjectId(projectId)
-        .setDescription(description)
-        .setTransferSpec(
-            buildTransferSpec(
-                sourceBucket, destinationBucket, prefixes, isExcludePrefixes, retentionInDays))
-        .setSchedule(buildSchedule(startDateTime, isOneTimeSchedule))
-        .setStatus(STS_ENABLED_STRING);
+    return setNotificationConfig(
+        new TransferJob()
+            .setProjectId(projectId)
+            .setDescription(description)
+            .setTransferSpec(
+                buildTransferSpec(
+                    sourceBucket, destinationBucket, prefixes, isExcludePrefixes, retentionInDays))
+            .setSchedule(buildSchedule(startDateTime, isOneTimeSchedule))
+            .setStatus(STS_ENABLED_STRING));
+  }
+
+  /**
+   * Sets the notification config that publishes the finished operations of the job to the
+   * configured topic. The job is left as is when the STS notifications are disabled.
+   *
+   * @param transferJob the {@link TransferJob} to create or reconcile
+   * @return the given {@link TransferJob}
+   */
+  public static TransferJob setNotificationConfig(TransferJob transferJob) {
+    if (Boolean.valueOf(
+        SdrsApplication.getAppConfigProperty("pubsub.stsNotification.enabled", "false"))) {
+      transferJob.set(
+          NOTIFICATION_CONFIG_FIELD,
+          buildNotificationConfig(
+              SdrsApplication.getAppConfigProperty("pubsub.stsNotification.topic")));
+    }
+    return transferJob;
+  }
+
+  /**
+   * Builds a notification config with the JSON payload format for the finished operations
+   *
+   * @param topic the Pub/Sub topic to publish to, i.e. `projects/<project>/topics/<topic>`
+   * @return the notification config as a {@link GenericJson}
+   */
+  public static GenericJson buildNotificationConfig(String topic) {
+    GenericJson notificationConfig = new GenericJson();
+    notificationConfig.set("pubsubTopic", topic);
+    notificationConfig.set("eventTypes", NOTIFICATION_EVENT_TYPES);
+    notificationConfig.set("payloadFormat", "JSON");
+    return notificationConfig;
   }
 
   public static TransferSpec buildTransferSpec(
@@ -363,7 +573,12 @@ public class StsUtil {
       credential = credential.createScoped(scopes);
     }
 
-    HttpRequestInitializer initializer = new RetryHttpInitializerWrapper(credential, true);
+    StsRateLimiter rateLimiter = null;
+    if (Boolean.valueOf(SdrsApplication.getAppConfigProperty("sts.rateLimit.enabled", "false"))) {
+      rateLimiter = StsRateLimiter.getInstance();
+    }
+    HttpRequestInitializer initializer =
+        new RetryHttpInitializerWrapper(credential, true, rateLimiter);
     return new Storagetransfer.Builder(httpTransport, jsonFactory, initializer)
         .setApplicationName("sdrs")
         .build();
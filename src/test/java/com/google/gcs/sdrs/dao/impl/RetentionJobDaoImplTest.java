@@ -0,0 +1,163 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.dao.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.gcs.sdrs.common.RetentionRuleType;
+import com.google.gcs.sdrs.dao.model.RetentionJob;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.query.NativeQuery;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class RetentionJobDaoImplTest {
+
+  private Connection connection;
+  private PreparedStatement statement;
+
+  @Before
+  public void setup() throws SQLException {
+    connection = mock(Connection.class);
+    statement = mock(PreparedStatement.class);
+    when(connection.prepareStatement(RetentionJobDaoImpl.INSERT_RETENTION_JOB_SQL))
+        .thenReturn(statement);
+  }
+
+  @Test
+  public void insertsInBatchesOfBatchSize() throws SQLException {
+    List<RetentionJob> jobs = createJobs(RetentionJobDaoImpl.INSERT_BATCH_SIZE + 1);
+    List<RetentionJob> failedJobs = new ArrayList<>();
+
+    RetentionJobDaoImpl.insertBatch(connection, jobs, failedJobs);
+
+    assertTrue(failedJobs.isEmpty());
+    verify(statement, times(jobs.size())).addBatch();
+    verify(statement, times(2)).executeBatch();
+    verify(statement, times(jobs.size())).setString(4, "dataset");
+  }
+
+  @Test
+  public void reportsFailedJobsFromUpdateCounts() throws SQLException {
+    List<RetentionJob> jobs = createJobs(3);
+    when(statement.executeBatch())
+        .thenThrow(new BatchUpdateException(new int[] {1, Statement.EXECUTE_FAILED, 1}));
+    List<RetentionJob> failedJobs = new ArrayList<>();
+
+    RetentionJobDaoImpl.insertBatch(connection, jobs, failedJobs);
+
+    assertEquals(Arrays.asList(jobs.get(1)), failedJobs);
+  }
+
+  @Test
+  public void reportsJobsOfFailedRewrittenBatchAsFailed() throws SQLException {
+    // with rewriteBatchedStatements=true the driver sends every batch as one multi-row insert
+    List<RetentionJob> jobs = createJobs(RetentionJobDaoImpl.INSERT_BATCH_SIZE + 2);
+    int[] failedBatchCounts = new int[RetentionJobDaoImpl.INSERT_BATCH_SIZE];
+    Arrays.fill(failedBatchCounts, Statement.EXECUTE_FAILED);
+    when(statement.executeBatch())
+        .thenThrow(new BatchUpdateException(failedBatchCounts))
+        .thenReturn(new int[] {Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO});
+    List<RetentionJob> failedJobs = new ArrayList<>();
+
+    RetentionJobDaoImpl.insertBatch(connection, jobs, failedJobs);
+
+    assertEquals(jobs.subList(0, RetentionJobDaoImpl.INSERT_BATCH_SIZE), failedJobs);
+    verify(statement).clearBatch();
+  }
+
+  @Test
+  public void reportsUnexecutedJobsAsFailed() throws SQLException {
+    List<RetentionJob> jobs = createJobs(3);
+    when(statement.executeBatch()).thenThrow(new BatchUpdateException(new int[] {1}));
+    List<RetentionJob> failedJobs = new ArrayList<>();
+
+    RetentionJobDaoImpl.insertBatch(connection, jobs, failedJobs);
+
+    assertEquals(jobs.subList(1, 3), failedJobs);
+  }
+
+  @Test
+  public void archiveBatchKeepsTheLatestJobOfEveryStorage() {
+    Session session = mock(Session.class);
+    NativeQuery query = mock(NativeQuery.class);
+    when(session.beginTransaction()).thenReturn(mock(Transaction.class));
+    when(session.createNativeQuery(anyString())).thenReturn(query);
+    when(query.setParameter(anyString(), any())).thenReturn(query);
+    when(query.setParameterList(anyString(), anyCollection())).thenReturn(query);
+    when(query.getResultList()).thenReturn(Arrays.asList(1, 2));
+    RetentionJobDaoImpl dao =
+        new RetentionJobDaoImpl() {
+          @Override
+          protected Session openSession() {
+            return session;
+          }
+
+          @Override
+          protected void closeSession(Session session) {}
+        };
+
+    assertEquals(2, dao.archiveBatch(new Timestamp(0), 10));
+
+    ArgumentCaptor<String> statements = ArgumentCaptor.forClass(String.class);
+    verify(session, times(5)).createNativeQuery(statements.capture());
+    assertEquals(
+        RetentionJobDaoImpl.SELECT_ARCHIVABLE_JOB_IDS_SQL, statements.getAllValues().get(0));
+    assertTrue(
+        RetentionJobDaoImpl.SELECT_ARCHIVABLE_JOB_IDS_SQL.contains(
+            RetentionJobDaoImpl.NOT_LATEST_JOB_PREDICATE));
+    // the newest job is only kept per storage and rule type, so a default and a dataset rule
+    // writing to the same storage each keep their own
+    assertTrue(
+        RetentionJobDaoImpl.NOT_LATEST_JOB_PREDICATE.contains(
+            "newer.retention_rule_data_storage_name = j.retention_rule_data_storage_name"));
+    assertTrue(
+        RetentionJobDaoImpl.NOT_LATEST_JOB_PREDICATE.contains(
+            "newer.retention_rule_type <=> j.retention_rule_type"));
+  }
+
+  private List<RetentionJob> createJobs(int count) {
+    List<RetentionJob> jobs = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      RetentionJob job = new RetentionJob();
+      job.setName("job" + i);
+      job.setRetentionRuleType(RetentionRuleType.DATASET);
+      jobs.add(job);
+    }
+    return jobs;
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.dao.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.gcs.sdrs.common.RetentionJobStatusType;
+import com.google.gcs.sdrs.dao.model.RetentionJob;
+import com.google.gcs.sdrs.dao.model.RetentionJobValidation;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class RetentionJobValidationDaoImplTest {
+
+  @Test
+  public void readsPagesAfterTheLastJobId() {
+    List<Integer> jobIds = Arrays.asList(3, 5, 8, 13, 21);
+    List<Integer> afterJobIds = new ArrayList<>();
+    Map<Integer, RetentionJob> results = new LinkedHashMap<>();
+
+    RetentionJobValidationDaoImpl.readAllPages(
+        (afterJobId, limit) -> {
+          afterJobIds.add(afterJobId);
+          List<RetentionJob> page = new ArrayList<>();
+          for (Integer id : jobIds) {
+            if (id > afterJobId && page.size() < limit) {
+              page.add(createJob(id));
+            }
+          }
+          return page;
+        },
+        2,
+        results);
+
+    assertEquals(Arrays.asList(0, 5, 13), afterJobIds);
+    assertEquals(jobIds, new ArrayList<>(results.keySet()));
+  }
+
+  @Test
+  public void keepsTheFirstInstanceOfAJob() {
+    RetentionJob pendingJob = createJob(1);
+    Map<Integer, RetentionJob> results = new LinkedHashMap<>();
+    results.put(1, pendingJob);
+
+    RetentionJobValidationDaoImpl.readAllPages(
+        (afterJobId, limit) -> Arrays.asList(createJob(1), createJob(2)), 10, results);
+
+    assertEquals(2, results.size());
+    assertEquals(pendingJob, results.get(1));
+  }
+
+  @Test
+  public void readsPagesWithRepeatedJobs() {
+    // a job with several pending validations is read once per validation
+    List<Integer> afterJobIds = new ArrayList<>();
+    Map<Integer, RetentionJob> results = new LinkedHashMap<>();
+
+    RetentionJobValidationDaoImpl.readAllPages(
+        (afterJobId, limit) -> {
+          afterJobIds.add(afterJobId);
+          return afterJobId == 0
+              ? Arrays.asList(createJob(1), createJob(1))
+              : Arrays.asList(createJob(2));
+        },
+        2,
+        results);
+
+    assertEquals(Arrays.asList(0, 1), afterJobIds);
+    assertEquals(Arrays.asList(1, 2), new ArrayList<>(results.keySet()));
+  }
+
+  @Test
+  public void upsertsInBatchesOfBatchSize() throws SQLException {
+    Connection connection = mock(Connection.class);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    when(connection.prepareStatement(
+            RetentionJobValidationDaoImpl.UPSERT_RETENTION_JOB_VALIDATION_SQL))
+        .thenReturn(statement);
+    List<RetentionJobValidation> validations = new ArrayList<>();
+    for (int i = 0; i <= RetentionJobValidationDaoImpl.UPSERT_BATCH_SIZE; i++) {
+      RetentionJobValidation validation = new RetentionJobValidation();
+      validation.setRetentionJobId(i);
+      validation.setJobOperationName("operation" + i);
+      validation.setStatus(RetentionJobStatusType.PENDING);
+      validations.add(validation);
+    }
+
+    RetentionJobValidationDaoImpl.upsertBatch(connection, validations, Duration.ofHours(12));
+
+    verify(statement, times(validations.size())).addBatch();
+    verify(statement, times(2)).executeBatch();
+    verify(statement, times(validations.size())).setString(3, "pending");
+    verify(statement, times(validations.size())).setLong(9, 43200L);
+  }
+
+  private RetentionJob createJob(Integer id) {
+    RetentionJob job = new RetentionJob();
+    job.setId(id);
+    return job;
+  }
+}
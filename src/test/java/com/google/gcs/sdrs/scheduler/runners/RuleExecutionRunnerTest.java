@@ -0,0 +1,44 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.scheduler.runners;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.google.gcs.sdrs.common.ExecutionEventType;
+import com.google.gcs.sdrs.controller.pojo.ExecutionEventRequest;
+import com.google.gcs.sdrs.service.EventsService;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class RuleExecutionRunnerTest {
+
+  @Test
+  public void inProcessRunSubmitsPolicyExecution() {
+    EventsService eventsService = mock(EventsService.class);
+
+    new RuleExecutionRunner(true, eventsService).run();
+
+    ArgumentCaptor<ExecutionEventRequest> request =
+        ArgumentCaptor.forClass(ExecutionEventRequest.class);
+    verify(eventsService).processExecutionEvent(request.capture(), anyString());
+    assertEquals(ExecutionEventType.POLICY, request.getValue().getExecutionEventType());
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.service.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.gcs.sdrs.dao.PooledStsJobDao;
+import com.google.gcs.sdrs.dao.model.PooledStsJob;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PooledStsJobIndexTest {
+
+  private PooledStsJobDao pooledStsJobDao;
+  private PooledStsJobIndex index;
+  private List<PooledStsJob> pooledStsJobs;
+
+  @Before
+  public void setup() {
+    pooledStsJobs = new ArrayList<>();
+    pooledStsJobs.add(createJob("job1", "bucket", "project", "dataset", "01:00:00"));
+    pooledStsJobs.add(createJob("job2", "bucket", "project", "dataset", "02:00:00"));
+    pooledStsJobs.add(createJob("job3", "bucket", "project", "default", null));
+    pooledStsJobDao = mock(PooledStsJobDao.class);
+    when(pooledStsJobDao.getAllPooledStsJobs()).thenReturn(pooledStsJobs);
+    index = new PooledStsJobIndex(pooledStsJobDao, 0);
+  }
+
+  @Test
+  public void getJobMatchesBucketProjectTypeAndSchedule() {
+    assertEquals("job2", index.getJob("bucket", "project", "02:00:00", "dataset").getName());
+    assertEquals("job3", index.getJob("bucket", "project", null, "default").getName());
+    assertNull(index.getJob("bucket", "project", "03:00:00", "dataset"));
+    assertNull(index.getJob("bucket", "other-project", "01:00:00", "dataset"));
+  }
+
+  @Test
+  public void loadsOnceUntilInvalidated() {
+    index.getJob("bucket", "project", "01:00:00", "dataset");
+    index.getJob("bucket", "project", "02:00:00", "dataset");
+    verify(pooledStsJobDao, times(1)).getAllPooledStsJobs();
+
+    pooledStsJobs.add(createJob("job4", "bucket", "project", "dataset", "03:00:00"));
+    index.invalidate();
+
+    assertEquals("job4", index.getJob("bucket", "project", "03:00:00", "dataset").getName());
+    verify(pooledStsJobDao, times(2)).getAllPooledStsJobs();
+  }
+
+  @Test
+  public void failedRefreshKeepsCurrentIndex() {
+    index.getJob("bucket", "project", "01:00:00", "dataset");
+    when(pooledStsJobDao.getAllPooledStsJobs()).thenThrow(new IllegalStateException("db down"));
+
+    index.refresh();
+
+    assertEquals("job1", index.getJob("bucket", "project", "01:00:00", "dataset").getName());
+  }
+
+  private PooledStsJob createJob(
+      String name, String sourceBucket, String sourceProject, String type, String schedule) {
+    PooledStsJob job = new PooledStsJob();
+    job.setName(name);
+    job.setSourceBucket(sourceBucket);
+    job.setSourceProject(sourceProject);
+    job.setType(type);
+    job.setSchedule(schedule);
+    return job;
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.service.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.api.services.storagetransfer.v1.Storagetransfer;
+import com.google.api.services.storagetransfer.v1.model.TransferJob;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransferJobCacheTest {
+
+  private static final String JOB_NAME = "transferJobs/1";
+
+  private Storagetransfer client;
+  private Storagetransfer.TransferJobs.Get getRequest;
+  private TransferJob transferJob;
+  private TransferJobCache cache;
+
+  @Before
+  public void setup() throws IOException {
+    client = mock(Storagetransfer.class);
+    Storagetransfer.TransferJobs transferJobs = mock(Storagetransfer.TransferJobs.class);
+    getRequest = mock(Storagetransfer.TransferJobs.Get.class);
+    transferJob = new TransferJob().setName(JOB_NAME);
+    when(client.transferJobs()).thenReturn(transferJobs);
+    when(transferJobs.get(JOB_NAME)).thenReturn(getRequest);
+    when(getRequest.execute()).thenReturn(transferJob);
+    cache = new TransferJobCache(10, 60);
+  }
+
+  @Test
+  public void getJobReadsStsOnlyOnMiss() throws IOException {
+    assertEquals(transferJob, cache.getJob(client, "project", JOB_NAME));
+    assertEquals(transferJob, cache.getJob(client, "project", JOB_NAME));
+
+    verify(getRequest, times(1)).execute();
+    assertEquals(1, cache.getStats().hitCount());
+    assertEquals(1, cache.getStats().missCount());
+  }
+
+  @Test
+  public void invalidateForcesReload() throws IOException {
+    cache.getJob(client, "project", JOB_NAME);
+    cache.invalidate(JOB_NAME);
+    cache.getJob(client, "project", JOB_NAME);
+
+    verify(getRequest, times(2)).execute();
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void missingJobIsNotCached() throws IOException {
+    when(getRequest.execute()).thenReturn(null);
+
+    cache.getJob(client, "project", JOB_NAME);
+    cache.getJob(client, "project", JOB_NAME);
+
+    verify(getRequest, times(2)).execute();
+    assertEquals(0, cache.size());
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ *
+ */
+
+package com.google.gcs.sdrs.service.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Test class for BoundedTaskExecutor */
+public class BoundedTaskExecutorTest {
+  private BoundedTaskExecutor executor;
+
+  @Before
+  public void setUp() {
+    executor = new BoundedTaskExecutor("test", 4);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdown(1, TimeUnit.SECONDS);
+  }
+
+  /** Test that results are returned in task order and a failure does not affect other tasks */
+  @Test
+  public void invokeAllReturnsResultsInOrderAndIsolatesFailures() throws Exception {
+    List<Callable<Integer>> tasks = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      final int value = i;
+      tasks.add(
+          () -> {
+            if (value == 2) {
+              throw new IllegalStateException("failed task");
+            }
+            return value;
+          });
+    }
+
+    List<Future<Integer>> results = executor.invokeAll(tasks, 2);
+
+    assertEquals(5, results.size());
+    for (int i = 0; i < 5; i++) {
+      assertTrue(results.get(i).isDone());
+      if (i == 2) {
+        try {
+          results.get(i).get();
+          fail();
+        } catch (ExecutionException e) {
+          assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+      } else {
+        assertEquals(i, (int) results.get(i).get());
+      }
+    }
+  }
+
+  /** Test that no more than the requested number of tasks run at the same time */
+  @Test
+  public void invokeAllHonorsMaxConcurrency() throws Exception {
+    AtomicInteger running = new AtomicInteger(0);
+    AtomicInteger maxRunning = new AtomicInteger(0);
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      tasks.add(
+          () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(10);
+            running.decrementAndGet();
+            return null;
+          });
+    }
+
+    executor.invokeAll(tasks, 2);
+
+    assertTrue(maxRunning.get() <= 2);
+  }
+}
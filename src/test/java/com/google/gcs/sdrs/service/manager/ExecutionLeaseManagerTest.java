@@ -0,0 +1,136 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.service.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import com.google.gcs.sdrs.dao.ExecutionLeaseDao;
+import com.google.gcs.sdrs.dao.model.ExecutionLease;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+public class ExecutionLeaseManagerTest {
+
+  private ExecutionLeaseDao executionLeaseDao;
+  private ExecutionLeaseManager leaseManager;
+  private List<ExecutionLease> activeLeases;
+
+  @Before
+  public void setup() {
+    executionLeaseDao = mock(ExecutionLeaseDao.class);
+    activeLeases = new ArrayList<>();
+    when(executionLeaseDao.findActiveLeases()).thenReturn(activeLeases);
+    when(executionLeaseDao.tryAcquire(anyString(), anyString(), anyInt())).thenReturn(true);
+    leaseManager = new ExecutionLeaseManager(executionLeaseDao, "node-a", true, 300, 0);
+  }
+
+  @Test
+  public void disabledManagerReturnsAllProjects() {
+    leaseManager = new ExecutionLeaseManager(executionLeaseDao, "node-a", false, 300, 0);
+    List<String> projectIds = Arrays.asList("p1", "p2");
+
+    assertEquals(projectIds, leaseManager.acquireProjects(projectIds));
+    verifyZeroInteractions(executionLeaseDao);
+  }
+
+  @Test
+  public void leasesRequireAnInProcessScheduler() {
+    assertTrue(ExecutionLeaseManager.isSchedulerConfigValid(false, false, false));
+    assertTrue(ExecutionLeaseManager.isSchedulerConfigValid(true, true, true));
+    assertFalse(ExecutionLeaseManager.isSchedulerConfigValid(true, false, true));
+    assertFalse(ExecutionLeaseManager.isSchedulerConfigValid(true, true, false));
+  }
+
+  @Test
+  public void acquiresFairShareOfFreeProjects() {
+    activeLeases.add(createLease("node/node-b", "node-b"));
+    activeLeases.add(createLease("project/p1", "node-b"));
+
+    List<String> result = leaseManager.acquireProjects(Arrays.asList("p1", "p2", "p3", "p4"));
+
+    assertEquals(Arrays.asList("p2", "p3"), result);
+    verify(executionLeaseDao, never()).tryAcquire("project/p1", "node-a", 300);
+    verify(executionLeaseDao, never()).tryAcquire("project/p4", "node-a", 300);
+    verify(executionLeaseDao).renewAll("node-a", 300);
+  }
+
+  @Test
+  public void deletesExpiredLeasesBeforeComputingFairShare() {
+    leaseManager.acquireProjects(Arrays.asList("p1"));
+
+    InOrder inOrder = inOrder(executionLeaseDao);
+    inOrder.verify(executionLeaseDao).deleteExpired();
+    inOrder.verify(executionLeaseDao).findActiveLeases();
+  }
+
+  @Test
+  public void keepsOwnedProjectsAndSkipsLostLeases() {
+    activeLeases.add(createLease("project/p1", "node-a"));
+    when(executionLeaseDao.tryAcquire("project/p2", "node-a", 300)).thenReturn(false);
+
+    List<String> result = leaseManager.acquireProjects(Arrays.asList("p1", "p2", "p3"));
+
+    assertEquals(Arrays.asList("p1", "p3"), result);
+  }
+
+  @Test
+  public void releasesProjectsAboveFairShare() {
+    activeLeases.add(createLease("node/node-b", "node-b"));
+    activeLeases.add(createLease("project/p1", "node-a"));
+    activeLeases.add(createLease("project/p2", "node-a"));
+    activeLeases.add(createLease("project/gone", "node-a"));
+
+    List<String> result = leaseManager.acquireProjects(Arrays.asList("p1", "p2"));
+
+    assertEquals(Arrays.asList("p1"), result);
+    verify(executionLeaseDao).release("project/p2", "node-a");
+    verify(executionLeaseDao).release("project/gone", "node-a");
+  }
+
+  @Test
+  public void shutdownReleasesAllLeases() {
+    leaseManager.shutdown();
+    verify(executionLeaseDao, never()).releaseAll("node-a");
+
+    leaseManager.acquireProjects(Arrays.asList("p1"));
+    leaseManager.shutdown();
+
+    verify(executionLeaseDao).releaseAll("node-a");
+  }
+
+  private ExecutionLease createLease(String partitionKey, String owner) {
+    ExecutionLease lease = new ExecutionLease();
+    lease.setPartitionKey(partitionKey);
+    lease.setOwner(owner);
+    return lease;
+  }
+}
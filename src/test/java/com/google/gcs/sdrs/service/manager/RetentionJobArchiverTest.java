@@ -0,0 +1,75 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.service.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.gcs.sdrs.dao.RetentionJobDao;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class RetentionJobArchiverTest {
+
+  private RetentionJobDao retentionJobDao;
+
+  @Before
+  public void setup() {
+    retentionJobDao = mock(RetentionJobDao.class);
+  }
+
+  @Test
+  public void archivesBatchesUntilABatchIsNotFull() {
+    when(retentionJobDao.archiveBatch(any(Timestamp.class), anyInt())).thenReturn(10, 10, 3);
+    RetentionJobArchiver archiver =
+        new RetentionJobArchiver(retentionJobDao, true, 90, 10, 5, 0, 60);
+
+    int archivedCount = archiver.archive();
+
+    assertEquals(23, archivedCount);
+    ArgumentCaptor<Timestamp> createdBefore = ArgumentCaptor.forClass(Timestamp.class);
+    verify(retentionJobDao, times(3)).archiveBatch(createdBefore.capture(), eq(10));
+    Instant expectedCutoff = Instant.now().minus(Duration.ofDays(90));
+    long differenceInMillis =
+        Math.abs(Duration.between(createdBefore.getValue().toInstant(), expectedCutoff).toMillis());
+    assertTrue(differenceInMillis < 60000);
+  }
+
+  @Test
+  public void stopsAfterMaxBatchesPerRun() {
+    when(retentionJobDao.archiveBatch(any(Timestamp.class), anyInt())).thenReturn(10);
+    RetentionJobArchiver archiver =
+        new RetentionJobArchiver(retentionJobDao, true, 90, 10, 2, 0, 60);
+
+    int archivedCount = archiver.archive();
+
+    assertEquals(20, archivedCount);
+    verify(retentionJobDao, times(2)).archiveBatch(any(Timestamp.class), eq(10));
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.service.mq;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.pubsub.v1.AckReplyConsumer;
+import com.google.gcs.sdrs.common.RetentionJobStatusType;
+import com.google.gcs.sdrs.dao.RetentionJobValidationDao;
+import com.google.gcs.sdrs.dao.model.RetentionJob;
+import com.google.gcs.sdrs.dao.model.RetentionJobValidation;
+import com.google.protobuf.ByteString;
+import com.google.pubsub.v1.PubsubMessage;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class StsNotificationHandlerTest {
+
+  private static final String JOB_NAME = "transferJobs/123";
+  private static final String OPERATION_NAME = "transferOperations/transferJobs-123-456";
+  private static final String PAYLOAD =
+      "{\"name\":\"" + OPERATION_NAME + "\",\"transferJobName\":\"" + JOB_NAME + "\","
+          + "\"startTime\":\"2019-06-17T13:00:00Z\",\"endTime\":\"2019-06-17T13:05:00Z\","
+          + "\"status\":\"SUCCESS\"}";
+
+  private RetentionJobValidationDao dao;
+  private StsNotificationHandler handler;
+
+  @Before
+  public void setup() {
+    dao = mock(RetentionJobValidationDao.class);
+    when(dao.findPendingRetentionJobsByName(anyString(), any(Timestamp.class)))
+        .thenReturn(Arrays.asList(createJob(1), createJob(2)));
+    RetentionJobValidation existingValidation = new RetentionJobValidation();
+    existingValidation.setId(10);
+    existingValidation.setRetentionJobId(1);
+    existingValidation.setJobOperationName(OPERATION_NAME);
+    when(dao.findAllByRetentionJobNames(Collections.singletonList(OPERATION_NAME)))
+        .thenReturn(Collections.singletonList(existingValidation));
+    handler = new StsNotificationHandler(dao);
+  }
+
+  @Test
+  public void recordsSuccessfulOperationForPendingJobs() throws IOException {
+    int count =
+        handler.handle(createAttributes(StsNotificationHandler.EVENT_TYPE_SUCCESS), PAYLOAD);
+
+    assertEquals(2, count);
+    verify(dao)
+        .findPendingRetentionJobsByName(
+            JOB_NAME, Timestamp.from(Instant.parse("2019-06-17T13:00:00Z")));
+    List<RetentionJobValidation> validations = captureSavedValidations();
+    assertEquals(Integer.valueOf(10), validations.get(0).getId());
+    assertNull(validations.get(1).getId());
+    for (RetentionJobValidation validation : validations) {
+      assertEquals(RetentionJobStatusType.SUCCESS, validation.getStatus());
+      assertEquals(OPERATION_NAME, validation.getJobOperationName());
+      assertEquals(
+          Timestamp.from(Instant.parse("2019-06-17T13:05:00Z")), validation.getEndTime());
+    }
+  }
+
+  @Test
+  public void recordsFailedOperationAsError() throws IOException {
+    handler.handle(createAttributes(StsNotificationHandler.EVENT_TYPE_FAILED), PAYLOAD);
+
+    for (RetentionJobValidation validation : captureSavedValidations()) {
+      assertEquals(RetentionJobStatusType.ERROR, validation.getStatus());
+    }
+  }
+
+  @Test
+  public void ignoresOtherEvents() throws IOException {
+    int count = handler.handle(createAttributes("TRANSFER_OPERATION_STARTED"), PAYLOAD);
+
+    assertEquals(0, count);
+    verify(dao, never()).saveOrUpdateBatch(any());
+  }
+
+  @Test
+  public void receiveAcknowledgesInvalidPayloadAndRetriesFailures() {
+    StsNotificationSubscriber subscriber =
+        new StsNotificationSubscriber(handler, true, "projects/p/subscriptions/s", null);
+    AckReplyConsumer consumer = mock(AckReplyConsumer.class);
+    subscriber.receive(
+        createMessage(StsNotificationHandler.EVENT_TYPE_SUCCESS, "not json"), consumer);
+    verify(consumer).ack();
+
+    when(dao.findPendingRetentionJobsByName(eq(JOB_NAME), any(Timestamp.class)))
+        .thenThrow(new IllegalStateException("database unavailable"));
+    AckReplyConsumer retriedConsumer = mock(AckReplyConsumer.class);
+    subscriber.receive(
+        createMessage(StsNotificationHandler.EVENT_TYPE_SUCCESS, PAYLOAD), retriedConsumer);
+    verify(retriedConsumer).nack();
+  }
+
+  private List<RetentionJobValidation> captureSavedValidations() {
+    ArgumentCaptor<List> argument = ArgumentCaptor.forClass(List.class);
+    verify(dao).saveOrUpdateBatch(argument.capture());
+    return new ArrayList<RetentionJobValidation>(argument.getValue());
+  }
+
+  private PubsubMessage createMessage(String eventType, String payload) {
+    return PubsubMessage.newBuilder()
+        .putAllAttributes(createAttributes(eventType))
+        .setData(ByteString.copyFromUtf8(payload))
+        .build();
+  }
+
+  private Map<String, String> createAttributes(String eventType) {
+    Map<String, String> attributes = new HashMap<>();
+    attributes.put(StsNotificationHandler.EVENT_TYPE_ATTRIBUTE, eventType);
+    attributes.put(StsNotificationHandler.TRANSFER_OPERATION_NAME_ATTRIBUTE, OPERATION_NAME);
+    attributes.put(StsNotificationHandler.TRANSFER_JOB_NAME_ATTRIBUTE, JOB_NAME);
+    return attributes;
+  }
+
+  private RetentionJob createJob(int id) {
+    RetentionJob job = new RetentionJob();
+    job.setId(id);
+    job.setName(JOB_NAME);
+    return job;
+  }
+}
@@ -20,11 +20,14 @@ package com.google.gcs.sdrs.service.worker.impl;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.gcs.sdrs.common.ExecutionEventType;
+import com.google.gcs.sdrs.common.RetentionRuleType;
 import com.google.gcs.sdrs.controller.pojo.ExecutionEventRequest;
 import com.google.gcs.sdrs.dao.RetentionJobDao;
 import com.google.gcs.sdrs.dao.RetentionRuleDao;
@@ -34,6 +37,7 @@ import com.google.gcs.sdrs.service.worker.WorkerResult;
 import com.google.gcs.sdrs.service.worker.WorkerResult.WorkerResultStatus;
 import com.google.gcs.sdrs.service.worker.rule.impl.StsRuleExecutor;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import org.junit.Before;
@@ -100,24 +104,66 @@ public class ExecuteRetentionWorkerTest {
     defaultJob.setName("defaultJob");
     defaultJobs.add(datasetJob);
 
-    List<RetentionRule> datasetRules = new ArrayList<>();
-    List<RetentionRule> defaultRules = new ArrayList<>();
+    List<RetentionRule> activeRules = new ArrayList<>();
+    RetentionRule datasetRule = new RetentionRule();
+    datasetRule.setProjectId(projectId);
+    datasetRule.setDataStorageName("gs://bucket/dataset");
+    datasetRule.setType(RetentionRuleType.DATASET);
+    activeRules.add(datasetRule);
     RetentionRule globalDefaultRule = new RetentionRule();
+    globalDefaultRule.setProjectId("global-default");
+    globalDefaultRule.setType(RetentionRuleType.GLOBAL);
+    activeRules.add(globalDefaultRule);
 
-    when(retentionRuleDaoMock.getAllDatasetRuleProjectIds()).thenReturn(projectIds);
-    when(retentionRuleDaoMock.findDatasetRulesByProjectId(any())).thenReturn(datasetRules);
-    when(retentionRuleDaoMock.findDefaultRulesByProjectId(any())).thenReturn(defaultRules);
-    when(retentionRuleDaoMock.findGlobalRuleByProjectId(any())).thenReturn(globalDefaultRule);
+    when(retentionRuleDaoMock.findAllActiveRules()).thenReturn(activeRules);
     when(ruleExecutorMock.executeDefaultRule(any(), any(), any(), any(), any()))
         .thenReturn(defaultJobs);
     when(ruleExecutorMock.executeDatasetRule(any(), any())).thenReturn(datasetJobs);
 
     worker.doWork();
 
-    verify(retentionRuleDaoMock).findDatasetRulesByProjectId(projectId);
+    verify(retentionRuleDaoMock).findAllActiveRules();
+    verify(retentionRuleDaoMock, never()).findDatasetRulesByProjectId(any());
+    verify(ruleExecutorMock).executeDatasetRule(Collections.singletonList(datasetRule), projectId);
     assertEquals(WorkerResult.WorkerResultStatus.SUCCESS, worker.getWorkerResult().getStatus());
   }
 
+  @Test
+  public void doWorkRunsAllProjectsConcurrentlyAndIsolatesFailures() {
+    ExecutionEventRequest request = createBasicRequest();
+    request.setExecutionEventType(ExecutionEventType.POLICY);
+    request.setProjectId(null);
+    request.setTarget(null);
+    ExecuteRetentionWorker worker = new ExecuteRetentionWorker(request, uuid);
+    worker.ruleExecutor = ruleExecutorMock;
+    worker.retentionJobDao = retentionJobDaoMock;
+    worker.retentionRuleDao = retentionRuleDaoMock;
+    worker.isProjectConcurrencyEnabled = true;
+    worker.maxConcurrentProjects = 2;
+
+    List<RetentionRule> activeRules = new ArrayList<>();
+    for (String projectId : new String[] {"failingproject", "project1", "project2"}) {
+      RetentionRule datasetRule = new RetentionRule();
+      datasetRule.setProjectId(projectId);
+      datasetRule.setDataStorageName("gs://" + projectId + "/dataset");
+      datasetRule.setType(RetentionRuleType.DATASET);
+      activeRules.add(datasetRule);
+    }
+
+    when(retentionRuleDaoMock.findAllActiveRules()).thenReturn(activeRules);
+    when(ruleExecutorMock.executeDatasetRule(any(), any())).thenReturn(new ArrayList<>());
+    when(ruleExecutorMock.executeDatasetRule(any(), eq("failingproject")))
+        .thenThrow(new IllegalArgumentException("broken project"));
+    when(ruleExecutorMock.executeDefaultRule(any(), any(), any(), any(), any()))
+        .thenReturn(new ArrayList<>());
+
+    worker.doWork();
+
+    verify(ruleExecutorMock).executeDatasetRule(any(), eq("project1"));
+    verify(ruleExecutorMock).executeDatasetRule(any(), eq("project2"));
+    assertEquals(WorkerResultStatus.FAILED, worker.getWorkerResult().getStatus());
+  }
+
   @Test
   public void doWorkRunsProjectWhenSpecified() {
     ExecutionEventRequest request = createBasicRequest();
@@ -206,7 +252,28 @@ public class ExecuteRetentionWorkerTest {
 
     worker.doWork();
 
-    verify(retentionJobDaoMock).save(any());
+    verify(retentionJobDaoMock).insertBatch(retentionJobs);
+    verify(retentionJobDaoMock, never()).save(any());
+  }
+
+  @Test
+  public void doWorkFailsWhenJobsCannotBeSaved() {
+    ExecutionEventRequest request = createBasicRequest();
+    ExecuteRetentionWorker worker = new ExecuteRetentionWorker(request, uuid);
+    worker.ruleExecutor = ruleExecutorMock;
+    worker.retentionJobDao = retentionJobDaoMock;
+    worker.retentionRuleDao = retentionRuleDaoMock;
+
+    List<RetentionJob> retentionJobs = new ArrayList<>();
+    RetentionJob retentionJob = new RetentionJob();
+    retentionJob.setName("retentionJob");
+    retentionJobs.add(retentionJob);
+    when(ruleExecutorMock.executeUserCommandedRule(any(), any())).thenReturn(retentionJobs);
+    when(retentionJobDaoMock.insertBatch(any())).thenReturn(retentionJobs);
+
+    worker.doWork();
+
+    assertEquals(WorkerResultStatus.FAILED, worker.getWorkerResult().getStatus());
   }
 
   @Test
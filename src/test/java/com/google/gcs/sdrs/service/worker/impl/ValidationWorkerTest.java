@@ -1,9 +1,13 @@
 package com.google.gcs.sdrs.service.worker.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -11,7 +15,11 @@ import com.google.gcs.sdrs.common.RetentionJobStatusType;
 import com.google.gcs.sdrs.dao.RetentionJobValidationDao;
 import com.google.gcs.sdrs.dao.model.RetentionJob;
 import com.google.gcs.sdrs.dao.model.RetentionJobValidation;
+import com.google.gcs.sdrs.service.worker.WorkerResult;
 import com.google.gcs.sdrs.service.worker.rule.impl.StsRuleValidator;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -88,6 +96,141 @@ public class ValidationWorkerTest {
     assertEquals(RetentionJobStatusType.PENDING, newValidation.getStatus());
   }
 
+  @Test
+  public void doWorkValidatesProjectsConcurrently() {
+    ValidationWorker worker = createConcurrentWorker();
+    when(ruleValidatorMock.validateRetentionJobs(anyListOf(RetentionJob.class)))
+        .thenAnswer(
+            invocation -> {
+              List<RetentionJob> jobs = (List<RetentionJob>) invocation.getArguments()[0];
+              String projectId = jobs.get(0).getRetentionRuleProjectId();
+              List<RetentionJobValidation> validations = new ArrayList<>();
+              validations.add(
+                  createRetentionJobValidation(
+                      null,
+                      Integer.valueOf(projectId),
+                      "job" + projectId,
+                      RetentionJobStatusType.SUCCESS));
+              return validations;
+            });
+
+    worker.doWork();
+
+    ArgumentCaptor<List> argument = ArgumentCaptor.forClass(List.class);
+    verify(retentionJobValidationDaoMock).saveOrUpdateBatch(argument.capture());
+    List<RetentionJobValidation> arguments = argument.getValue();
+    assertEquals(2, arguments.size());
+    RetentionJobValidation existingValidation =
+        arguments.stream().filter(x -> x.getRetentionJobId().equals(1)).findFirst().orElse(null);
+    assertEquals(Integer.valueOf(1), existingValidation.getId());
+    assertEquals(worker.getUuid(), existingValidation.getBatchId());
+    assertEquals(WorkerResult.WorkerResultStatus.SUCCESS, worker.getWorkerResult().getStatus());
+  }
+
+  @Test
+  public void doWorkSavesOtherProjectsWhenOneFails() {
+    ValidationWorker worker = createConcurrentWorker();
+    when(retentionJobValidationDaoMock.findAllByRetentionJobNames(any()))
+        .thenReturn(new ArrayList<>());
+    when(ruleValidatorMock.validateRetentionJobs(anyListOf(RetentionJob.class)))
+        .thenAnswer(
+            invocation -> {
+              List<RetentionJob> jobs = (List<RetentionJob>) invocation.getArguments()[0];
+              if (jobs.get(0).getRetentionRuleProjectId().equals("1")) {
+                throw new IllegalStateException("STS unavailable");
+              }
+              List<RetentionJobValidation> validations = new ArrayList<>();
+              validations.add(
+                  createRetentionJobValidation(null, 2, "job2", RetentionJobStatusType.PENDING));
+              return validations;
+            });
+
+    worker.doWork();
+
+    ArgumentCaptor<List> argument = ArgumentCaptor.forClass(List.class);
+    verify(retentionJobValidationDaoMock).saveOrUpdateBatch(argument.capture());
+    List<RetentionJobValidation> arguments = argument.getValue();
+    assertEquals(1, arguments.size());
+    assertEquals(Integer.valueOf(2), arguments.get(0).getRetentionJobId());
+    assertEquals(WorkerResult.WorkerResultStatus.FAILED, worker.getWorkerResult().getStatus());
+  }
+
+  @Test
+  public void doWorkSchedulesTheNextCheckOfPendingValidations() {
+    ValidationWorker worker = new ValidationWorker(UUID.randomUUID().toString());
+    worker.dao = retentionJobValidationDaoMock;
+    worker.stsRuleValidator = ruleValidatorMock;
+    worker.isRecheckBackoffEnabled = true;
+    worker.recheckInitialDelay = Duration.ofMinutes(30);
+    worker.recheckMaxDelay = Duration.ofHours(12);
+    Instant start = Instant.now();
+
+    worker.doWork();
+
+    ArgumentCaptor<List> argument = ArgumentCaptor.forClass(List.class);
+    verify(retentionJobValidationDaoMock).saveOrUpdateBatch(argument.capture());
+    List<RetentionJobValidation> arguments = argument.getValue();
+    RetentionJobValidation successValidation =
+        arguments.stream().filter(x -> x.getRetentionJobId().equals(1)).findFirst().orElse(null);
+    assertNull(successValidation.getNextCheckAt());
+    RetentionJobValidation pendingValidation =
+        arguments.stream().filter(x -> x.getRetentionJobId().equals(2)).findFirst().orElse(null);
+    Instant nextCheckAt = pendingValidation.getNextCheckAt().toInstant();
+    assertFalse(nextCheckAt.isBefore(start.plus(Duration.ofMinutes(30))));
+    assertTrue(nextCheckAt.isBefore(start.plus(Duration.ofMinutes(31))));
+  }
+
+  @Test
+  public void doWorkUpsertsWithoutReadingExistingValidations() {
+    ValidationWorker worker = new ValidationWorker(UUID.randomUUID().toString());
+    worker.dao = retentionJobValidationDaoMock;
+    worker.stsRuleValidator = ruleValidatorMock;
+    worker.isBulkUpsertEnabled = true;
+
+    worker.doWork();
+
+    ArgumentCaptor<List> argument = ArgumentCaptor.forClass(List.class);
+    verify(retentionJobValidationDaoMock).upsertBatch(argument.capture());
+    verify(retentionJobValidationDaoMock, never()).findAllByRetentionJobNames(any());
+    verify(retentionJobValidationDaoMock, never()).saveOrUpdateBatch(any());
+    List<RetentionJobValidation> arguments = argument.getValue();
+    assertEquals(4, arguments.size());
+    assertTrue(arguments.stream().allMatch(x -> x.getId() == null && x.getBatchId() != null));
+  }
+
+  @Test
+  public void getNextCheckAtBacksOffUpToTheMaxDelay() {
+    ValidationWorker worker = new ValidationWorker(UUID.randomUUID().toString());
+    worker.isRecheckBackoffEnabled = true;
+    worker.recheckInitialDelay = Duration.ofMinutes(30);
+    worker.recheckMaxDelay = Duration.ofHours(12);
+    RetentionJobValidation validation =
+        createRetentionJobValidation(1, 1, "job1", RetentionJobStatusType.PENDING);
+    Instant now = Instant.parse("2019-06-17T12:00:00Z");
+
+    assertEquals(
+        Timestamp.from(now.plus(Duration.ofMinutes(30))),
+        worker.getNextCheckAt(validation, Timestamp.from(now.minusSeconds(60)), now));
+    assertEquals(
+        Timestamp.from(now.plus(Duration.ofHours(2))),
+        worker.getNextCheckAt(validation, Timestamp.from(now.minus(Duration.ofHours(2))), now));
+    assertEquals(
+        Timestamp.from(now.plus(Duration.ofHours(12))),
+        worker.getNextCheckAt(validation, Timestamp.from(now.minus(Duration.ofDays(2))), now));
+
+    worker.isRecheckBackoffEnabled = false;
+    assertNull(worker.getNextCheckAt(validation, null, now));
+  }
+
+  private ValidationWorker createConcurrentWorker() {
+    ValidationWorker worker = new ValidationWorker(UUID.randomUUID().toString());
+    worker.dao = retentionJobValidationDaoMock;
+    worker.stsRuleValidator = ruleValidatorMock;
+    worker.isProjectConcurrencyEnabled = true;
+    worker.maxConcurrentProjects = 2;
+    return worker;
+  }
+
   private RetentionJob createRetentionJob(String retentionJobId) {
     RetentionJob job = new RetentionJob();
     job.setRetentionRuleProjectId(retentionJobId);
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.service.worker.rule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gcs.sdrs.common.RetentionRuleType;
+import com.google.gcs.sdrs.dao.model.RetentionRule;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RuleSnapshotTest {
+
+  private RuleSnapshot snapshot;
+  private RetentionRule defaultGlobalRule;
+  private RetentionRule projectGlobalRule;
+
+  @Before
+  public void setup() {
+    List<RetentionRule> rules = new ArrayList<>();
+    rules.add(createRule("project1", "gs://bucket1/dataset1", RetentionRuleType.DATASET));
+    rules.add(createRule("project1", "gs://bucket1/dataset2", RetentionRuleType.DATASET));
+    rules.add(createRule("project1", "gs://bucket2/dataset", RetentionRuleType.DATASET));
+    rules.add(createRule("project1", "gs://bucket1", RetentionRuleType.DEFAULT));
+    rules.add(createRule("project2", "gs://bucket3", RetentionRuleType.DEFAULT));
+    defaultGlobalRule = createRule("global-default", "gs://global", RetentionRuleType.GLOBAL);
+    rules.add(defaultGlobalRule);
+    projectGlobalRule = createRule("project2", "gs://global", RetentionRuleType.GLOBAL);
+    rules.add(projectGlobalRule);
+
+    snapshot = new RuleSnapshot(rules, "global-default");
+  }
+
+  @Test
+  public void getProjectIdsExcludesGlobalRules() {
+    List<String> projectIds = snapshot.getProjectIds();
+
+    assertEquals(2, projectIds.size());
+    assertTrue(projectIds.contains("project1"));
+    assertTrue(projectIds.contains("project2"));
+  }
+
+  @Test
+  public void getRulesByProjectAndType() {
+    assertEquals(3, snapshot.getDatasetRules("project1").size());
+    assertEquals(1, snapshot.getDefaultRules("project1").size());
+    assertEquals(0, snapshot.getDatasetRules("project2").size());
+    assertEquals(0, snapshot.getDatasetRules("unknown").size());
+  }
+
+  @Test
+  public void getBucketRules() {
+    assertEquals(
+        2, snapshot.getBucketRules("project1", "bucket1", RetentionRuleType.DATASET).size());
+    assertEquals(
+        1, snapshot.getBucketRules("project1", "bucket2", RetentionRuleType.DATASET).size());
+    assertEquals(
+        0, snapshot.getBucketRules("project1", "bucket2", RetentionRuleType.DEFAULT).size());
+  }
+
+  @Test
+  public void getGlobalRuleFallsBackToDefaultProject() {
+    assertEquals(projectGlobalRule, snapshot.getGlobalRule("project2"));
+    assertEquals(defaultGlobalRule, snapshot.getGlobalRule("project1"));
+    assertNull(new RuleSnapshot(new ArrayList<>(), "global-default").getGlobalRule("project1"));
+  }
+
+  private RetentionRule createRule(
+      String projectId, String dataStorageName, RetentionRuleType type) {
+    RetentionRule rule = new RetentionRule();
+    rule.setProjectId(projectId);
+    rule.setDataStorageName(dataStorageName);
+    rule.setType(type);
+    return rule;
+  }
+}
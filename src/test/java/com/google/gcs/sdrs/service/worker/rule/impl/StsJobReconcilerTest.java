@@ -0,0 +1,178 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.service.worker.rule.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import com.google.api.services.storagetransfer.v1.Storagetransfer;
+import com.google.api.services.storagetransfer.v1.model.TransferJob;
+import com.google.api.services.storagetransfer.v1.model.UpdateTransferJobRequest;
+import com.google.gcs.sdrs.service.cache.TransferJobCache;
+import com.google.gcs.sdrs.util.StsUtil;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class StsJobReconcilerTest {
+
+  @Test
+  public void diffIgnoresPrefixOrder() {
+    TransferJob actual = buildJob("description", Arrays.asList("a/", "b/"), 30);
+    TransferJob desired = buildJob("description", Arrays.asList("b/", "a/"), 30);
+
+    assertTrue(StsJobReconciler.diff(actual, desired).isEmpty());
+  }
+
+  @Test
+  public void diffReportsChangedFields() {
+    TransferJob actual = buildJob("description", Arrays.asList("a/"), 30);
+
+    assertEquals(
+        Arrays.asList(StsJobReconciler.FIELD_TRANSFER_SPEC),
+        StsJobReconciler.diff(actual, buildJob("description", Arrays.asList("a/"), 60)));
+    assertEquals(
+        Arrays.asList(StsJobReconciler.FIELD_TRANSFER_SPEC),
+        StsJobReconciler.diff(actual, buildJob("description", Arrays.asList("a/", "c/"), 30)));
+    assertEquals(
+        Arrays.asList(StsJobReconciler.FIELD_DESCRIPTION),
+        StsJobReconciler.diff(actual, buildJob("new description", Arrays.asList("a/"), 30)));
+
+    TransferJob disabled = buildJob("description", Arrays.asList("a/"), 30);
+    disabled.setStatus("DISABLED");
+    assertEquals(
+        Arrays.asList(StsJobReconciler.FIELD_STATUS), StsJobReconciler.diff(disabled, actual));
+  }
+
+  @Test
+  public void diffAddsMissingNotificationConfig() {
+    TransferJob actual = buildJob("description", Arrays.asList("a/"), 30);
+    TransferJob desired = buildJob("description", Arrays.asList("a/"), 30);
+    assertTrue(StsJobReconciler.diff(desired, actual).isEmpty());
+
+    desired.set(
+        StsUtil.NOTIFICATION_CONFIG_FIELD,
+        StsUtil.buildNotificationConfig("projects/project/topics/sts"));
+    assertEquals(
+        Arrays.asList(StsJobReconciler.FIELD_NOTIFICATION_CONFIG),
+        StsJobReconciler.diff(actual, desired));
+
+    // STS returns the event types in its own order
+    Map<String, Object> notificationConfig = new HashMap<>();
+    notificationConfig.put("pubsubTopic", "projects/project/topics/sts");
+    notificationConfig.put(
+        "eventTypes",
+        Arrays.asList(
+            "TRANSFER_OPERATION_ABORTED",
+            "TRANSFER_OPERATION_FAILED",
+            "TRANSFER_OPERATION_SUCCESS"));
+    notificationConfig.put("payloadFormat", "JSON");
+    actual.set(StsUtil.NOTIFICATION_CONFIG_FIELD, notificationConfig);
+    assertTrue(StsJobReconciler.diff(actual, desired).isEmpty());
+    assertTrue(
+        StsJobReconciler.diff(actual, buildJob("description", Arrays.asList("a/"), 30)).isEmpty());
+  }
+
+  @Test
+  public void reconcileSkipsUpToDateJob() throws IOException {
+    Storagetransfer client = mock(Storagetransfer.class);
+    StsJobReconciler reconciler = new StsJobReconciler(client, mock(TransferJobCache.class));
+    TransferJob actual = buildJob("description", Arrays.asList("a/"), 30);
+
+    TransferJob result =
+        reconciler.reconcile(actual, buildJob("description", Arrays.asList("a/"), 30), "project");
+
+    assertEquals(actual, result);
+    assertEquals(1, reconciler.getSkippedCount());
+    assertEquals(0, reconciler.getPatchedCount());
+    verifyZeroInteractions(client);
+  }
+
+  @Test
+  public void reconcileSkipsJobThatOnlyDiffersInNoopExcludePrefix() throws IOException {
+    Storagetransfer client = mock(Storagetransfer.class);
+    StsJobReconciler reconciler = new StsJobReconciler(client, mock(TransferJobCache.class));
+    TransferJob actual = buildJob("description", Arrays.asList("1234_NOOP_EXCLUDE_PREFIX/"), 30);
+
+    TransferJob result =
+        reconciler.reconcile(
+            actual,
+            buildJob("description", Arrays.asList("5678_NOOP_EXCLUDE_PREFIX/"), 30),
+            "project");
+
+    assertEquals(actual, result);
+    assertEquals(1, reconciler.getSkippedCount());
+    verifyZeroInteractions(client);
+    assertEquals(
+        Arrays.asList(StsJobReconciler.FIELD_TRANSFER_SPEC),
+        StsJobReconciler.diff(
+            actual, buildJob("description", Arrays.asList("a/", "5678_NOOP_EXCLUDE_PREFIX/"), 30)));
+  }
+
+  @Test
+  public void reconcilePatchesOnlyChangedFields() throws IOException {
+    Storagetransfer client = mock(Storagetransfer.class);
+    Storagetransfer.TransferJobs transferJobs = mock(Storagetransfer.TransferJobs.class);
+    Storagetransfer.TransferJobs.Patch patch = mock(Storagetransfer.TransferJobs.Patch.class);
+    ArgumentCaptor<UpdateTransferJobRequest> requestCaptor =
+        ArgumentCaptor.forClass(UpdateTransferJobRequest.class);
+    when(client.transferJobs()).thenReturn(transferJobs);
+    when(transferJobs.patch(eq("transferJobs/1"), requestCaptor.capture())).thenReturn(patch);
+    when(patch.execute()).thenReturn(new TransferJob());
+    TransferJobCache transferJobCache = mock(TransferJobCache.class);
+    StsJobReconciler reconciler = new StsJobReconciler(client, transferJobCache);
+
+    reconciler.reconcile(
+        buildJob("description", Arrays.asList("a/"), 30),
+        buildJob("description", Arrays.asList("a/"), 60),
+        "project");
+
+    UpdateTransferJobRequest request = requestCaptor.getValue();
+    assertEquals(
+        StsJobReconciler.FIELD_TRANSFER_SPEC, request.getUpdateTransferJobFieldMask());
+    assertNull(request.getTransferJob().getDescription());
+    assertEquals(
+        "5184000s",
+        request
+            .getTransferJob()
+            .getTransferSpec()
+            .getObjectConditions()
+            .getMinTimeElapsedSinceLastModification());
+    assertEquals(1, reconciler.getPatchedCount());
+    verify(transferJobCache).invalidate("transferJobs/1");
+  }
+
+  private TransferJob buildJob(String description, List<String> excludePrefixes, int days) {
+    return new TransferJob()
+        .setName("transferJobs/1")
+        .setDescription(description)
+        .setTransferSpec(
+            StsUtil.buildTransferSpec("bucket", "scratch-bucket", excludePrefixes, true, days))
+        .setStatus(StsUtil.STS_ENABLED_STRING);
+  }
+}
@@ -18,21 +18,36 @@
 package com.google.gcs.sdrs.service.worker.rule.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import com.google.api.client.googleapis.testing.auth.oauth2.MockGoogleCredential;
 import com.google.api.services.storagetransfer.v1.Storagetransfer;
 import com.google.gcs.sdrs.common.RetentionRuleType;
+import com.google.gcs.sdrs.dao.RetentionJobDao;
 import com.google.gcs.sdrs.dao.model.RetentionJob;
 import com.google.gcs.sdrs.dao.model.RetentionRule;
+import com.google.gcs.sdrs.service.cache.PooledStsJobIndex;
+import com.google.gcs.sdrs.service.mq.pojo.DeleteNotificationMessage;
 import com.google.gcs.sdrs.util.CredentialsUtil;
 import java.io.IOException;
+import java.sql.Timestamp;
 import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -89,4 +104,243 @@ public class StsRuleExecutorTest {
     assertEquals(result.getRetentionRuleType(), testRule.getType());
     assertEquals((int) result.getRetentionRuleVersion(), (int) testRule.getVersion());
   }
+
+  @Test
+  public void globalRuleExecutionWithConcurrentBuckets() {
+    RetentionRule globalRule = new RetentionRule();
+    globalRule.setId(2);
+    globalRule.setProjectId("global-default");
+    globalRule.setRetentionValue("30:day");
+    globalRule.setDataStorageName("gs://global");
+    globalRule.setType(RetentionRuleType.GLOBAL);
+    globalRule.setVersion(1);
+
+    Collection<RetentionRule> datasetRules = new HashSet<>();
+    for (int i = 0; i < 3; i++) {
+      RetentionRule datasetRule = new RetentionRule();
+      datasetRule.setId(10 + i);
+      datasetRule.setProjectId("project-id");
+      datasetRule.setRetentionValue("30:day");
+      datasetRule.setDataStorageName("gs://bucket-" + i + "/dataset");
+      datasetRule.setType(RetentionRuleType.DATASET);
+      datasetRule.setVersion(1);
+      datasetRules.add(datasetRule);
+    }
+
+    objectUnderTest.pooledStsJobIndex = mock(PooledStsJobIndex.class);
+    objectUnderTest.retentionJobDao = mock(RetentionJobDao.class);
+    objectUnderTest.isBucketConcurrencyEnabled = true;
+    try {
+      List<RetentionJob> result =
+          objectUnderTest.executeDefaultRule(
+              globalRule,
+              new HashSet<>(),
+              datasetRules,
+              ZonedDateTime.now(Clock.systemUTC()),
+              "project-id");
+
+      assertEquals(3, result.size());
+      Set<String> storageNames = new HashSet<>();
+      for (RetentionJob job : result) {
+        assertEquals("project-id", job.getRetentionRuleProjectId());
+        assertEquals(
+            job.getRetentionRuleDataStorageName(), "gs://" + job.getDataStorageRoot());
+        storageNames.add(job.getRetentionRuleDataStorageName());
+      }
+      assertTrue(storageNames.contains("gs://bucket-0"));
+      assertTrue(storageNames.contains("gs://bucket-1"));
+      assertTrue(storageNames.contains("gs://bucket-2"));
+      // the shared global rule is not modified by the per bucket executions
+      assertEquals("global-default", globalRule.getProjectId());
+      assertEquals("gs://global", globalRule.getDataStorageName());
+    } finally {
+      objectUnderTest.isBucketConcurrencyEnabled = false;
+    }
+  }
+
+  @Test
+  public void incrementalExecutionSkipsUnchangedBuckets() {
+    RetentionRule defaultRule = new RetentionRule();
+    defaultRule.setId(3);
+    defaultRule.setProjectId("project-id");
+    defaultRule.setRetentionValue("30:day");
+    defaultRule.setDataStorageName("gs://bucket");
+    defaultRule.setType(RetentionRuleType.DEFAULT);
+    defaultRule.setVersion(2);
+    Collection<RetentionRule> defaultRules = new HashSet<>();
+    defaultRules.add(defaultRule);
+
+    RetentionJob latestJob = objectUnderTest.buildRetentionJobEntity("job", defaultRule, "_lock/");
+    latestJob.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+
+    objectUnderTest.pooledStsJobIndex = mock(PooledStsJobIndex.class);
+    objectUnderTest.retentionJobDao = mock(RetentionJobDao.class);
+    when(objectUnderTest.retentionJobDao.findLatestDefaultJob("gs://bucket")).thenReturn(latestJob);
+    objectUnderTest.isIncrementalExecutionEnabled = true;
+    try {
+      List<RetentionJob> result =
+          objectUnderTest.executeDefaultRule(
+              null,
+              defaultRules,
+              new HashSet<>(),
+              ZonedDateTime.now(Clock.systemUTC()),
+              "project-id");
+
+      assertTrue(result.isEmpty());
+      verifyZeroInteractions(objectUnderTest.pooledStsJobIndex);
+    } finally {
+      objectUnderTest.isIncrementalExecutionEnabled = false;
+    }
+  }
+
+  @Test
+  public void isDefaultJobUpToDateDetectsChanges() {
+    List<String> prefixes = Arrays.asList("_lock/", "dataset/");
+    RetentionJob latestJob =
+        objectUnderTest.buildRetentionJobEntity("job", testRule, "dataset/;_lock/");
+    latestJob.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+
+    assertTrue(objectUnderTest.isDefaultJobUpToDate(latestJob, testRule, prefixes));
+    assertFalse(
+        objectUnderTest.isDefaultJobUpToDate(latestJob, testRule, Arrays.asList("_lock/")));
+    assertFalse(objectUnderTest.isDefaultJobUpToDate(null, testRule, prefixes));
+
+    RetentionRule newVersion = new RetentionRule();
+    newVersion.setId(testRule.getId());
+    newVersion.setVersion(testRule.getVersion() + 1);
+    assertFalse(objectUnderTest.isDefaultJobUpToDate(latestJob, newVersion, prefixes));
+
+    latestJob.setCreatedAt(
+        new Timestamp(
+            System.currentTimeMillis()
+                - TimeUnit.HOURS.toMillis(objectUnderTest.fullReconcileIntervalInHours + 1)));
+    assertFalse(objectUnderTest.isDefaultJobUpToDate(latestJob, testRule, prefixes));
+  }
+
+  @Test
+  public void isDefaultJobUpToDateIgnoresNoopPrefix() {
+    RetentionJob latestJob =
+        objectUnderTest.buildRetentionJobEntity("job", testRule, "1234_NOOP_EXCLUDE_PREFIX/");
+    latestJob.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+
+    assertTrue(
+        objectUnderTest.isDefaultJobUpToDate(
+            latestJob, testRule, Arrays.asList("5678_NOOP_EXCLUDE_PREFIX/")));
+  }
+
+  @Test
+  public void buildPrefixShardsSplitsAtMaxPrefixCount() {
+    int originalMaxPrefixCount = objectUnderTest.maxPrefixCount;
+    objectUnderTest.maxPrefixCount = 2;
+    try {
+      RetentionRule otherRule = new RetentionRule();
+      otherRule.setDataStorageName("gs://test/a");
+      testRule.setDataStorageName("gs://test/b");
+      Map<String, List<String>> prefixesPerDatasetMap = new HashMap<>();
+      prefixesPerDatasetMap.put("gs://test/b", Arrays.asList("b/1/", "b/2/"));
+      prefixesPerDatasetMap.put("gs://test/a", Arrays.asList("a/1/"));
+
+      List<Map<String, List<String>>> shards =
+          objectUnderTest.buildPrefixShards(
+              Arrays.asList(testRule, otherRule), prefixesPerDatasetMap);
+
+      assertEquals(2, shards.size());
+      assertEquals(Arrays.asList("a/1/"), shards.get(0).get("gs://test/a"));
+      assertEquals(Arrays.asList("b/1/"), shards.get(0).get("gs://test/b"));
+      assertEquals(Arrays.asList("b/2/"), shards.get(1).get("gs://test/b"));
+      assertFalse(shards.get(1).containsKey("gs://test/a"));
+    } finally {
+      objectUnderTest.maxPrefixCount = originalMaxPrefixCount;
+    }
+  }
+
+  @Test
+  public void prefixShardsAllRunOverConsecutiveHours() {
+    ZonedDateTime firstRun = ZonedDateTime.of(2019, 6, 17, 13, 5, 0, 0, ZoneOffset.UTC);
+    assertEquals(
+        new HashSet<>(Arrays.asList(0, 1)), scheduleShardsOfConsecutiveRuns(firstRun, 2, 2));
+
+    // the shards keep cycling across the end of the day
+    ZonedDateTime lateRun = ZonedDateTime.of(2019, 6, 17, 22, 5, 0, 0, ZoneOffset.UTC);
+    assertEquals(
+        new HashSet<>(Arrays.asList(0, 1, 2, 3, 4)),
+        scheduleShardsOfConsecutiveRuns(lateRun, 5, 5));
+  }
+
+  @Test
+  public void buildPrefixShardsWithoutPrefixes() {
+    List<Map<String, List<String>>> shards =
+        objectUnderTest.buildPrefixShards(Arrays.asList(testRule), new HashMap<>());
+
+    assertEquals(1, shards.size());
+    assertTrue(shards.get(0).isEmpty());
+  }
+
+  @Test
+  public void deleteNotificationsArePerPrefixByDefault() {
+    objectUnderTest.isGroupedNotificationEnabled = false;
+
+    List<DeleteNotificationMessage> messages =
+        objectUnderTest.buildDeleteNotificationMessages(
+            "sdrs-test", "test", Arrays.asList("a/", "b/"), Instant.now(), "correlation");
+
+    assertEquals(2, messages.size());
+    assertEquals("gs://test/a/", messages.get(0).getDeletedDirectoryUri());
+    assertNull(messages.get(0).getGroupId());
+    assertNull(messages.get(0).getDeletedDirectoryUris());
+  }
+
+  @Test
+  public void groupedDeleteNotificationsAreSizeBounded() {
+    boolean originalGrouping = objectUnderTest.isGroupedNotificationEnabled;
+    int originalMaxDirectories = objectUnderTest.maxDirectoriesPerNotification;
+    objectUnderTest.isGroupedNotificationEnabled = true;
+    objectUnderTest.maxDirectoriesPerNotification = 2;
+    try {
+      List<DeleteNotificationMessage> messages =
+          objectUnderTest.buildDeleteNotificationMessages(
+              "sdrs-test", "test", Arrays.asList("a/", "b/", "c/"), Instant.now(), "correlation");
+
+      assertEquals(2, messages.size());
+      assertEquals(
+          Arrays.asList("gs://test/a/", "gs://test/b/"),
+          messages.get(0).getDeletedDirectoryUris());
+      assertEquals(Arrays.asList("gs://test/c/"), messages.get(1).getDeletedDirectoryUris());
+      assertEquals("gs://test/c/", messages.get(1).getDeletedDirectoryUri());
+      assertEquals(messages.get(0).getGroupId(), messages.get(1).getGroupId());
+      assertEquals(1, messages.get(0).getSequenceNumber());
+      assertEquals(2, messages.get(1).getSequenceNumber());
+      assertEquals(2, messages.get(1).getTotalNumber());
+    } finally {
+      objectUnderTest.isGroupedNotificationEnabled = originalGrouping;
+      objectUnderTest.maxDirectoriesPerNotification = originalMaxDirectories;
+    }
+  }
+
+  /**
+   * Simulates hourly runs, each patching the pooled job of the next hour
+   *
+   * @return the shards run by the pooled jobs
+   */
+  private Set<Integer> scheduleShardsOfConsecutiveRuns(
+      ZonedDateTime firstRun, int runCount, int shardCount) {
+    Map<String, Integer> shardPerPooledJob = new HashMap<>();
+    Set<Integer> runShards = new HashSet<>();
+    for (int run = 0; run < runCount; run++) {
+      ZonedDateTime runTime = firstRun.plusHours(run);
+      // the pooled job of the current hour runs before this run patches the next one
+      Integer currentShard =
+          shardPerPooledJob.get(StsRuleExecutor.getNextScheduledAt(runTime, 0));
+      if (currentShard != null) {
+        runShards.add(currentShard);
+      }
+      shardPerPooledJob.put(
+          StsRuleExecutor.getNextScheduledAt(runTime, 1),
+          StsRuleExecutor.selectPrefixShard(runTime, shardCount));
+    }
+    // the pooled job of the hour after the last run
+    runShards.add(
+        shardPerPooledJob.get(StsRuleExecutor.getNextScheduledAt(firstRun, runCount)));
+    return runShards;
+  }
 }
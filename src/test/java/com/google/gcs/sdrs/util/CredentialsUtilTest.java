@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
+import com.google.api.client.googleapis.testing.auth.oauth2.MockGoogleCredential;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class CredentialsUtilTest {
+
+  @Test
+  public void credentialsAreLoadedOnce() throws IOException {
+    AtomicInteger loadCount = new AtomicInteger();
+    GoogleCredential credential = new MockGoogleCredential(new MockGoogleCredential.Builder());
+    CredentialsUtil credentialsUtil =
+        new CredentialsUtil(
+            () -> {
+              loadCount.incrementAndGet();
+              return credential;
+            });
+
+    assertSame(credential, credentialsUtil.getCredentials());
+    assertSame(credential, credentialsUtil.getCredentials());
+    assertEquals(1, loadCount.get());
+  }
+
+  @Test
+  public void expiringTokenIsRefreshed() throws IOException {
+    GoogleCredential credential = createCredential("expiring", 60L);
+    CredentialsUtil credentialsUtil = new CredentialsUtil(() -> credential);
+
+    credentialsUtil.getCredentials();
+
+    assertFalse("expiring".equals(credential.getAccessToken()));
+    assertTrue(credential.getExpiresInSeconds() > CredentialsUtil.REFRESH_MARGIN_IN_SECONDS);
+  }
+
+  @Test
+  public void validTokenIsKept() throws IOException {
+    GoogleCredential credential = createCredential("valid", 3600L);
+    CredentialsUtil credentialsUtil = new CredentialsUtil(() -> credential);
+
+    credentialsUtil.getCredentials();
+
+    assertEquals("valid", credential.getAccessToken());
+  }
+
+  private GoogleCredential createCredential(String accessToken, Long expiresInSeconds) {
+    GoogleCredential credential =
+        new MockGoogleCredential.Builder()
+            .setTransport(MockGoogleCredential.newMockHttpTransportWithSampleTokenResponse())
+            .setJsonFactory(JacksonFactory.getDefaultInstance())
+            .setClientSecrets("client_id", "client_secret")
+            .build();
+    credential.setAccessToken(accessToken);
+    credential.setRefreshToken("refresh_token");
+    credential.setExpiresInSeconds(expiresInSeconds);
+    return credential;
+  }
+}
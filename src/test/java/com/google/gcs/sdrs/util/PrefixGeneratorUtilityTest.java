@@ -18,11 +18,16 @@
 package com.google.gcs.sdrs.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -273,4 +278,51 @@ public class PrefixGeneratorUtilityTest {
     assertEquals(1, result.size());
     assertEquals("2019/", result.get(0));
   }
+
+  @Test
+  public void streamMatchesList() {
+    String pattern = "test";
+    ZonedDateTime time1 = ZonedDateTime.of(2016, 5, 17, 3, 0, 0, 0, ZoneOffset.UTC);
+    ZonedDateTime time2 = ZonedDateTime.of(2020, 3, 3, 2, 0, 0, 0, ZoneOffset.UTC);
+
+    List<String> result = PrefixGeneratorUtility.generateTimePrefixes(pattern, time1, time2);
+
+    assertEquals(
+        result,
+        PrefixGeneratorUtility.streamTimePrefixes(pattern, time1, time2)
+            .collect(Collectors.toList()));
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void iteratorEndsAfterLastPrefix() {
+    ZonedDateTime time1 = ZonedDateTime.of(2019, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    ZonedDateTime time2 = ZonedDateTime.of(2019, 1, 1, 1, 0, 0, 0, ZoneOffset.UTC);
+
+    Iterator<String> iterator = PrefixGeneratorUtility.iterateTimePrefixes("test", time1, time2);
+
+    assertEquals("test/2019/01/01/00/", iterator.next());
+    assertFalse(iterator.hasNext());
+    iterator.next();
+  }
+
+  @Test
+  public void nonUtcTimesAreFormattedInUtc() {
+    ZoneOffset offset = ZoneOffset.ofHours(2);
+    ZonedDateTime time1 = ZonedDateTime.of(2019, 1, 1, 1, 0, 0, 0, offset);
+    ZonedDateTime time2 = ZonedDateTime.of(2019, 1, 1, 3, 0, 0, 0, offset);
+
+    List<String> result = PrefixGeneratorUtility.generateTimePrefixes("test", time1, time2);
+
+    assertEquals(Arrays.asList("test/2019/01/01/00/", "test/2018/12/31/23/"), result);
+  }
+
+  @Test
+  public void leadingSlashOfPatternIsRemoved() {
+    ZonedDateTime time1 = ZonedDateTime.of(2019, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    ZonedDateTime time2 = ZonedDateTime.of(2020, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    List<String> result = PrefixGeneratorUtility.generateTimePrefixes("/test", time1, time2);
+
+    assertEquals(Arrays.asList("test/2019/"), result);
+  }
 }
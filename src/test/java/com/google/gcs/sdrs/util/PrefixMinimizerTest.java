@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class PrefixMinimizerTest {
+
+  @Test
+  public void completeDayIsMergedIntoParent() {
+    List<String> prefixes = new ArrayList<>();
+    for (int hour = 0; hour < 24; hour++) {
+      prefixes.add(String.format("test/2019/01/01/%02d/", hour));
+    }
+    prefixes.add("test/2019/01/02/00/");
+
+    List<String> result = PrefixMinimizer.minimize(prefixes);
+
+    assertEquals(Arrays.asList("test/2019/01/01/", "test/2019/01/02/00/"), result);
+  }
+
+  @Test
+  public void incompleteDayIsNotMerged() {
+    List<String> prefixes = new ArrayList<>();
+    for (int hour = 0; hour < 23; hour++) {
+      prefixes.add(String.format("test/2019/01/01/%02d/", hour));
+    }
+
+    List<String> result = PrefixMinimizer.minimize(prefixes);
+
+    assertEquals(23, result.size());
+  }
+
+  @Test
+  public void completeMonthsAreMergedUpToYear() {
+    List<String> prefixes = new ArrayList<>();
+    for (int month = 1; month < 12; month++) {
+      prefixes.add(String.format("test/2019/%02d/", month));
+    }
+    // december has 31 days
+    for (int day = 1; day <= 31; day++) {
+      prefixes.add(String.format("test/2019/12/%02d/", day));
+    }
+
+    List<String> result = PrefixMinimizer.minimize(prefixes);
+
+    assertEquals(Arrays.asList("test/2019/"), result);
+  }
+
+  @Test
+  public void coveredPrefixesAndDuplicatesAreRemoved() {
+    List<String> result =
+        PrefixMinimizer.minimize(
+            Arrays.asList("test/2019/", "test/2019/01/", "test/2019/", "test2/2019/", "test/"));
+
+    assertEquals(Arrays.asList("test/", "test2/2019/"), result);
+  }
+
+  @Test
+  public void minimizedPrefixesMatchGeneratedPrefixes() {
+    ZonedDateTime start = ZonedDateTime.of(2017, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    ZonedDateTime end = ZonedDateTime.of(2019, 3, 4, 5, 0, 0, 0, ZoneOffset.UTC);
+    List<String> prefixes = PrefixGeneratorUtility.generateTimePrefixes("test", start, end);
+
+    List<String> result = PrefixMinimizer.minimize(prefixes);
+
+    assertEquals(prefixes.size(), result.size());
+    assertTrue(result.containsAll(prefixes));
+  }
+
+  @Test
+  public void overlappingDatasetsAreDeduplicated() {
+    Map<String, List<String>> prefixesPerDataset = new HashMap<>();
+    prefixesPerDataset.put("gs://bucket/b", Arrays.asList("a/b/2019/", "b/2019/"));
+    prefixesPerDataset.put("gs://bucket/a", Arrays.asList("a/", "shared/2019/"));
+    prefixesPerDataset.put("gs://bucket/c", Arrays.asList("shared/2019/"));
+
+    Map<String, List<String>> result = PrefixMinimizer.minimizePerDataset(prefixesPerDataset);
+
+    assertEquals(Arrays.asList("a/", "shared/2019/"), result.get("gs://bucket/a"));
+    assertEquals(Arrays.asList("b/2019/"), result.get("gs://bucket/b"));
+    assertTrue(result.get("gs://bucket/c").isEmpty());
+  }
+}
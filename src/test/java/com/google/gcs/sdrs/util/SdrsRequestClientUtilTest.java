@@ -36,6 +36,7 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.startsWith;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -47,6 +48,7 @@ public class SdrsRequestClientUtilTest {
 
   @Before
   public void setup() throws IOException {
+    SdrsRequestClientUtil.jwtCache.clear();
     client = mock(Client.class, Mockito.RETURNS_DEEP_STUBS);
     builder = mock(Invocation.Builder.class);
     webTarget = mock(WebTarget.class);
@@ -96,4 +98,26 @@ public class SdrsRequestClientUtilTest {
 
     verify(webTarget).path(eq("something"));
   }
+
+  @Test
+  public void jwtIsReusedForTheSameAudience() throws IOException {
+    SdrsRequestClientUtil.request(client, "something").post(null);
+    SdrsRequestClientUtil.request(client, "something").post(null);
+
+    verify(SdrsRequestClientUtil.credentialsUtil, times(1)).getCredentials();
+    verify(builder, times(2)).header(eq("Authorization"), startsWith("Bearer ey"));
+  }
+
+  @Test
+  public void jwtIsReplacedBeforeItExpires() throws IOException {
+    SdrsRequestClientUtil.serviceUrl = "url";
+    SdrsRequestClientUtil.jwtCache.put(
+        "https://url",
+        new SdrsRequestClientUtil.SignedJwt("expiring", System.currentTimeMillis() + 60000));
+
+    SdrsRequestClientUtil.request(client, "something").post(null);
+
+    verify(SdrsRequestClientUtil.credentialsUtil).getCredentials();
+    verify(builder).header(eq("Authorization"), startsWith("Bearer ey"));
+  }
 }
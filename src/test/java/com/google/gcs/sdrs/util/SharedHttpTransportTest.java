@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.google.api.client.http.HttpTransport;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.junit.Test;
+
+public class SharedHttpTransportTest {
+
+  @Test
+  public void transportIsSharedUntilShutdown() {
+    SharedHttpTransport sharedHttpTransport = new SharedHttpTransport(10, 5, 60, 20, 120);
+    assertEquals("not created", sharedHttpTransport.getStatsSummary());
+
+    HttpTransport transport = sharedHttpTransport.getTransport();
+    assertSame(transport, sharedHttpTransport.getTransport());
+    assertEquals(
+        "leased: 0, available: 0, pending: 0, max: 10, max per route: 5",
+        sharedHttpTransport.getStatsSummary());
+
+    sharedHttpTransport.shutdown();
+    assertEquals("not created", sharedHttpTransport.getStatsSummary());
+    assertNotSame(transport, sharedHttpTransport.getTransport());
+  }
+
+  @Test
+  public void timeoutsAreInMillis() {
+    SharedHttpTransport sharedHttpTransport = new SharedHttpTransport(10, 5, 60, 20, 120);
+
+    assertEquals(20000, sharedHttpTransport.getConnectTimeoutMillis());
+    assertEquals(120000, sharedHttpTransport.getReadTimeoutMillis());
+  }
+
+  @Test
+  public void keepAliveIsCappedByTheConfiguredTime() {
+    ConnectionKeepAliveStrategy strategy = SharedHttpTransport.buildKeepAliveStrategy(60000);
+
+    HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+    assertEquals(60000, strategy.getKeepAliveDuration(response, new BasicHttpContext()));
+
+    response.setHeader("Keep-Alive", "timeout=30");
+    assertEquals(30000, strategy.getKeepAliveDuration(response, new BasicHttpContext()));
+
+    response.setHeader("Keep-Alive", "timeout=300");
+    assertEquals(60000, strategy.getKeepAliveDuration(response, new BasicHttpContext()));
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.storagetransfer.v1.Storagetransfer;
+import com.google.api.services.storagetransfer.v1.model.Operation;
+import com.google.api.services.storagetransfer.v1.model.TransferJob;
+import com.google.gcs.sdrs.common.RetentionRuleType;
+import com.google.gcs.sdrs.dao.model.RetentionJob;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StsAsyncClientTest {
+
+  private List<String> requestedUrls;
+  private StsAsyncClient asyncClient;
+
+  @Before
+  public void setup() {
+    requestedUrls = Collections.synchronizedList(new ArrayList<>());
+    MockHttpTransport transport =
+        new MockHttpTransport() {
+          @Override
+          public LowLevelHttpRequest buildRequest(String method, String url) throws IOException {
+            requestedUrls.add(URLDecoder.decode(url, "UTF-8"));
+            MockLowLevelHttpResponse response = new MockLowLevelHttpResponse();
+            if (url.contains("failing")) {
+              response.setStatusCode(500);
+            } else if (url.contains("transferOperations")) {
+              String jobName = url.contains("job1") ? "job1" : "job2";
+              response.setContentType("application/json");
+              response.setContent(
+                  String.format(
+                      "{\"operations\": [{\"name\": \"transferOperations/transferJobs-%s-1\","
+                          + " \"done\": true}]}",
+                      jobName));
+            } else {
+              response.setContentType("application/json");
+              response.setContent("{\"name\": \"transferJobs/job1\"}");
+            }
+            return new MockLowLevelHttpRequest(url).setResponse(response);
+          }
+        };
+    Storagetransfer client =
+        new Storagetransfer.Builder(transport, JacksonFactory.getDefaultInstance(), null)
+            .setApplicationName("sdrs")
+            .build();
+    asyncClient = new StsAsyncClient(client, Runnable::run);
+  }
+
+  @Test
+  public void getSubmittedStsJobsRequestsEachJobNameOnce() {
+    List<RetentionJob> jobs = new ArrayList<>();
+    jobs.add(createJob("transferJobs/job1"));
+    jobs.add(createJob("transferJobs/job1"));
+    jobs.add(createJob("transferJobs/job2"));
+
+    List<Operation> operations = asyncClient.getSubmittedStsJobs("project", jobs).join();
+
+    assertEquals(2, requestedUrls.size());
+    assertEquals(2, operations.size());
+    assertEquals("transferOperations/transferJobs-job1-1", operations.get(0).getName());
+    assertEquals("transferOperations/transferJobs-job2-1", operations.get(1).getName());
+  }
+
+  @Test
+  public void getSubmittedStsJobsLeavesOutFailedRequests() {
+    List<RetentionJob> jobs = new ArrayList<>();
+    jobs.add(createJob("transferJobs/failing"));
+    jobs.add(createJob("transferJobs/job2"));
+
+    List<Operation> operations = asyncClient.getSubmittedStsJobs("project", jobs).join();
+
+    assertEquals(1, operations.size());
+    assertEquals("transferOperations/transferJobs-job2-1", operations.get(0).getName());
+  }
+
+  @Test
+  public void batchedGetSubmittedStsJobsPagesThroughAllOperations() {
+    MockHttpTransport transport =
+        new MockHttpTransport() {
+          @Override
+          public LowLevelHttpRequest buildRequest(String method, String url) throws IOException {
+            requestedUrls.add(URLDecoder.decode(url, "UTF-8"));
+            MockLowLevelHttpResponse response = new MockLowLevelHttpResponse();
+            response.setContentType("application/json");
+            if (!url.contains("pageToken")) {
+              response.setContent(
+                  "{\"operations\": [{\"name\": \"transferOperations/transferJobs-job2-1\","
+                      + " \"metadata\": {\"transferJobName\": \"transferJobs/job2\"}}],"
+                      + " \"nextPageToken\": \"page2\"}");
+            } else {
+              response.setContent(
+                  "{\"operations\": [{\"name\": \"transferOperations/transferJobs-job1-1\"},"
+                      + " {\"name\": \"transferOperations/transferJobs-other-1\"}]}");
+            }
+            return new MockLowLevelHttpRequest(url).setResponse(response);
+          }
+        };
+    Storagetransfer client =
+        new Storagetransfer.Builder(transport, JacksonFactory.getDefaultInstance(), null)
+            .setApplicationName("sdrs")
+            .build();
+    List<RetentionJob> jobs = new ArrayList<>();
+    jobs.add(createJob("transferJobs/job1"));
+    jobs.add(createJob("transferJobs/job2"));
+    jobs.add(createJob("transferJobs/job1"));
+
+    List<Operation> operations =
+        new StsAsyncClient(client, Runnable::run).getSubmittedStsJobs("project", jobs, 50).join();
+
+    assertEquals(2, requestedUrls.size());
+    assertTrue(requestedUrls.get(0).contains("\"transferJobs/job1\",\"transferJobs/job2\""));
+    assertEquals(2, operations.size());
+    assertEquals("transferOperations/transferJobs-job1-1", operations.get(0).getName());
+    assertEquals("transferOperations/transferJobs-job2-1", operations.get(1).getName());
+  }
+
+  @Test
+  public void getExistingJobCompletesWithTheJob() {
+    TransferJob job = asyncClient.getExistingJob("project", "transferJobs/job1").join();
+
+    assertEquals("transferJobs/job1", job.getName());
+    assertTrue(requestedUrls.get(0).contains("projectId=project"));
+  }
+
+  @Test
+  public void failedRequestCompletesExceptionally() {
+    try {
+      asyncClient.getExistingJob("project", "transferJobs/failing").join();
+      fail("expected the request to fail");
+    } catch (CompletionException e) {
+      assertTrue(e.getCause() instanceof IOException);
+    }
+  }
+
+  private RetentionJob createJob(String name) {
+    RetentionJob job = new RetentionJob();
+    job.setName(name);
+    job.setRetentionRuleType(RetentionRuleType.DATASET);
+    return job;
+  }
+}
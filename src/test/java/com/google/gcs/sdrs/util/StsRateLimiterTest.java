@@ -0,0 +1,184 @@
+/*
+ * Copyright 2019 Google LLC. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and limitations under the License.
+ *
+ * Any software provided by Google hereunder is distributed “AS IS”,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, and is not intended for production use.
+ */
+
+package com.google.gcs.sdrs.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.client.googleapis.testing.auth.oauth2.MockGoogleCredential;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.http.json.JsonHttpContent;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.storagetransfer.v1.model.UpdateTransferJobRequest;
+import com.google.gcs.sdrs.util.StsRateLimiter.MethodClass;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StsRateLimiterTest {
+
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+  private static final String STS_URL = "https://storagetransfer.googleapis.com/v1/";
+
+  private long now;
+  private List<Long> sleeps;
+  private StsRateLimiter rateLimiter;
+
+  @Before
+  public void setup() {
+    now = 0;
+    sleeps = new ArrayList<>();
+    rateLimiter = new StsRateLimiter(2, 0.5, 4, 0.1, 0.5, () -> now, sleeps::add);
+  }
+
+  @Test
+  public void acquireWaitsWhenTokensAreUsedUp() throws Exception {
+    rateLimiter.acquire("project", MethodClass.WRITE);
+    rateLimiter.acquire("project", MethodClass.WRITE);
+    rateLimiter.acquire("project", MethodClass.WRITE);
+
+    // one token to start with, then one every half second
+    assertEquals(2, sleeps.size());
+    assertEquals(501L, (long) sleeps.get(0));
+    assertEquals(1001L, (long) sleeps.get(1));
+    assertEquals(1500, rateLimiter.getThrottledWaitMillis("project", MethodClass.WRITE));
+  }
+
+  @Test
+  public void bucketsAreSeparatePerProjectAndMethodClass() throws Exception {
+    rateLimiter.acquire("project", MethodClass.WRITE);
+    rateLimiter.acquire("project", MethodClass.READ);
+    rateLimiter.acquire("other", MethodClass.WRITE);
+
+    assertTrue(sleeps.isEmpty());
+  }
+
+  @Test
+  public void rateIsCutOnTooManyRequestsAndRecoversSlowly() {
+    rateLimiter.onResponse("project", MethodClass.LIST, 429);
+    assertEquals(1.0, rateLimiter.getRate("project", MethodClass.LIST), 0.001);
+
+    // a 429 of a request that was in flight at the same time does not cut again
+    now += NANOS_PER_SECOND / 2;
+    rateLimiter.onResponse("project", MethodClass.LIST, 429);
+    assertEquals(1.0, rateLimiter.getRate("project", MethodClass.LIST), 0.001);
+
+    now += 2 * NANOS_PER_SECOND;
+    rateLimiter.onResponse("project", MethodClass.LIST, 429);
+    assertEquals(0.5, rateLimiter.getRate("project", MethodClass.LIST), 0.001);
+
+    for (int i = 0; i < 10; i++) {
+      now += NANOS_PER_SECOND;
+      rateLimiter.onResponse("project", MethodClass.LIST, 200);
+    }
+    assertEquals(1.5, rateLimiter.getRate("project", MethodClass.LIST), 0.001);
+
+    for (int i = 0; i < 100; i++) {
+      now += NANOS_PER_SECOND;
+      rateLimiter.onResponse("project", MethodClass.LIST, 200);
+    }
+    assertEquals(4.0, rateLimiter.getRate("project", MethodClass.LIST), 0.001);
+    assertEquals(2.0, rateLimiter.getRate("project", MethodClass.WRITE), 0.001);
+    assertTrue(rateLimiter.getStatsSummary().contains("project|LIST rate: 4.00/s"));
+  }
+
+  @Test
+  public void idleTimeDoesNotRaiseTheRate() {
+    rateLimiter.onResponse("project", MethodClass.LIST, 429);
+    assertEquals(1.0, rateLimiter.getRate("project", MethodClass.LIST), 0.001);
+
+    // the first response of the next hourly run
+    now += 3600 * NANOS_PER_SECOND;
+    rateLimiter.onResponse("project", MethodClass.LIST, 200);
+    assertEquals(1.1, rateLimiter.getRate("project", MethodClass.LIST), 0.001);
+  }
+
+  @Test
+  public void retriedTooManyRequestsCutTheRate() throws Exception {
+    List<Integer> statusCodes = new ArrayList<>(Arrays.asList(429, 200));
+    MockHttpTransport transport =
+        new MockHttpTransport() {
+          @Override
+          public LowLevelHttpRequest buildRequest(String method, String url) {
+            return new MockLowLevelHttpRequest() {
+              @Override
+              public LowLevelHttpResponse execute() {
+                return new MockLowLevelHttpResponse().setStatusCode(statusCodes.remove(0));
+              }
+            };
+          }
+        };
+    RetryHttpInitializerWrapper initializer =
+        new RetryHttpInitializerWrapper(
+            new MockGoogleCredential.Builder().build().setAccessToken("token"),
+            millis -> {},
+            true,
+            rateLimiter);
+
+    HttpResponse response =
+        transport
+            .createRequestFactory(initializer)
+            .buildGetRequest(new GenericUrl(STS_URL + "transferJobs/job?projectId=project"))
+            .execute();
+
+    assertEquals(200, response.getStatusCode());
+    assertTrue(statusCodes.isEmpty());
+    assertEquals(1.0, rateLimiter.getRate("project", MethodClass.READ), 0.001);
+  }
+
+  @Test
+  public void requestsAreClassified() throws Exception {
+    HttpRequest get =
+        buildRequest("GET", new GenericUrl(STS_URL + "transferJobs/job?projectId=project"), null);
+    HttpRequest list =
+        buildRequest(
+            "GET",
+            new GenericUrl(
+                STS_URL
+                    + "transferOperations?filter="
+                    + "%7B%22project_id%22:%20%22project%22,%20%22job_names%22:%20%5B%5D%7D"),
+            null);
+    UpdateTransferJobRequest body = new UpdateTransferJobRequest().setProjectId("project");
+    HttpRequest patch =
+        buildRequest(
+            "PATCH",
+            new GenericUrl(STS_URL + "transferJobs/job"),
+            new JsonHttpContent(JacksonFactory.getDefaultInstance(), body));
+
+    assertEquals(MethodClass.READ, StsRateLimiter.getMethodClass(get));
+    assertEquals("project", StsRateLimiter.getProjectId(get));
+    assertEquals(MethodClass.LIST, StsRateLimiter.getMethodClass(list));
+    assertEquals("project", StsRateLimiter.getProjectId(list));
+    assertEquals(MethodClass.WRITE, StsRateLimiter.getMethodClass(patch));
+    assertEquals("project", StsRateLimiter.getProjectId(patch));
+  }
+
+  private HttpRequest buildRequest(String method, GenericUrl url, JsonHttpContent content)
+      throws Exception {
+    return new MockHttpTransport().createRequestFactory().buildRequest(method, url, content);
+  }
+}
@@ -25,15 +25,21 @@ import com.google.api.client.util.BackOff;
 import com.google.api.client.util.ExponentialBackOff;
 import com.google.api.services.storagetransfer.v1.model.Date;
 import com.google.api.services.storagetransfer.v1.model.ObjectConditions;
+import com.google.api.services.storagetransfer.v1.model.Operation;
 import com.google.api.services.storagetransfer.v1.model.Schedule;
 import com.google.api.services.storagetransfer.v1.model.TimeOfDay;
+import com.google.gcs.sdrs.common.RetentionRuleType;
+import com.google.gcs.sdrs.dao.model.RetentionJob;
+import java.sql.Timestamp;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.junit.Test;
 
 public class StsUtilTest {
@@ -183,4 +189,72 @@ public class StsUtilTest {
       e.printStackTrace();
     }
   }
+
+  @Test
+  public void partitionByDistinctNamesSkipsDuplicateNames() {
+    List<RetentionJob> jobs = new ArrayList<>();
+    for (String name : new String[] {"a", "b", "a", "c", "d", "b", "e"}) {
+      RetentionJob job = new RetentionJob();
+      job.setName(name);
+      jobs.add(job);
+    }
+
+    List<List<RetentionJob>> batches = StsUtil.partitionByDistinctNames(jobs, 2);
+
+    assertEquals(3, batches.size());
+    assertEquals("a", batches.get(0).get(0).getName());
+    assertEquals("b", batches.get(0).get(1).getName());
+    assertEquals("c", batches.get(1).get(0).getName());
+    assertEquals("e", batches.get(2).get(0).getName());
+  }
+
+  @Test
+  public void selectOperationPicksFirstOperationAfterRecurringJobCreation() {
+    RetentionJob job = new RetentionJob();
+    job.setRetentionRuleType(RetentionRuleType.GLOBAL);
+    job.setCreatedAt(Timestamp.from(Instant.parse("2019-06-01T00:00:00Z")));
+    Operation beforeCreation = createOperation("2019-05-31T00:00:00Z");
+    Operation late = createOperation("2019-06-03T00:00:00Z");
+    Operation early = createOperation("2019-06-02T00:00:00Z");
+
+    Operation selected = StsUtil.selectOperation(job, null, beforeCreation);
+    assertNull(selected);
+    selected = StsUtil.selectOperation(job, selected, late);
+    selected = StsUtil.selectOperation(job, selected, early);
+
+    assertEquals(early, selected);
+  }
+
+  @Test
+  public void selectOperationKeepsFirstOperationOfOneTimeJob() {
+    RetentionJob job = new RetentionJob();
+    job.setRetentionRuleType(RetentionRuleType.DATASET);
+    Operation first = createOperation("2019-06-03T00:00:00Z");
+
+    Operation selected = StsUtil.selectOperation(job, null, first);
+    selected = StsUtil.selectOperation(job, selected, createOperation("2019-06-02T00:00:00Z"));
+
+    assertEquals(first, selected);
+  }
+
+  @Test
+  public void getTransferJobNameFromMetadataOrOperationName() {
+    Operation withMetadata = new Operation().setName("transferOperations/transferJobs-1-2");
+    Map<String, Object> metadata = new HashMap<>();
+    metadata.put("transferJobName", "transferJobs/3");
+    withMetadata.setMetadata(metadata);
+
+    assertEquals("transferJobs/3", StsUtil.getTransferJobName(withMetadata));
+    assertEquals(
+        "transferJobs/1",
+        StsUtil.getTransferJobName(new Operation().setName("transferOperations/transferJobs-1-2")));
+  }
+
+  private Operation createOperation(String startTime) {
+    Map<String, Object> metadata = new HashMap<>();
+    metadata.put("startTime", startTime);
+    return new Operation()
+        .setName("transferOperations/transferJobs-1-" + startTime)
+        .setMetadata(metadata);
+  }
 }